@@ -3,6 +3,8 @@ import javax.swing.*;
 import controller.MovimientoController;
 import java.io.FileNotFoundException;
 import model.MovimientoDAO;
+import model.RepositorioMovimientos;
+import model.TipoRepositorio;
 import model.config.Config;
 import model.config.Configurable;
 import view.MovimientoView;
@@ -38,23 +40,23 @@ public class Main {
         } catch (ArrayIndexOutOfBoundsException e) {
         }
         try {
-            if (MovimientoDAO.crearBaseDeDatos()) {
-                if (lastFileConfigurator.esValidoActual()) {
-                    if (!MovimientoDAO.crearBaseDeDatos()) {
-                        JOptionPane.showMessageDialog(null, "Error al crear o conectar con la base de datos.", "Error", JOptionPane.ERROR_MESSAGE);
-                        return;
-                    }
-                    // Iniciar la interfaz gráfica en el hilo de despacho de eventos
-                    SwingUtilities.invokeLater(() -> {
-                        MovimientoView view = new MovimientoView();
-                        MovimientoController controller = new MovimientoController(view);
-
-                        controller.addObserver(view); // Registrar la vista como observadora
-                        view.setVisible(true);
-                    });
-                } else {
-                    System.out.println("La configuracion en " + Config.LastFile.RUTA + " no es valida");
+            if (lastFileConfigurator.esValidoActual()) {
+                // El almacén de movimientos se elige con -Ddamwallet.repositorio=sqlite|memoria|registro|binario
+                TipoRepositorio tipoRepositorio = TipoRepositorio.actual();
+                RepositorioMovimientos repositorio = tipoRepositorio.abrir(MovimientoDAO.rutaBBDD);
+                if (repositorio == null) {
+                    JOptionPane.showMessageDialog(null, "Error al crear o conectar con la base de datos.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
+                // Iniciar la interfaz gráfica en el hilo de despacho de eventos
+                SwingUtilities.invokeLater(() -> {
+                    MovimientoView view = new MovimientoView();
+                    // El controlador suscribe la vista a los eventos de la cartera
+                    new MovimientoController(view, tipoRepositorio, repositorio);
+                    view.setVisible(true);
+                });
+            } else {
+                System.out.println("La configuracion en " + Config.LastFile.RUTA + " no es valida");
             }
         } catch (FileNotFoundException ex) {
             System.out.println("El archivo " + Config.LastFile.RUTA + " no tiene informacion valida.");
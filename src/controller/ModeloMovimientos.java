@@ -0,0 +1,296 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import model.Movimiento;
+
+/**
+ * La clase ModeloMovimientos guarda los movimientos que se muestran (las páginas ya
+ * cargadas del filtro actual, o los resultados de una búsqueda) y su balance, y avisa a
+ * sus oyentes de cada cambio con un evento concreto: una alta avisa de la posición en
+ * la que se ha insertado el movimiento, una baja de la posición de la que se ha quitado
+ * y el balance de su valor anterior y el nuevo. Así, la vista solo tiene que crear o
+ * quitar el panel de ese movimiento en lugar de reconstruir la lista.
+ *
+ * Los movimientos se mantienen ordenados del más reciente al más antiguo y, dentro de
+ * un mismo día, por ID descendente (los que aún no tienen ID, delante), igual que las
+ * páginas de {@link model.RepositorioMovimientos#leerPagina}. Las posiciones se buscan
+ * con búsqueda binaria. Todos los métodos deben llamarse desde el hilo de la interfaz.
+ *
+ * @author DAM2
+ */
+public class ModeloMovimientos {
+
+    /**
+     * Interfaz de los oyentes del modelo. Cada oyente redefine solo los eventos que le
+     * interesan.
+     */
+    public interface Oyente {
+
+        /**
+         * Se llama cuando se sustituyen todos los movimientos mostrados.
+         *
+         * @param movimientos los nuevos movimientos.
+         */
+        default void movimientosSustituidos(List<Movimiento> movimientos) {
+        }
+
+        /**
+         * Se llama cuando se añade una página de movimientos al final.
+         *
+         * @param pagina los movimientos añadidos.
+         */
+        default void paginaAnadida(List<Movimiento> pagina) {
+        }
+
+        /**
+         * Se llama cuando se inserta un movimiento.
+         *
+         * @param indice la posición en la que se ha insertado.
+         * @param movimiento el movimiento insertado.
+         */
+        default void movimientoInsertado(int indice, Movimiento movimiento) {
+        }
+
+        /**
+         * Se llama cuando se quita un movimiento.
+         *
+         * @param indice la posición que ocupaba.
+         * @param movimiento el movimiento quitado.
+         */
+        default void movimientoQuitado(int indice, Movimiento movimiento) {
+        }
+
+        /**
+         * Se llama cuando cambia el balance.
+         *
+         * @param anterior el balance anterior, en céntimos.
+         * @param nuevo el nuevo balance, en céntimos.
+         */
+        default void balanceCambiado(long anterior, long nuevo) {
+        }
+    }
+
+    private final List<Movimiento> movimientos = new ArrayList<>();
+    private final List<Oyente> oyentes = new ArrayList<>();
+    private long balance = 0;
+    private boolean hayMas = false;
+
+    /**
+     * Añade un oyente del modelo.
+     *
+     * @param oyente el oyente a añadir.
+     */
+    public void addOyente(Oyente oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Elimina un oyente del modelo.
+     *
+     * @param oyente el oyente a eliminar.
+     */
+    public void removeOyente(Oyente oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /**
+     * Sustituye todos los movimientos mostrados, por ejemplo al cambiar de filtro.
+     *
+     * @param nuevos los movimientos, ya ordenados.
+     * @param nuevoBalance el balance del filtro, en céntimos.
+     * @param nuevoHayMas true si quedan páginas por cargar.
+     */
+    public void sustituir(List<Movimiento> nuevos, long nuevoBalance, boolean nuevoHayMas) {
+        movimientos.clear();
+        movimientos.addAll(nuevos);
+        hayMas = nuevoHayMas;
+        List<Movimiento> vista = getMovimientos();
+        for (Oyente oyente : oyentes) {
+            oyente.movimientosSustituidos(vista);
+        }
+        cambiarBalance(nuevoBalance);
+    }
+
+    /**
+     * Añade la siguiente página de movimientos al final.
+     *
+     * @param pagina los movimientos de la página, ya ordenados.
+     * @param nuevoHayMas true si quedan más páginas por cargar.
+     */
+    public void anadirPagina(List<Movimiento> pagina, boolean nuevoHayMas) {
+        movimientos.addAll(pagina);
+        hayMas = nuevoHayMas;
+        List<Movimiento> vista = Collections.unmodifiableList(pagina);
+        for (Oyente oyente : oyentes) {
+            oyente.paginaAnadida(vista);
+        }
+    }
+
+    /**
+     * Inserta un movimiento en su posición y suma su cantidad al balance. Si su
+     * posición cae después de las páginas cargadas y quedan más, solo se suma al
+     * balance; ya aparecerá al cargar su página.
+     *
+     * @param movimiento el movimiento a insertar.
+     * @return la posición en la que se insertó, o -1 si no se insertó.
+     */
+    public int insertar(Movimiento movimiento) {
+        int indice = posicion(movimiento);
+        boolean insertado = indice < movimientos.size() || !hayMas;
+        if (insertado) {
+            movimientos.add(indice, movimiento);
+            for (Oyente oyente : oyentes) {
+                oyente.movimientoInsertado(indice, movimiento);
+            }
+        }
+        cambiarBalance(balance + movimiento.getCantidad());
+        return insertado ? indice : -1;
+    }
+
+    /**
+     * Quita un movimiento mostrado y resta su cantidad del balance.
+     *
+     * @param movimiento el movimiento a quitar.
+     * @return true si estaba entre los mostrados, false en caso contrario.
+     */
+    public boolean quitar(Movimiento movimiento) {
+        int indice = buscar(movimiento);
+        if (indice < 0) {
+            return false;
+        }
+        Movimiento quitado = movimientos.remove(indice);
+        for (Oyente oyente : oyentes) {
+            oyente.movimientoQuitado(indice, quitado);
+        }
+        cambiarBalance(balance - quitado.getCantidad());
+        return true;
+    }
+
+    /**
+     * Cambia el balance, avisando a los oyentes si es distinto.
+     *
+     * @param nuevo el nuevo balance, en céntimos.
+     */
+    private void cambiarBalance(long nuevo) {
+        long anterior = balance;
+        if (anterior == nuevo) {
+            return;
+        }
+        balance = nuevo;
+        for (Oyente oyente : oyentes) {
+            oyente.balanceCambiado(anterior, nuevo);
+        }
+    }
+
+    /**
+     * Busca la posición de un movimiento mostrado. Si no se encuentra con búsqueda
+     * binaria (los resultados de una búsqueda están ordenados por relevancia), se
+     * recorre la lista.
+     *
+     * @return la posición, o -1 si no está.
+     */
+    private int buscar(Movimiento movimiento) {
+        int indice = posicion(movimiento);
+        // Puede haber varios con la misma fecha e ID 0, así que se compara el objeto
+        for (int i = indice; i < movimientos.size() && comparar(movimientos.get(i), movimiento) == 0; i++) {
+            if (esElMismo(movimientos.get(i), movimiento)) {
+                return i;
+            }
+        }
+        for (int i = 0; i < movimientos.size(); i++) {
+            if (esElMismo(movimientos.get(i), movimiento)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean esElMismo(Movimiento mostrado, Movimiento movimiento) {
+        return mostrado == movimiento || (movimiento.getId() != 0 && mostrado.getId() == movimiento.getId());
+    }
+
+    /**
+     * Busca con búsqueda binaria la primera posición cuyo movimiento no va antes que
+     * el indicado.
+     */
+    private int posicion(Movimiento movimiento) {
+        int bajo = 0;
+        int alto = movimientos.size();
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (comparar(movimientos.get(medio), movimiento) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Compara dos movimientos según el orden de la lista: fecha descendente y, dentro
+     * de un mismo día, ID descendente con los que no tienen ID (0) delante.
+     */
+    private static int comparar(Movimiento a, Movimiento b) {
+        int porFecha = b.getFecha().compareTo(a.getFecha());
+        if (porFecha != 0) {
+            return porFecha;
+        }
+        long idA = a.getId() == 0 ? Long.MAX_VALUE : a.getId();
+        long idB = b.getId() == 0 ? Long.MAX_VALUE : b.getId();
+        return Long.compare(idB, idA);
+    }
+
+    /**
+     * Obtiene los movimientos mostrados.
+     *
+     * @return una vista de solo lectura de los movimientos, en orden.
+     */
+    public List<Movimiento> getMovimientos() {
+        return Collections.unmodifiableList(movimientos);
+    }
+
+    /**
+     * Obtiene el último movimiento mostrado, desde el que se carga la página siguiente.
+     *
+     * @return el último movimiento, o null si no hay ninguno.
+     */
+    public Movimiento getUltimo() {
+        return movimientos.isEmpty() ? null : movimientos.get(movimientos.size() - 1);
+    }
+
+    /**
+     * Busca un movimiento mostrado por su ID.
+     *
+     * @param id el ID del movimiento.
+     * @return el movimiento, o null si no se muestra.
+     */
+    public Movimiento getPorId(long id) {
+        for (Movimiento movimiento : movimientos) {
+            if (movimiento.getId() == id) {
+                return movimiento;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Obtiene el balance de los movimientos del filtro actual.
+     *
+     * @return el balance, en céntimos.
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Indica si quedan páginas por cargar.
+     *
+     * @return true si hay más movimientos, false en caso contrario.
+     */
+    public boolean isHayMas() {
+        return hayMas;
+    }
+}
@@ -2,32 +2,133 @@ package controller;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import javax.swing.*;
+import model.Cambios;
+import model.ColaEscritura;
+import model.ColumnasMovimientos;
+import model.Consulta;
+import model.CopiaSeguridad;
 import model.Movimiento;
 import model.MovimientoDAO;
-import observer.BalanceObserver;
+import model.PurgaBorrados;
+import model.RepositorioConsolidado;
+import model.RepositorioMovimientos;
+import model.TipoRepositorio;
+import model.VigilanteCambios;
+import model.informe.ImportacionCSV;
+import observer.BusEventos;
+import observer.Evento;
 import view.MovimientoView;
 
 /**
  * Controlador principal para la gestión de movimientos financieros, incluyendo
  * la visualización de movimientos, la aplicación de filtros, y la adición o
- * eliminación de movimientos. Este controlador implementa el patrón Observer
- * para notificar a los observadores de los cambios en el balance.
+ * eliminación de movimientos. Los cambios (altas, bajas, restauraciones,
+ * filtros, balance e importaciones) se publican como {@link Evento} en un
+ * {@link BusEventos}, al que se pueden suscribir la vista y cualquier otro
+ * consumidor sin retrasar la interfaz.
+ *
+ * Las altas y bajas se aplican de inmediato sobre los movimientos mostrados y se
+ * escriben en segundo plano mediante una {@link ColaEscritura}; si la escritura
+ * falla, se vuelven a cargar los datos de la base de datos y se avisa al usuario.
+ * Los borrados son lógicos, por lo que deshacer uno restaura el movimiento con
+ * su ID original, también tras reiniciar la aplicación.
+ *
+ * Los movimientos se leen y escriben a través de un {@link RepositorioMovimientos},
+ * por lo que el controlador no depende de cómo se guardan. Al abrir cada cartera se
+ * cargan además en segundo plano en unas {@link ColumnasMovimientos}, de las que se
+ * leen las páginas y los balances al cambiar de filtro sin volver a consultar el
+ * repositorio. Hasta que están cargadas, se leen del repositorio.
+ *
+ * Los movimientos mostrados son los que cumplen una {@link Consulta}: la de uno
+ * de los periodos de la barra de filtros (Total, Mes o Año) o la que el usuario
+ * compone en el diálogo de filtrar, combinando fechas, cantidades, tipo y
+ * concepto.
+ *
+ * Los movimientos mostrados y su balance se guardan en un {@link ModeloMovimientos}.
+ * Las altas y bajas se aplican sobre él como cambios sueltos, de forma que la vista
+ * solo crea o quita el panel del movimiento afectado.
+ *
+ * Al abrir una cartera se hace una {@link CopiaSeguridad} en segundo plano si la
+ * última tiene más de un día. Mientras está abierta, un {@link VigilanteCambios}
+ * detecta los cambios que hace otro proceso en su archivo y se aplican sobre las
+ * columnas sin volver a leer todos los movimientos.
  */
 public class MovimientoController {
 
+    // Número máximo de movimientos que se muestran al buscar por concepto
+    private static final int MAX_RESULTADOS_BUSQUEDA = 200;
+
+    // Milisegundos durante los que se agrupan las peticiones de recarga
+    private static final int ESPERA_RECARGA = 40;
+
+    // Número de movimientos de cada página de la lista de movimientos
+    private static final int TAMANIO_PAGINA = 50;
+
+    /**
+     * Los periodos predefinidos de la barra de filtros.
+     */
+    private enum Periodo {
+        TOTAL(0), MES(30), ANIO(365);
+
+        private final int dias;
+
+        Periodo(int dias) {
+            this.dias = dias;
+        }
+
+        /**
+         * Obtiene la consulta del periodo, contando desde hoy.
+         */
+        private Consulta consulta() {
+            return dias == 0 ? Consulta.todos() : Consulta.ultimosDias(dias);
+        }
+    }
+
     private MovimientoView view;
-    private String currentFilter = "Total";
+    private Periodo periodo = Periodo.TOTAL;
+    // Filtro compuesto en el diálogo de filtrar, o null si se usa el periodo
+    private Consulta filtroPersonalizado = null;
     private boolean inHelpMode = false;
     private int helpStep = 0;
+    // Si se muestran los resultados de una búsqueda, ordenados por relevancia en lugar de por fecha
+    private boolean mostrandoBusqueda = false;
 
+    // Movimientos borrados en esta sesión, para mostrarlos de inmediato al deshacer
     private Stack<Movimiento> deletedMovimientos = new Stack<>();
-    private List<BalanceObserver> observers = new ArrayList<>();
+    private final BusEventos bus = new BusEventos();
+
+    private final TipoRepositorio tipoRepositorio;
+    private RepositorioMovimientos repositorio;
+    // Copia en columnas de los movimientos, o null mientras se carga
+    private ColumnasMovimientos columnas;
+    private SwingWorker<ColumnasMovimientos, Void> cargaColumnas;
+    // Cambios hechos durante la carga de las columnas, que puede no incluirlos
+    private final List<Consumer<ColumnasMovimientos>> cambiosPendientes = new ArrayList<>();
+    private ColaEscritura colaEscritura;
+    private PurgaBorrados purgaBorrados;
+    private CopiaSeguridad copiaSeguridad;
+    private VigilanteCambios vigilanteCambios;
+    private final ModeloMovimientos modelo = new ModeloMovimientos();
+    // Carga de la primera página de un filtro o de una búsqueda
+    private SwingWorker<?, Void> cargaEnCurso;
+    // Carga de la página siguiente del filtro mostrado
+    private SwingWorker<Movimiento[], Void> cargaPagina;
+    private long generacionCarga = 0;
+    private final Timer temporizadorRecarga = new Timer(ESPERA_RECARGA, e -> recargar());
+    private long recargasPedidas = 0;
+    private long recargasHechas = 0;
 
     /**
      * Constructor de la clase MovimientoController que inicializa la vista y
@@ -35,10 +136,25 @@ public class MovimientoController {
      * usuario.
      *
      * @param view la vista asociada al controlador.
+     * @param tipoRepositorio el tipo de repositorio con el que se abren las carteras.
+     * @param repositorio el repositorio de la cartera actual, ya abierto.
      */
-    public MovimientoController(MovimientoView view) {
+    public MovimientoController(MovimientoView view, TipoRepositorio tipoRepositorio, RepositorioMovimientos repositorio) {
         this.view = view;
         this.view.setController(this);
+        this.tipoRepositorio = tipoRepositorio;
+        this.temporizadorRecarga.setRepeats(false);
+
+        // La lista mostrada se actualiza con los eventos del modelo, y el
+        // balance se publica en el bus, al que se suscribe la vista
+        modelo.addOyente(view);
+        modelo.addOyente(new ModeloMovimientos.Oyente() {
+            @Override
+            public void balanceCambiado(long anterior, long nuevo) {
+                bus.publicar(new Evento.BalanceCambiado(anterior, nuevo));
+            }
+        });
+        usarRepositorio(repositorio, MovimientoDAO.rutaBBDD);
 
         // Añadir los listeners a los botones y componentes de la vista
         this.view.addAddButtonListener(new AddButtonListener());
@@ -51,100 +167,793 @@ public class MovimientoController {
         this.view.addTabKeyBinding(new TabKeyAction());
         this.view.addCtrlNKeyBinding(new CtrlNKeyAction());
         this.view.addCtrlZKeyBinding(new CtrlZKeyAction());
+        this.view.addCtrlFKeyBinding(new CtrlFKeyAction());
+
+        // Carga inicial de datos, que también publica el balance inicial
+        programarRecarga();
+    }
 
-        loadData(); // Carga inicial de datos
+    /**
+     * Obtiene la consulta de los movimientos que se muestran según el filtro
+     * actual.
+     *
+     * @return la consulta del filtro personalizado o, si no hay, la del periodo.
+     */
+    public Consulta getConsulta() {
+        return filtroPersonalizado != null ? filtroPersonalizado : periodo.consulta();
+    }
 
-        // Forzar notificación del balance al iniciar
-        double initialBalance = calculateTotalBalance();
-        notifyBalanceChange(initialBalance);
+    /**
+     * Obtiene el bus en el que se publican los eventos de la cartera, para
+     * suscribirse a ellos.
+     *
+     * @return el bus de eventos.
+     */
+    public BusEventos getBus() {
+        return bus;
     }
 
     /**
-     * Calcula el balance total sumando la cantidad de todos los movimientos.
+     * Cambia el filtro de los movimientos mostrados, lo resalta en la barra de
+     * filtros, vuelve a cargar los datos y publica el cambio.
      *
-     * @return el balance total calculado.
+     * @param nuevoPeriodo el periodo seleccionado.
+     * @param personalizado el filtro compuesto por el usuario, o null para
+     *        usar el periodo.
      */
-    private double calculateTotalBalance() {
-        String selectQuery = "SELECT * FROM MOVIMIENTO";
-        Movimiento[] movimientos = MovimientoDAO.leerMovimientos(selectQuery);
+    private void cambiarFiltro(Periodo nuevoPeriodo, Consulta personalizado) {
+        Consulta anterior = getConsulta();
+        periodo = nuevoPeriodo;
+        filtroPersonalizado = personalizado;
+        resaltarFiltro();
+        programarRecarga();
+        Consulta nueva = getConsulta();
+        if (!anterior.equals(nueva)) {
+            bus.publicar(new Evento.FiltroCambiado(anterior, nueva));
+        }
+    }
 
-        double totalBalance = 0.0;
-        for (Movimiento movimiento : movimientos) {
-            totalBalance += movimiento.getCantidad();
+    /**
+     * Subraya en la barra de filtros el periodo actual, o ninguno si hay un
+     * filtro personalizado.
+     */
+    private void resaltarFiltro() {
+        if (filtroPersonalizado != null) {
+            view.limpiarFiltroSeleccionado();
+            return;
+        }
+        switch (periodo) {
+            case MES:
+                view.highlightSelectedFilter(view.getMesLabel(), view.getAñoLabel(), view.getTotalLabel());
+                break;
+            case ANIO:
+                view.highlightSelectedFilter(view.getAñoLabel(), view.getMesLabel(), view.getTotalLabel());
+                break;
+            default:
+                view.highlightSelectedFilter(view.getTotalLabel(), view.getMesLabel(), view.getAñoLabel());
+                break;
         }
-        return totalBalance;
     }
 
     /**
-     * Añade un observador a la lista de observadores que se notifican cuando
-     * cambia el balance.
+     * Carga los datos de los movimientos desde las columnas en memoria (o, si
+     * aún no están cargadas, desde el repositorio) y actualiza la vista según
+     * el filtro actual. Solo se lee la primera página de movimientos; el resto
+     * se carga con {@link #loadMoreMovements()}.
      *
-     * @param observer el observador a añadir.
+     * La lectura se hace en segundo plano, para no bloquear la interfaz al
+     * cambiar de filtro rápidamente. Cada carga cancela la anterior y solo se
+     * muestra el resultado de la última.
      */
-    public void addObserver(BalanceObserver observer) {
-        observers.add(observer);
+    private void loadData() {
+        if (inHelpMode) {
+            return;
+        }
+
+        Consulta consulta = getConsulta();
+        String titulo = filtroPersonalizado == null ? "Transacciones recientes" : "Filtro: " + filtroPersonalizado;
+        ColumnasMovimientos origen = columnas;
+        RepositorioMovimientos repositorioActual = repositorio;
+        long generacion = invalidarCargas();
+        cargaEnCurso = new SwingWorker<Carga, Void>() {
+            @Override
+            protected Carga doInBackground() {
+                Movimiento[] movimientos = leerPagina(origen, repositorioActual, consulta, null);
+                if (isCancelled()) {
+                    return null;
+                }
+                if (origen == null) {
+                    return new Carga(movimientos, sumar(repositorioActual, consulta));
+                }
+                // El balance del filtro se suma sobre la columna de cantidades
+                return new Carga(movimientos, origen.sumar(consulta));
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || generacion != generacionCarga) {
+                    return;
+                }
+                cargaEnCurso = null;
+                Carga carga;
+                try {
+                    carga = get();
+                } catch (Exception e) {
+                    System.out.println("Error al cargar los movimientos: " + e.getMessage());
+                    return;
+                }
+                if (inHelpMode) {
+                    return;
+                }
+                mostrandoBusqueda = false;
+                view.setMovementsTitle(titulo);
+                modelo.sustituir(Arrays.asList(carga.movimientos), carga.balance, carga.movimientos.length == TAMANIO_PAGINA);
+            }
+        };
+        cargaEnCurso.execute();
     }
 
     /**
-     * Elimina un observador de la lista de observadores.
+     * Lee una página de movimientos de una consulta de las columnas o, si aún
+     * no están cargadas, del repositorio.
      *
-     * @param observer el observador a eliminar.
+     * @param origen las columnas, o null si aún no están cargadas.
+     * @param repositorio el repositorio de la cartera.
+     * @param consulta la consulta de los movimientos.
+     * @param ultimo el último movimiento de la página anterior, o null para la primera.
+     * @return los movimientos de la página.
      */
-    public void removeObserver(BalanceObserver observer) {
-        observers.remove(observer);
+    private static Movimiento[] leerPagina(ColumnasMovimientos origen, RepositorioMovimientos repositorio,
+            Consulta consulta, Movimiento ultimo) {
+        return origen != null ? origen.leerPagina(consulta, ultimo, TAMANIO_PAGINA)
+                : repositorio.leerPagina(consulta, ultimo, TAMANIO_PAGINA);
     }
 
     /**
-     * Notifica a todos los observadores sobre un cambio en el balance.
+     * Calcula el balance de una consulta en el repositorio, mientras no están
+     * cargadas las columnas. Si la consulta es solo un periodo, se toma del
+     * resumen del repositorio; si no, se recorren sus movimientos.
      *
-     * @param balance el nuevo balance.
+     * @param repositorio el repositorio de la cartera.
+     * @param consulta la consulta de los movimientos.
+     * @return la suma de sus cantidades, en céntimos.
      */
-    private void notifyBalanceChange(double balance) {
-        for (BalanceObserver observer : observers) {
-            observer.onBalanceChange(balance);
+    private static long sumar(RepositorioMovimientos repositorio, Consulta consulta) {
+        if (consulta.getHasta() == null && !consulta.filtraCantidad() && !consulta.filtraConcepto()) {
+            return repositorio.obtenerResumen(consulta.getDesde()).getTotal();
+        }
+        try (Stream<Movimiento> movimientos = repositorio.streamMovimientos()) {
+            return movimientos.filter(consulta::cumple).mapToLong(Movimiento::getCantidad).sum();
         }
     }
 
     /**
-     * Carga los datos de los movimientos desde la base de datos y actualiza la
-     * vista según el filtro actual.
+     * Pide que se vuelvan a cargar los datos. Las peticiones que llegan en los
+     * siguientes {@value #ESPERA_RECARGA} ms (por ejemplo, una alta y el cambio
+     * de filtro que la sigue, o varias pulsaciones de Tab) se agrupan en una
+     * sola carga.
      */
-    private void loadData() {
+    private void programarRecarga() {
+        recargasPedidas++;
+        if (!temporizadorRecarga.isRunning()) {
+            temporizadorRecarga.start();
+        }
+    }
+
+    /**
+     * Hace la carga de datos agrupada por {@link #programarRecarga()}.
+     */
+    private void recargar() {
+        recargasHechas++;
+        loadData();
+    }
+
+    /**
+     * Obtiene las estadísticas de las recargas de datos, para comprobar cuántas
+     * se han agrupado.
+     *
+     * @return un texto con las recargas pedidas, hechas y agrupadas.
+     */
+    public String estadisticasRecargas() {
+        return "Recargas: " + recargasPedidas + " pedidas, " + recargasHechas + " hechas, "
+                + (recargasPedidas - recargasHechas) + " agrupadas";
+    }
+
+    /**
+     * Obtiene las estadísticas de la cartera abierta para mostrarlas al
+     * usuario: las recargas agrupadas, las escrituras de la cola, si el
+     * repositorio usa conexiones sus tiempos de espera y de uso, y los eventos
+     * entregados y agrupados de cada suscripción del bus.
+     *
+     * @return un texto con una línea por cada estadística.
+     */
+    public String estadisticas() {
+        String conexiones = repositorio.estadisticas();
+        return estadisticasRecargas() + "\n" + colaEscritura.estadisticas()
+                + (conexiones == null ? "" : "\n" + conexiones) + "\n" + bus.estadisticas();
+    }
+
+    /**
+     * Cancela la carga en curso y la de la página siguiente, si las hay, de
+     * forma que su resultado ya no se muestre.
+     *
+     * @return el número de la siguiente carga.
+     */
+    private long invalidarCargas() {
+        if (cargaEnCurso != null) {
+            cargaEnCurso.cancel(false);
+            cargaEnCurso = null;
+        }
+        if (cargaPagina != null) {
+            cargaPagina.cancel(false);
+            cargaPagina = null;
+        }
+        return ++generacionCarga;
+    }
+
+    /**
+     * El resultado de una carga: la primera página de movimientos del filtro y
+     * su balance.
+     */
+    private static class Carga {
+
+        private final Movimiento[] movimientos;
+        private final long balance;
+
+        private Carga(Movimiento[] movimientos, long balance) {
+            this.movimientos = movimientos;
+            this.balance = balance;
+        }
+    }
+
+    /**
+     * Pide un texto al usuario y muestra los movimientos cuyo concepto lo
+     * contiene, ordenados por relevancia. Para volver a la lista completa basta
+     * con seleccionar un filtro.
+     *
+     * La búsqueda se hace en segundo plano, como las cargas de
+     * {@link #loadData()}: cancela la carga en curso y un cambio de filtro
+     * posterior la cancela a ella.
+     */
+    public void buscarMovimientos() {
         if (inHelpMode) {
             return;
         }
+        String texto = JOptionPane.showInputDialog(view, "Buscar por concepto:", "Buscar", JOptionPane.PLAIN_MESSAGE);
+        if (texto == null || texto.trim().isEmpty()) {
+            return;
+        }
 
-        String selectQuery = "SELECT * FROM MOVIMIENTO";
-        switch (currentFilter) {
-            case "Mes":
-                selectQuery += " WHERE FECHA >= (strftime('%s', 'now', '-30 days') * 1000)";
-                break;
-            case "Año":
-                selectQuery += " WHERE FECHA >= (strftime('%s', 'now', '-365 days') * 1000)";
-                break;
-            default:
-                break;
+        String buscado = texto.trim();
+        RepositorioMovimientos repositorioActual = repositorio;
+        // Una carga pendiente no debe sustituir a los resultados
+        boolean habiaCarga = cargaEnCurso != null;
+        long generacion = invalidarCargas();
+        cargaEnCurso = new SwingWorker<Movimiento[], Void>() {
+            @Override
+            protected Movimiento[] doInBackground() {
+                return repositorioActual.buscarMovimientos(buscado, MAX_RESULTADOS_BUSQUEDA);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || generacion != generacionCarga) {
+                    return;
+                }
+                cargaEnCurso = null;
+                Movimiento[] encontrados;
+                try {
+                    encontrados = get();
+                } catch (Exception e) {
+                    System.out.println("Error al buscar movimientos: " + e.getMessage());
+                    encontrados = new Movimiento[0];
+                }
+                if (inHelpMode) {
+                    return;
+                }
+                if (encontrados.length == 0) {
+                    // Se sigue con la lista actual, completando la carga que se canceló
+                    if (habiaCarga) {
+                        programarRecarga();
+                    }
+                    JOptionPane.showMessageDialog(view, "No se encontraron movimientos para \"" + buscado + "\".");
+                    return;
+                }
+                mostrandoBusqueda = true;
+                view.setMovementsTitle("Resultados para \"" + buscado + "\"");
+                modelo.sustituir(Arrays.asList(encontrados), modelo.getBalance(), false);
+            }
+        };
+        cargaEnCurso.execute();
+    }
+
+    /**
+     * Muestra un diálogo para componer un filtro personalizado con un rango de
+     * fechas, un rango de cantidades, el tipo (ingresos o gastos) y un texto
+     * del concepto, y muestra los movimientos que lo cumplen. Si se dejan
+     * todos los campos vacíos se vuelve al filtro Total.
+     */
+    public void filtrarMovimientos() {
+        if (inHelpMode) {
+            return;
+        }
+        Consulta actual = filtroPersonalizado != null ? filtroPersonalizado : Consulta.todos();
+        JTextField desdeField = new JTextField(actual.getDesde() == null ? "" : actual.getDesde().toString());
+        JTextField hastaField = new JTextField(actual.getHasta() == null ? "" : actual.getHasta().toString());
+        JComboBox<String> tipoCombo = new JComboBox<>(new String[]{"Todos", "Ingresos", "Gastos"});
+        boolean soloIngresos = actual.getMinimo() == 1 && actual.getMaximo() == Long.MAX_VALUE;
+        boolean soloGastos = actual.getMinimo() == Long.MIN_VALUE && actual.getMaximo() == -1;
+        tipoCombo.setSelectedIndex(soloIngresos ? 1 : soloGastos ? 2 : 0);
+        boolean porTipo = soloIngresos || soloGastos;
+        JTextField minimoField = new JTextField(porTipo || actual.getMinimo() == Long.MIN_VALUE ? ""
+                : Movimiento.centimosAEuros(actual.getMinimo()).toPlainString());
+        JTextField maximoField = new JTextField(porTipo || actual.getMaximo() == Long.MAX_VALUE ? ""
+                : Movimiento.centimosAEuros(actual.getMaximo()).toPlainString());
+        JTextField conceptoField = new JTextField(String.join(" ", actual.getConceptos()));
+
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Desde (YYYY-MM-DD):"));
+        panel.add(desdeField);
+        panel.add(new JLabel("Hasta (YYYY-MM-DD):"));
+        panel.add(hastaField);
+        panel.add(new JLabel("Tipo:"));
+        panel.add(tipoCombo);
+        panel.add(new JLabel("Cantidad mínima:"));
+        panel.add(minimoField);
+        panel.add(new JLabel("Cantidad máxima:"));
+        panel.add(maximoField);
+        panel.add(new JLabel("Concepto contiene:"));
+        panel.add(conceptoField);
+
+        int opcion = JOptionPane.showConfirmDialog(view, panel, "Filtrar movimientos", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (opcion != JOptionPane.OK_OPTION) {
+            return;
+        }
+        Consulta consulta;
+        try {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-M-d");
+            String desde = desdeField.getText().trim();
+            String hasta = hastaField.getText().trim();
+            String minimo = minimoField.getText().trim();
+            String maximo = maximoField.getText().trim();
+            consulta = Consulta.entre(desde.isEmpty() ? null : LocalDate.parse(desde, formatter),
+                    hasta.isEmpty() ? null : LocalDate.parse(hasta, formatter))
+                    .y(Consulta.cantidadEntre(minimo.isEmpty() ? null : Movimiento.eurosACentimos(minimo),
+                            maximo.isEmpty() ? null : Movimiento.eurosACentimos(maximo)))
+                    .y(Consulta.concepto(conceptoField.getText()));
+        } catch (DateTimeParseException dtpe) {
+            JOptionPane.showMessageDialog(view, "Las fechas deben tener el formato año-mes-día.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        } catch (NumberFormatException nfe) {
+            JOptionPane.showMessageDialog(view, "Las cantidades deben ser números válidos.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        } catch (ArithmeticException ae) {
+            JOptionPane.showMessageDialog(view, "Las cantidades no pueden tener más de dos decimales.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (tipoCombo.getSelectedIndex() == 1) {
+            consulta = consulta.y(Consulta.ingresos());
+        } else if (tipoCombo.getSelectedIndex() == 2) {
+            consulta = consulta.y(Consulta.gastos());
+        }
+        if (consulta.isVacia()) {
+            JOptionPane.showMessageDialog(view, "Ningún movimiento puede cumplir el filtro.", "Aviso", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (consulta.equals(Consulta.todos())) {
+            cambiarFiltro(Periodo.TOTAL, null);
+        } else {
+            cambiarFiltro(periodo, consulta);
+        }
+    }
+
+    /**
+     * Carga la siguiente página de movimientos del filtro actual en segundo
+     * plano y la añade al final de la vista. No hace nada si ya se han mostrado
+     * todos o si ya se está cargando.
+     */
+    public void loadMoreMovements() {
+        if (inHelpMode || !modelo.isHayMas() || cargaEnCurso != null || cargaPagina != null) {
+            // Si hay una carga en curso, la página siguiente sería de otro filtro
+            return;
+        }
+        Movimiento ultimo = modelo.getUltimo();
+        if (ultimo == null) {
+            programarRecarga();
+            return;
         }
-        selectQuery += " ORDER BY FECHA DESC";
 
-        Movimiento[] movimientos = MovimientoDAO.leerMovimientos(selectQuery);
+        Consulta consulta = getConsulta();
+        ColumnasMovimientos origen = columnas;
+        RepositorioMovimientos repositorioActual = repositorio;
+        long generacion = generacionCarga;
+        cargaPagina = new SwingWorker<>() {
+            @Override
+            protected Movimiento[] doInBackground() {
+                return leerPagina(origen, repositorioActual, consulta, ultimo);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || generacion != generacionCarga) {
+                    return;
+                }
+                cargaPagina = null;
+                Movimiento[] pagina;
+                try {
+                    pagina = get();
+                } catch (Exception e) {
+                    System.out.println("Error al cargar los movimientos: " + e.getMessage());
+                    return;
+                }
+                // Si se ha quitado el último movimiento mientras tanto, la página ya no sigue a la lista
+                if (inHelpMode || modelo.getUltimo() != ultimo) {
+                    return;
+                }
+                modelo.anadirPagina(Arrays.asList(pagina), pagina.length == TAMANIO_PAGINA);
+            }
+        };
+        cargaPagina.execute();
+    }
 
-        double totalBalance = 0.0;
-        for (Movimiento movimiento : movimientos) {
-            totalBalance += movimiento.getCantidad();
+    /**
+     * Aplica un movimiento nuevo sobre los datos mostrados, si cumple el
+     * filtro actual: se inserta en su posición y se suma al balance, sin
+     * volver a cargar la lista. Mientras se muestran los resultados de una
+     * búsqueda no se inserta, ya que están ordenados por relevancia y no por
+     * fecha; se verá al volver a seleccionar un filtro.
+     *
+     * @param movimiento el movimiento añadido.
+     */
+    private void mostrarAlta(Movimiento movimiento) {
+        if (!mostrandoBusqueda && getConsulta().cumple(movimiento)) {
+            modelo.insertar(movimiento);
         }
+    }
+
+    /**
+     * Encola la escritura de un movimiento y lo muestra de inmediato. Cuando la
+     * escritura termina, el movimiento mostrado ya tiene su ID definitivo, así
+     * que solo se recargan los datos si falla o si mientras tanto había alguna
+     * carga en curso, que pudo leer los movimientos antes de escribirlo y
+     * sustituir la lista sin él. En ambos casos se informa al usuario del
+     * resultado.
+     *
+     * @param movimiento el movimiento a escribir.
+     * @param mensajeExito el mensaje que se muestra si se escribe correctamente.
+     * @param mensajeError el mensaje que se muestra si la escritura falla.
+     */
+    private void escribirEnSegundoPlano(Movimiento movimiento, String mensajeExito, String mensajeError) {
+        CompletableFuture<Boolean> resultado = colaEscritura.insertar(movimiento);
+        mostrarAlta(movimiento);
+        boolean cargando = cargaEnCurso != null;
+        long generacion = generacionCarga;
+        resultado.thenAccept(success -> SwingUtilities.invokeLater(() -> {
+            if (success) {
+                cambiarColumnas(c -> c.anadir(movimiento));
+                bus.publicar(new Evento.MovimientoAnadido(movimiento));
+            }
+            if (!success || cargaSinCambio(cargando, generacion)) {
+                programarRecarga();
+            }
+            if (success) {
+                JOptionPane.showMessageDialog(view, mensajeExito);
+            } else {
+                JOptionPane.showMessageDialog(view, mensajeError, "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+    }
+
+    /**
+     * Indica si alguna carga pudo leer los movimientos antes de que se escribiera
+     * un cambio que ya se mostraba, y por tanto sustituir la lista sin él. Si
+     * se muestran los resultados de una búsqueda no hace falta, ya que la lista
+     * se vuelve a cargar al seleccionar un filtro.
+     *
+     * @param cargando si había una carga en curso al mostrar el cambio.
+     * @param generacion el número de la última carga al mostrar el cambio.
+     * @return true si hay que volver a cargar los datos, false en caso contrario.
+     */
+    private boolean cargaSinCambio(boolean cargando, long generacion) {
+        return !mostrandoBusqueda && (cargando || generacion != generacionCarga);
+    }
 
-        notifyBalanceChange(totalBalance);
-        view.setBalance(totalBalance);
+    /**
+     * Obtiene el modelo con los movimientos mostrados, por ejemplo para
+     * suscribirse a sus cambios.
+     *
+     * @return el modelo de los movimientos mostrados.
+     */
+    public ModeloMovimientos getModelo() {
+        return modelo;
+    }
 
-        // Cambiar color del banner y filtros si el balance es negativo
-        if (totalBalance < 0) {
-            view.updateBannerAndFiltersColor("#d63429"); // Rojo
+    /**
+     * Obtiene el repositorio de la cartera actual, por ejemplo para exportar
+     * sus movimientos.
+     *
+     * @return el repositorio de la cartera actual.
+     */
+    public RepositorioMovimientos getRepositorio() {
+        return repositorio;
+    }
+
+    /**
+     * Empieza a trabajar sobre un repositorio, con su propia cola de escritura,
+     * su propia purga de borrados, sus propias copias de seguridad y su propio
+     * vigilante de cambios externos, y empieza a cargar sus movimientos en
+     * columnas.
+     *
+     * @param repositorio el repositorio, ya abierto.
+     * @param ruta la ruta del archivo de la cartera, o null si no tiene uno
+     *        propio (en cuyo caso no se hacen copias ni se vigila el archivo).
+     */
+    private void usarRepositorio(RepositorioMovimientos repositorio, String ruta) {
+        this.repositorio = repositorio;
+        // Se empieza a vigilar antes de cargar, para no perder ningún cambio
+        this.vigilanteCambios = ruta == null ? null : VigilanteCambios.vigilar(repositorio, ruta,
+                cambios -> SwingUtilities.invokeLater(() -> aplicarCambiosExternos(repositorio, cambios)));
+        cargarColumnas();
+        this.colaEscritura = new ColaEscritura(repositorio);
+        this.purgaBorrados = new PurgaBorrados(repositorio);
+        this.copiaSeguridad = ruta == null ? null : new CopiaSeguridad(repositorio, ruta);
+        if (copiaSeguridad != null) {
+            copiaSeguridad.hacerCopiaSiHaceFalta(true);
+        }
+        deletedMovimientos.clear();
+    }
+
+    /**
+     * Aplica los cambios que otro proceso ha hecho en el archivo de la cartera y
+     * vuelve a mostrar los movimientos. Si los cambios no están completos, se
+     * vuelven a cargar todos los movimientos.
+     *
+     * @param origen el repositorio en el que se detectaron los cambios.
+     * @param cambios los movimientos que han cambiado.
+     */
+    private void aplicarCambiosExternos(RepositorioMovimientos origen, Cambios cambios) {
+        if (origen != repositorio) {
+            // Los cambios son de una cartera que ya se ha cerrado
+            return;
+        }
+        if (cambios.isCompleto()) {
+            cambiarColumnas(c -> c.aplicar(cambios));
         } else {
-            view.updateBannerAndFiltersColor("#123EAF"); // Azul original
+            cargarColumnas();
+        }
+        programarRecarga();
+    }
+
+    /**
+     * Carga en segundo plano los movimientos del repositorio en columnas, que
+     * se empiezan a usar al terminar. Mientras tanto, las páginas y el balance
+     * se leen del repositorio, y los cambios se guardan para aplicarlos sobre
+     * el resultado.
+     */
+    private void cargarColumnas() {
+        if (cargaColumnas != null) {
+            cargaColumnas.cancel(false);
+        }
+        columnas = null;
+        cambiosPendientes.clear();
+        RepositorioMovimientos origen = repositorio;
+        cargaColumnas = new SwingWorker<>() {
+            @Override
+            protected ColumnasMovimientos doInBackground() {
+                return ColumnasMovimientos.cargar(origen);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || cargaColumnas != this) {
+                    return;
+                }
+                cargaColumnas = null;
+                ColumnasMovimientos cargadas;
+                try {
+                    cargadas = get();
+                } catch (Exception e) {
+                    System.out.println("Error al cargar los movimientos en columnas: " + e.getMessage());
+                    cambiosPendientes.clear();
+                    return;
+                }
+                // La carga puede incluir o no los cambios hechos mientras tanto; aplicarlos otra vez no cambia nada
+                for (Consumer<ColumnasMovimientos> cambio : cambiosPendientes) {
+                    cambio.accept(cargadas);
+                }
+                cambiosPendientes.clear();
+                columnas = cargadas;
+                programarRecarga();
+            }
+        };
+        cargaColumnas.execute();
+    }
+
+    /**
+     * Aplica un cambio sobre las columnas o, si aún se están cargando, lo guarda
+     * para aplicarlo al terminar. Los cambios son movimientos añadidos o
+     * quitados, por lo que aplicarlos sobre unas columnas que ya los incluyen
+     * no cambia nada.
+     *
+     * @param cambio el cambio a aplicar.
+     */
+    private void cambiarColumnas(Consumer<ColumnasMovimientos> cambio) {
+        if (columnas != null) {
+            cambio.accept(columnas);
+        } else if (cargaColumnas != null) {
+            cambiosPendientes.add(cambio);
+        }
+    }
+
+    /**
+     * Hace una copia de seguridad de la cartera actual en segundo plano, con los
+     * cambios ya escritos. Se puede seguir trabajando mientras se hace.
+     *
+     * @return un futuro que se completa con el archivo de la copia (o con null
+     *         si no se pudo hacer), o null si la cartera actual no admite copias.
+     */
+    public CompletableFuture<File> hacerCopiaSeguridad() {
+        return copiaSeguridad == null ? null : copiaSeguridad.hacerCopia(true);
+    }
+
+    /**
+     * Espera a que se escriban todos los cambios pendientes, por ejemplo antes
+     * de exportar los movimientos.
+     *
+     * @return true si se escribieron todos los cambios, false en caso contrario.
+     */
+    public boolean vaciarEscrituras() {
+        return colaEscritura.vaciar();
+    }
+
+    /**
+     * Importa los movimientos de un archivo CSV en segundo plano, mostrando el
+     * progreso en un diálogo desde el que se puede cancelar. Al terminar se
+     * vuelven a cargar los movimientos y se informa de las líneas erróneas.
+     *
+     * @param archivo el archivo CSV con las columnas Fecha, Concepto y Cantidad.
+     * @see ImportacionCSV
+     */
+    public void importarCSV(File archivo) {
+        vaciarEscrituras();
+        ImportacionCSV importacion = new ImportacionCSV(repositorio);
+
+        JDialog dialog = new JDialog(view, "Importar CSV", false);
+        JProgressBar barra = new JProgressBar(0, 100);
+        barra.setStringPainted(true);
+        JLabel estado = new JLabel("Importando " + archivo.getName() + "...");
+        JButton cancelar = new JButton("Cancelar");
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(estado, BorderLayout.NORTH);
+        panel.add(barra, BorderLayout.CENTER);
+        panel.add(cancelar, BorderLayout.SOUTH);
+        dialog.add(panel);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.pack();
+        dialog.setSize(Math.max(dialog.getWidth(), 400), dialog.getHeight());
+        dialog.setLocationRelativeTo(view);
+
+        SwingWorker<ImportacionCSV.Resultado, ImportacionCSV.Resultado> worker = new SwingWorker<>() {
+            @Override
+            protected ImportacionCSV.Resultado doInBackground() throws Exception {
+                return importacion.importar(archivo, avance -> publish(avance));
+            }
+
+            @Override
+            protected void process(List<ImportacionCSV.Resultado> avances) {
+                ImportacionCSV.Resultado ultimo = avances.get(avances.size() - 1);
+                barra.setValue(ultimo.getPorcentaje());
+                estado.setText(String.format("%,d movimientos importados (%,.0f filas/s), %,d líneas erróneas",
+                        ultimo.getImportadas(), ultimo.getFilasPorSegundo(), ultimo.getErroneas()));
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+                // Se recargan los movimientos aunque haya fallado, ya que parte pudo escribirse
+                cargarColumnas();
+                programarRecarga();
+                try {
+                    ImportacionCSV.Resultado resultado = get();
+                    bus.publicar(new Evento.ImportacionTerminada(resultado.getImportadas(),
+                            resultado.getErroneas(), resultado.isCancelada()));
+                    mostrarResultadoImportacion(resultado);
+                } catch (Exception e) {
+                    Throwable causa = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(view, "Error al importar: " + causa.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        cancelar.addActionListener(e -> {
+            cancelar.setEnabled(false);
+            estado.setText("Cancelando...");
+            importacion.cancelar();
+        });
+        worker.execute();
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Muestra el resumen de una importación, con las primeras líneas erróneas.
+     *
+     * @param resultado el resultado de la importación.
+     */
+    private void mostrarResultadoImportacion(ImportacionCSV.Resultado resultado) {
+        String resumen = String.format("%s%,d movimientos importados en %.1f s (%,.0f filas/s).\n%,d líneas erróneas no se importaron.",
+                resultado.isCancelada() ? "Importación cancelada.\n" : "",
+                resultado.getImportadas(), resultado.getSegundos(), resultado.getFilasPorSegundo(), resultado.getErroneas());
+        if (resultado.getErrores().isEmpty()) {
+            JOptionPane.showMessageDialog(view, resumen);
+            return;
         }
+        JTextArea errores = new JTextArea(String.join("\n", resultado.getErrores()), 10, 50);
+        errores.setEditable(false);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel("<html>" + resumen.replace("\n", "<br>") + "</html>"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(errores), BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(view, panel, "Importar CSV", JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * Abre otra cartera, escribiendo antes los cambios pendientes de la actual
+     * y cerrándola. Los datos se muestran al seleccionar un filtro.
+     *
+     * @param ruta la ruta del archivo de la cartera.
+     * @return true si la cartera se abrió, false si no se pudo abrir (en cuyo
+     *         caso se sigue con la actual).
+     */
+    public boolean abrirCartera(String ruta) {
+        RepositorioMovimientos nuevo = tipoRepositorio.abrir(ruta);
+        if (nuevo == null) {
+            return false;
+        }
+        cerrar();
+        usarRepositorio(nuevo, ruta);
+        return true;
+    }
 
-        view.setMovements(movimientos);
+    /**
+     * Abre varias carteras a la vez en una vista consolidada, escribiendo antes
+     * los cambios pendientes de la actual y cerrándola. Los movimientos nuevos
+     * se añaden a la primera cartera.
+     *
+     * @param rutas las rutas de los archivos de las carteras.
+     * @return true si se abrieron todas, false si alguna no se pudo abrir (en
+     *         cuyo caso se sigue con la actual).
+     * @see RepositorioConsolidado
+     */
+    public boolean abrirConsolidado(List<String> rutas) {
+        RepositorioMovimientos nuevo = RepositorioConsolidado.abrir(tipoRepositorio, rutas);
+        if (nuevo == null) {
+            return false;
+        }
+        cerrar();
+        usarRepositorio(nuevo, null);
+        return true;
+    }
+
+    /**
+     * Escribe los cambios pendientes y cierra el repositorio. Debe llamarse al
+     * salir de la aplicación.
+     */
+    public void cerrar() {
+        if (cargaColumnas != null) {
+            cargaColumnas.cancel(false);
+            cargaColumnas = null;
+            cambiosPendientes.clear();
+        }
+        if (vigilanteCambios != null) {
+            vigilanteCambios.cerrar();
+        }
+        purgaBorrados.cerrar();
+        if (!colaEscritura.cerrar()) {
+            JOptionPane.showMessageDialog(view, "No se pudieron guardar todos los cambios.", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        if (copiaSeguridad != null) {
+            copiaSeguridad.cerrar();
+        }
+        repositorio.close();
     }
 
     /**
@@ -153,36 +962,73 @@ public class MovimientoController {
      * @param id el ID del movimiento a eliminar.
      */
     public void deleteMovimiento(long id) {
+        if (id <= 0) {
+            // El movimiento aún no se ha escrito y no tiene ID
+            JOptionPane.showMessageDialog(view, "El movimiento todavía se está guardando.", "Aviso", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         // Obtener el movimiento antes de eliminarlo
-        Movimiento movimiento = MovimientoDAO.obtenerMovimientoPorId(id);
+        Movimiento movimiento = modelo.getPorId(id);
+        if (movimiento == null) {
+            movimiento = repositorio.obtenerMovimientoPorId(id);
+        }
         if (movimiento != null) {
-            boolean success = MovimientoDAO.borrarMovimiento(id);
-            if (success) {
-                // Añadir a la pila de eliminados
-                deletedMovimientos.push(movimiento);
-                loadData();
-            } else {
-                JOptionPane.showMessageDialog(view, "Error al eliminar el movimiento.", "Error", JOptionPane.ERROR_MESSAGE);
+            Movimiento eliminado = movimiento;
+            CompletableFuture<Boolean> resultado = colaEscritura.borrar(id);
+
+            // Quitarlo de la vista y añadirlo a la pila de eliminados sin esperar a la escritura
+            modelo.quitar(eliminado);
+            boolean cargando = cargaEnCurso != null;
+            long generacion = generacionCarga;
+            deletedMovimientos.push(eliminado);
+            if (deletedMovimientos.size() > RepositorioMovimientos.TAMANIO_DESHACER) {
+                deletedMovimientos.remove(0);
             }
+
+            resultado.thenAccept(success -> SwingUtilities.invokeLater(() -> {
+                if (success) {
+                    cambiarColumnas(c -> c.quitar(eliminado));
+                    bus.publicar(new Evento.MovimientoEliminado(eliminado));
+                    if (cargaSinCambio(cargando, generacion)) {
+                        programarRecarga();
+                    }
+                } else {
+                    deletedMovimientos.remove(eliminado);
+                    programarRecarga();
+                    JOptionPane.showMessageDialog(view, "Error al eliminar el movimiento.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }));
         } else {
             JOptionPane.showMessageDialog(view, "Movimiento no encontrado.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
     /**
-     * Restaura el último movimiento eliminado.
+     * Restaura el último movimiento eliminado, aunque se eliminara en una
+     * sesión anterior. Si se eliminó en esta sesión se muestra de inmediato.
      */
     public void undoDeleteMovimiento() {
-        if (!deletedMovimientos.isEmpty()) {
-            Movimiento movimiento = deletedMovimientos.pop();
-            boolean success = MovimientoDAO.escribirMovimiento(movimiento);
-            if (success) {
-                loadData();
+        Movimiento esperado = deletedMovimientos.isEmpty() ? null : deletedMovimientos.pop();
+        CompletableFuture<Movimiento> resultado = colaEscritura.restaurar();
+        if (esperado != null) {
+            mostrarAlta(esperado);
+        }
+        boolean cargando = cargaEnCurso != null;
+        long generacion = generacionCarga;
+        resultado.thenAccept(restaurado -> SwingUtilities.invokeLater(() -> {
+            if (restaurado != null) {
+                cambiarColumnas(c -> c.anadir(restaurado));
+                bus.publicar(new Evento.MovimientoRestaurado(restaurado));
+                // Conserva su ID, así que solo hay que recargar si no era el que se mostró o si una carga pudo perderlo
+                if (esperado == null || esperado.getId() != restaurado.getId() || cargaSinCambio(cargando, generacion)) {
+                    programarRecarga();
+                }
                 JOptionPane.showMessageDialog(view, "Movimiento restaurado exitosamente.");
-            } else {
+            } else if (esperado != null) {
+                programarRecarga();
                 JOptionPane.showMessageDialog(view, "Error al restaurar el movimiento.", "Error", JOptionPane.ERROR_MESSAGE);
             }
-        }
+        }));
     }
 
     /**
@@ -190,25 +1036,22 @@ public class MovimientoController {
      */
     public void cycleFilter() {
         if (!inHelpMode) {
-            switch (currentFilter) {
-                case "Total":
-                    currentFilter = "Mes";
-                    view.highlightSelectedFilter(view.getMesLabel(), view.getAñoLabel(), view.getTotalLabel());
-                    break;
-                case "Mes":
-                    currentFilter = "Año";
-                    view.highlightSelectedFilter(view.getAñoLabel(), view.getMesLabel(), view.getTotalLabel());
+            if (filtroPersonalizado != null) {
+                // Desde un filtro personalizado se vuelve al primer periodo
+                cambiarFiltro(Periodo.MES, null);
+                return;
+            }
+            switch (periodo) {
+                case TOTAL:
+                    cambiarFiltro(Periodo.MES, null);
                     break;
-                case "Año":
-                    currentFilter = "Total";
-                    view.highlightSelectedFilter(view.getTotalLabel(), view.getMesLabel(), view.getAñoLabel());
+                case MES:
+                    cambiarFiltro(Periodo.ANIO, null);
                     break;
                 default:
-                    currentFilter = "Mes";
-                    view.highlightSelectedFilter(view.getMesLabel(), view.getAñoLabel(), view.getTotalLabel());
+                    cambiarFiltro(Periodo.TOTAL, null);
                     break;
             }
-            loadData();
         }
     }
 
@@ -410,7 +1253,7 @@ public class MovimientoController {
                 if (cantidadStr.isEmpty()) {
                     throw new NumberFormatException("La cantidad no puede estar vacía.");
                 }
-                double cantidad = Double.parseDouble(cantidadStr);
+                long cantidad = Movimiento.eurosACentimos(cantidadStr);
                 String dateString = fechaField.getText().trim();
 
                 // Verificar si se seleccionó un tipo
@@ -434,6 +1277,13 @@ public class MovimientoController {
                 // Analizar la fecha con el formatter personalizado
                 LocalDate fecha = LocalDate.parse(dateString, formatter);
 
+                // Comprobar las mismas reglas que la base de datos antes de confirmar
+                String motivo = Movimiento.validar(concepto, cantidad, fecha);
+                if (motivo != null) {
+                    JOptionPane.showMessageDialog(view, motivo, "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
                 String tipoMovimiento = (gastoRadioButton.isSelected()) ? "Gasto" : "Ingreso";
                 String formattedFecha = fecha.format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
                 int confirmOption = view.showAddMovementConfirmDialog(concepto, tipoMovimiento, cantidad, formattedFecha);
@@ -443,15 +1293,11 @@ public class MovimientoController {
                 }
 
                 movimiento = new Movimiento(0, concepto, cantidad, fecha);
-                boolean success = MovimientoDAO.escribirMovimiento(movimiento);
-                if (success) {
-                    JOptionPane.showMessageDialog(view, "Movimiento agregado exitosamente.");
-                    loadData();
-                } else {
-                    JOptionPane.showMessageDialog(view, "Error al agregar Movimiento.", "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                escribirEnSegundoPlano(movimiento, "Movimiento agregado exitosamente.", "Error al agregar Movimiento.");
             } catch (NumberFormatException nfe) {
                 JOptionPane.showMessageDialog(view, "La cantidad debe ser un número válido.", "Error", JOptionPane.ERROR_MESSAGE);
+            } catch (ArithmeticException ae) {
+                JOptionPane.showMessageDialog(view, "La cantidad no puede tener más de dos decimales.", "Error", JOptionPane.ERROR_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(view, "Entrada inválida: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -559,6 +1405,21 @@ public class MovimientoController {
         }
     }
 
+    // Acción para la combinación Ctrl+F
+    private class CtrlFKeyAction extends AbstractAction {
+
+        /**
+         * Acción asociada a la combinación Ctrl+F. Abre el diálogo para buscar
+         * movimientos por concepto si no estamos en modo ayuda.
+         *
+         * @param e el evento de acción.
+         */
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            buscarMovimientos();
+        }
+    }
+
     /**
      * Inicia el modo de ayuda, configurando el paso inicial y mostrando el
      * texto de ayuda.
@@ -646,6 +1507,8 @@ public class MovimientoController {
                         " ",
                         "	-ctrl+n: abre la pestaña de nuevo movimiento.",
                         " ",
+                        "	-ctrl+f: busca movimientos por su concepto.",
+                        " ",
                         "	-F1: abre la sección de ayuda.",
                         " ",
                         "2.Cualquier modal:",
@@ -714,7 +1577,7 @@ public class MovimientoController {
         view.setHelpStep(helpStep);
         view.exitHelpMode();
         view.limpiarAtajos();
-        loadData();
+        programarRecarga();
     }
 
     /**
@@ -750,9 +1613,7 @@ public class MovimientoController {
         @Override
         public void mouseClicked(MouseEvent e) {
             if (!inHelpMode) {
-                currentFilter = "Mes";
-                loadData();
-                view.highlightSelectedFilter(view.getMesLabel(), view.getAñoLabel(), view.getTotalLabel());
+                cambiarFiltro(Periodo.MES, null);
             }
         }
     }
@@ -768,9 +1629,7 @@ public class MovimientoController {
         @Override
         public void mouseClicked(MouseEvent e) {
             if (!inHelpMode) {
-                currentFilter = "Año";
-                loadData();
-                view.highlightSelectedFilter(view.getAñoLabel(), view.getMesLabel(), view.getTotalLabel());
+                cambiarFiltro(Periodo.ANIO, null);
             }
         }
     }
@@ -786,9 +1645,7 @@ public class MovimientoController {
         @Override
         public void mouseClicked(MouseEvent e) {
             if (!inHelpMode) {
-                currentFilter = "Total";
-                loadData();
-                view.highlightSelectedFilter(view.getTotalLabel(), view.getMesLabel(), view.getAñoLabel());
+                cambiarFiltro(Periodo.TOTAL, null);
             }
         }
     }
@@ -0,0 +1,86 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * La clase Cambios representa los movimientos que han cambiado en un repositorio desde
+ * un punto de su registro de cambios, por ejemplo porque otro proceso ha modificado el
+ * archivo. Para aplicarlos sobre una copia en memoria basta con quitar los movimientos
+ * de {@link #getQuitados()} y después añadir los de {@link #getActuales()}.
+ *
+ * @author DAM2
+ * @see RepositorioMovimientos#leerCambios(long)
+ */
+public class Cambios {
+
+    // Atributos:
+    private final long ultimo;
+    private final boolean completo;
+    private final List<Movimiento> quitados;
+    private final List<Movimiento> actuales;
+
+    /**
+     * Constructor para crear un conjunto de cambios.
+     *
+     * @param ultimo el número del último cambio leído, desde el que se leerán los siguientes.
+     * @param completo false si hay más cambios de los leídos o si parte de ellos ya no
+     *        están en el registro, en cuyo caso hay que volver a leer todos los movimientos.
+     * @param quitados los movimientos cambiados tal y como estaban antes (solo el ID y la
+     *        fecha son fiables).
+     * @param actuales los movimientos cambiados que siguen vivos, tal y como están ahora.
+     */
+    public Cambios(long ultimo, boolean completo, List<Movimiento> quitados, List<Movimiento> actuales) {
+        this.ultimo = ultimo;
+        this.completo = completo;
+        this.quitados = Collections.unmodifiableList(quitados);
+        this.actuales = Collections.unmodifiableList(actuales);
+    }
+
+    /**
+     * Obtiene el número del último cambio leído.
+     *
+     * @return el número del último cambio, desde el que se leerán los siguientes.
+     */
+    public long getUltimo() {
+        return ultimo;
+    }
+
+    /**
+     * Indica si se han leído todos los cambios. Si no, hay que volver a leer todos los
+     * movimientos del repositorio.
+     *
+     * @return true si los cambios están completos, false en caso contrario.
+     */
+    public boolean isCompleto() {
+        return completo;
+    }
+
+    /**
+     * Indica si no hay ningún cambio.
+     *
+     * @return true si no ha cambiado nada, false en caso contrario.
+     */
+    public boolean isVacio() {
+        return completo && quitados.isEmpty();
+    }
+
+    /**
+     * Obtiene los movimientos que hay que quitar: cada movimiento cambiado, con el ID y la
+     * fecha que tenía antes del cambio.
+     *
+     * @return los movimientos a quitar.
+     */
+    public List<Movimiento> getQuitados() {
+        return quitados;
+    }
+
+    /**
+     * Obtiene los movimientos cambiados que siguen vivos, con sus datos actuales.
+     *
+     * @return los movimientos a añadir.
+     */
+    public List<Movimiento> getActuales() {
+        return actuales;
+    }
+}
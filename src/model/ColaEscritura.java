@@ -0,0 +1,283 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * La clase ColaEscritura aplica en segundo plano las inserciones y los borrados de
+ * movimientos, para que la interfaz no tenga que esperar al disco.
+ *
+ * Un único hilo escritor toma todas las operaciones pendientes de una vez y las agrupa:
+ * las inserciones se escriben en un solo lote y los borrados en otro, cada uno en una
+ * transacción. Si un lote falla, sus operaciones se vuelven a escribir una a una, de
+ * forma que una fila errónea no hace fallar las demás. Cada operación devuelve un
+ * CompletableFuture que se completa con true cuando el cambio es duradero, o con false
+ * si falló. Las restauraciones (deshacer un
+ * borrado) se aplican después de todas las operaciones encoladas antes que ellas.
+ *
+ * Antes de cerrar la aplicación o de cambiar de archivo debe llamarse a {@link #vaciar()}
+ * o a {@link #cerrar()} para no perder las operaciones pendientes.
+ *
+ * @author DAM2
+ */
+public class ColaEscritura {
+
+    /** Número máximo de operaciones que se agrupan en cada pasada del escritor. */
+    public static final int MAX_LOTE = 1000;
+
+    /** Tiempo máximo de espera al vaciar la cola, en segundos. */
+    public static final int ESPERA_VACIADO = 30;
+
+    private final RepositorioMovimientos repositorio;
+    private final BlockingQueue<Operacion> pendientes = new LinkedBlockingQueue<>();
+    private final Thread escritor;
+    // Protege el cierre: ninguna operación se encola después de cerrar
+    private final Object cerrojo = new Object();
+    private volatile boolean cerrada = false;
+    private final AtomicLong operaciones = new AtomicLong();
+    private final AtomicLong pasadas = new AtomicLong();
+
+    /**
+     * Constructor que arranca el hilo escritor.
+     *
+     * @param repositorio el repositorio en el que se escriben las operaciones.
+     */
+    public ColaEscritura(RepositorioMovimientos repositorio) {
+        this.repositorio = repositorio;
+        escritor = new Thread(this::escribir, "ColaEscritura");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Encola la inserción de un movimiento. Cuando se escriba, el movimiento recibirá su ID.
+     *
+     * @param movimiento el movimiento a insertar.
+     * @return un futuro que se completa con true si el movimiento se insertó, o false si falló.
+     */
+    public CompletableFuture<Boolean> insertar(Movimiento movimiento) {
+        return encolar(new Operacion(Tipo.INSERTAR, movimiento, 0)).resultado;
+    }
+
+    /**
+     * Encola el borrado de un movimiento.
+     *
+     * @param id el ID del movimiento a eliminar.
+     * @return un futuro que se completa con true si el movimiento se eliminó, o false si falló.
+     */
+    public CompletableFuture<Boolean> borrar(long id) {
+        return encolar(new Operacion(Tipo.BORRAR, null, id)).resultado;
+    }
+
+    /**
+     * Encola la restauración del último movimiento borrado.
+     *
+     * @return un futuro que se completa con el movimiento restaurado, o con null si no había
+     *         nada que restaurar o si falló.
+     * @see RepositorioMovimientos#deshacerBorrado()
+     */
+    public CompletableFuture<Movimiento> restaurar() {
+        return encolar(new Operacion(Tipo.RESTAURAR, null, 0)).restaurado;
+    }
+
+    /**
+     * Espera a que se hayan escrito todas las operaciones encoladas hasta el momento.
+     *
+     * @return true si se escribieron a tiempo, false si se agotó la espera.
+     */
+    public boolean vaciar() {
+        boolean vaciada;
+        try {
+            encolar(new Operacion(Tipo.VACIAR, null, 0)).resultado.get(ESPERA_VACIADO, TimeUnit.SECONDS);
+            vaciada = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            vaciada = false;
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println("ColaEscritura: No se pudieron escribir las operaciones pendientes.");
+            vaciada = false;
+        }
+        return vaciada;
+    }
+
+    /**
+     * Escribe las operaciones pendientes y detiene el hilo escritor, esperando a que
+     * termine. Las operaciones encoladas después se rechazan.
+     *
+     * @return true si las operaciones pendientes se escribieron, false en caso contrario.
+     */
+    public boolean cerrar() {
+        boolean vaciada = vaciar();
+        synchronized (cerrojo) {
+            cerrada = true;
+        }
+        escritor.interrupt();
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return vaciada;
+    }
+
+    /**
+     * Obtiene las estadísticas de escritura de la cola.
+     *
+     * @return un texto con el número de operaciones escritas y de pasadas del escritor.
+     */
+    public String estadisticas() {
+        return "ColaEscritura: " + operaciones.get() + " operaciones escritas en " + pasadas.get() + " pasadas.";
+    }
+
+    private Operacion encolar(Operacion operacion) {
+        synchronized (cerrojo) {
+            if (!cerrada) {
+                pendientes.add(operacion);
+                return operacion;
+            }
+        }
+        operacion.rechazar();
+        return operacion;
+    }
+
+    /**
+     * Bucle del hilo escritor: espera a que haya alguna operación, toma también todas
+     * las que se hayan acumulado y las escribe agrupadas.
+     */
+    private void escribir() {
+        List<Operacion> lote = new ArrayList<>();
+        while (!cerrada) {
+            try {
+                lote.add(pendientes.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            pendientes.drainTo(lote, MAX_LOTE - 1);
+            procesar(lote);
+            lote.clear();
+        }
+        // Rechazar lo que haya quedado tras el cierre; después ya no se encola nada
+        Operacion operacion;
+        while ((operacion = pendientes.poll()) != null) {
+            operacion.rechazar();
+        }
+    }
+
+    /**
+     * Escribe un lote de operaciones: las inserciones y los borrados se agrupan hasta la
+     * siguiente restauración (o hasta el final del lote), de forma que cada restauración
+     * ve aplicadas todas las operaciones encoladas antes que ella. Los vaciados se
+     * completan al final, cuando todo lo anterior es duradero.
+     *
+     * @param lote las operaciones a escribir, en el orden en que se encolaron.
+     */
+    private void procesar(List<Operacion> lote) {
+        List<Operacion> tramo = new ArrayList<>();
+        for (Operacion operacion : lote) {
+            if (operacion.tipo == Tipo.RESTAURAR) {
+                escribirTramo(tramo);
+                tramo.clear();
+                operacion.restaurado.complete(repositorio.deshacerBorrado());
+                operaciones.incrementAndGet();
+            } else {
+                tramo.add(operacion);
+            }
+        }
+        escribirTramo(tramo);
+        pasadas.incrementAndGet();
+    }
+
+    /**
+     * Escribe un tramo de inserciones y borrados: primero todas las inserciones, en un solo
+     * lote, y después todos los borrados, en otro. Los vaciados del tramo se completan
+     * con true.
+     *
+     * @param tramo las operaciones a escribir, sin restauraciones.
+     */
+    private void escribirTramo(List<Operacion> tramo) {
+        List<Operacion> inserciones = new ArrayList<>();
+        List<Operacion> borrados = new ArrayList<>();
+        for (Operacion operacion : tramo) {
+            if (operacion.tipo == Tipo.INSERTAR) {
+                inserciones.add(operacion);
+            } else if (operacion.tipo == Tipo.BORRAR) {
+                borrados.add(operacion);
+            } else {
+                operacion.resultado.complete(true);
+            }
+        }
+        escribirLote(inserciones, lote -> {
+            List<Movimiento> movimientos = new ArrayList<>(lote.size());
+            for (Operacion operacion : lote) {
+                movimientos.add(operacion.movimiento);
+            }
+            return repositorio.escribirMovimientos(movimientos) != null;
+        });
+        escribirLote(borrados, lote -> {
+            List<Long> ids = new ArrayList<>(lote.size());
+            for (Operacion operacion : lote) {
+                ids.add(operacion.id);
+            }
+            return repositorio.borrarMovimientos(ids);
+        });
+    }
+
+    /**
+     * Escribe un lote de operaciones del mismo tipo en una sola transacción. Si falla
+     * (no se escribe ninguna), se vuelven a escribir una a una, de forma que solo se
+     * completan con false las que fallan por sí mismas, por ejemplo una fila que no
+     * cumple las reglas de la tabla.
+     *
+     * @param lote las operaciones a escribir.
+     * @param escritura escribe una lista de operaciones y devuelve si se escribieron.
+     */
+    private void escribirLote(List<Operacion> lote, Predicate<List<Operacion>> escritura) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        boolean escrito = escritura.test(lote);
+        for (Operacion operacion : lote) {
+            operacion.resultado.complete(escrito || (lote.size() > 1 && escritura.test(List.of(operacion))));
+        }
+        operaciones.addAndGet(lote.size());
+    }
+
+    /**
+     * Tipos de operación que admite la cola.
+     */
+    private enum Tipo {
+        INSERTAR, BORRAR, RESTAURAR, VACIAR
+    }
+
+    /**
+     * Operación pendiente: una inserción (con movimiento), un borrado (con ID), una
+     * restauración o un vaciado.
+     */
+    private static class Operacion {
+
+        private final Tipo tipo;
+        private final Movimiento movimiento;
+        private final long id;
+        private final CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+        private final CompletableFuture<Movimiento> restaurado = new CompletableFuture<>();
+
+        Operacion(Tipo tipo, Movimiento movimiento, long id) {
+            this.tipo = tipo;
+            this.movimiento = movimiento;
+            this.id = id;
+        }
+
+        void rechazar() {
+            resultado.complete(false);
+            restaurado.complete(null);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * La clase ColumnasMovimientos guarda en memoria una copia de los movimientos vivos de
+ * una cartera organizada por columnas: un array de tipo primitivo para los IDs, otro
+ * para los días, otro para los céntimos y otro para el número de concepto. Las columnas
+ * se mantienen ordenadas por día e ID, de forma que filtrar por fecha es una búsqueda
+ * binaria y sumar o contar es un bucle sobre un array, sin crear ningún objeto.
+ *
+ * Los conceptos se guardan como números de un {@link DiccionarioConceptos}, por lo
+ * que cada texto distinto se guarda una sola vez. Los objetos {@link Movimiento} solo
+ * se crean para los movimientos que se devuelven en una página. Las columnas se cargan
+ * una vez por cartera con {@link #cargar} y después se mantienen al día con
+ * {@link #anadir} y {@link #quitar}.
+ *
+ * Las páginas, sumas y cuentas se piden con una {@link Consulta}. Su rango de fechas se
+ * resuelve con búsqueda binaria; si además filtra por cantidad o concepto, se recorren
+ * solo las filas de ese rango comparando la columna de céntimos y el número de
+ * concepto con los conceptos que la cumplen, que se buscan una vez por consulta.
+ *
+ * @author DAM2
+ */
+public class ColumnasMovimientos {
+
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private long[] ids = new long[CAPACIDAD_INICIAL];
+    private long[] dias = new long[CAPACIDAD_INICIAL];
+    private long[] centimos = new long[CAPACIDAD_INICIAL];
+    private int[] conceptos = new int[CAPACIDAD_INICIAL];
+    private int tamanio;
+
+    private final DiccionarioConceptos diccionario = new DiccionarioConceptos();
+
+    /**
+     * Carga los movimientos vivos de un repositorio y los ordena por día e ID.
+     *
+     * @param repositorio el repositorio del que se leen los movimientos.
+     * @return las columnas con todos los movimientos del repositorio.
+     * @throws IllegalStateException si ocurre un error leyendo los movimientos.
+     */
+    public static ColumnasMovimientos cargar(RepositorioMovimientos repositorio) {
+        ColumnasMovimientos columnas = new ColumnasMovimientos();
+        try (Stream<Movimiento> movimientos = repositorio.streamMovimientos()) {
+            movimientos.forEachOrdered(columnas::anadirAlFinal);
+        }
+        columnas.ordenar();
+        return columnas;
+    }
+
+    private void anadirAlFinal(Movimiento movimiento) {
+        asegurarCapacidad(tamanio + 1);
+        ids[tamanio] = movimiento.getId();
+        dias[tamanio] = movimiento.getFecha().toEpochDay();
+        centimos[tamanio] = movimiento.getCantidad();
+        conceptos[tamanio] = diccionario.anadir(movimiento.getConcepto());
+        tamanio++;
+    }
+
+    /**
+     * Ordena las columnas por día e ID. Si ya están ordenadas (lo habitual, ya que los
+     * repositorios suelen devolverlas por fecha) solo se comprueba el orden; si están en
+     * orden inverso se invierten sin comparar.
+     */
+    private void ordenar() {
+        if (ordenadas()) {
+            return;
+        }
+        invertir();
+        if (ordenadas()) {
+            return;
+        }
+        // Se ordena una permutación de posiciones por (día, ID) sin crear objetos
+        int[] posiciones = new int[tamanio];
+        for (int i = 0; i < tamanio; i++) {
+            posiciones[i] = i;
+        }
+        ordenarPosiciones(posiciones, new int[tamanio], 0, tamanio);
+        ids = permutar(ids, posiciones);
+        dias = permutar(dias, posiciones);
+        centimos = permutar(centimos, posiciones);
+        int[] ordenados = new int[Math.max(tamanio, CAPACIDAD_INICIAL)];
+        for (int i = 0; i < tamanio; i++) {
+            ordenados[i] = conceptos[posiciones[i]];
+        }
+        conceptos = ordenados;
+    }
+
+    private boolean ordenadas() {
+        for (int i = 1; i < tamanio; i++) {
+            if (comparar(i - 1, dias[i], ids[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void invertir() {
+        for (int i = 0, j = tamanio - 1; i < j; i++, j--) {
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            long dia = dias[i];
+            dias[i] = dias[j];
+            dias[j] = dia;
+            long cantidad = centimos[i];
+            centimos[i] = centimos[j];
+            centimos[j] = cantidad;
+            int concepto = conceptos[i];
+            conceptos[i] = conceptos[j];
+            conceptos[j] = concepto;
+        }
+    }
+
+    /**
+     * Ordenación por mezcla (estable) de las posiciones [desde, hasta).
+     */
+    private void ordenarPosiciones(int[] posiciones, int[] auxiliar, int desde, int hasta) {
+        if (hasta - desde < 2) {
+            return;
+        }
+        int medio = (desde + hasta) >>> 1;
+        ordenarPosiciones(posiciones, auxiliar, desde, medio);
+        ordenarPosiciones(posiciones, auxiliar, medio, hasta);
+        System.arraycopy(posiciones, desde, auxiliar, desde, hasta - desde);
+        int i = desde;
+        int j = medio;
+        for (int k = desde; k < hasta; k++) {
+            if (j >= hasta || (i < medio && comparar(auxiliar[i], dias[auxiliar[j]], ids[auxiliar[j]]) <= 0)) {
+                posiciones[k] = auxiliar[i++];
+            } else {
+                posiciones[k] = auxiliar[j++];
+            }
+        }
+    }
+
+    private long[] permutar(long[] columna, int[] posiciones) {
+        long[] ordenada = new long[Math.max(tamanio, CAPACIDAD_INICIAL)];
+        for (int i = 0; i < tamanio; i++) {
+            ordenada[i] = columna[posiciones[i]];
+        }
+        return ordenada;
+    }
+
+    /**
+     * Compara la fila i con un (día, ID).
+     */
+    private int comparar(int i, long dia, long id) {
+        return dias[i] != dia ? Long.compare(dias[i], dia) : Long.compare(ids[i], id);
+    }
+
+    /**
+     * Busca la posición en la que iría un (día, ID): la primera fila mayor o igual.
+     */
+    private int posicion(long dia, long id) {
+        int bajo = 0;
+        int alto = tamanio;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (comparar(medio, dia, id) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Obtiene la primera fila a partir de una fecha.
+     */
+    private int primera(LocalDate desde) {
+        return desde == null ? 0 : posicion(desde.toEpochDay(), Long.MIN_VALUE);
+    }
+
+    /**
+     * Obtiene la fila siguiente a la última de una fecha.
+     */
+    private int fin(LocalDate hasta) {
+        return hasta == null ? tamanio : posicion(hasta.toEpochDay() + 1, Long.MIN_VALUE);
+    }
+
+    /**
+     * Busca los números de concepto que cumplen una consulta.
+     *
+     * @return los números de los conceptos, o null si la consulta no filtra por concepto.
+     */
+    private BitSet conceptosDe(Consulta consulta) {
+        return consulta.filtraConcepto() ? diccionario.buscar(consulta) : null;
+    }
+
+    /**
+     * Comprueba si la fila i cumple los criterios de cantidad y concepto de una consulta
+     * (el de fechas ya lo cumple por su posición).
+     */
+    private boolean cumple(int i, Consulta consulta, BitSet conceptosValidos) {
+        return consulta.cumpleCantidad(centimos[i]) && (conceptosValidos == null || conceptosValidos.get(conceptos[i]));
+    }
+
+    /**
+     * Añade un movimiento ya escrito (con su ID definitivo) en su sitio. Si ya estaba,
+     * solo se actualizan su cantidad y su concepto.
+     *
+     * @param movimiento el movimiento añadido o restaurado.
+     */
+    public synchronized void anadir(Movimiento movimiento) {
+        long dia = movimiento.getFecha().toEpochDay();
+        int i = posicion(dia, movimiento.getId());
+        if (i < tamanio && ids[i] == movimiento.getId() && dias[i] == dia) {
+            centimos[i] = movimiento.getCantidad();
+            conceptos[i] = diccionario.anadir(movimiento.getConcepto());
+            return;
+        }
+        asegurarCapacidad(tamanio + 1);
+        int despues = tamanio - i;
+        System.arraycopy(ids, i, ids, i + 1, despues);
+        System.arraycopy(dias, i, dias, i + 1, despues);
+        System.arraycopy(centimos, i, centimos, i + 1, despues);
+        System.arraycopy(conceptos, i, conceptos, i + 1, despues);
+        ids[i] = movimiento.getId();
+        dias[i] = dia;
+        centimos[i] = movimiento.getCantidad();
+        conceptos[i] = diccionario.anadir(movimiento.getConcepto());
+        tamanio++;
+    }
+
+    /**
+     * Quita un movimiento borrado.
+     *
+     * @param movimiento el movimiento borrado.
+     * @return true si estaba en las columnas, false en caso contrario.
+     */
+    public synchronized boolean quitar(Movimiento movimiento) {
+        int i = posicion(movimiento.getFecha().toEpochDay(), movimiento.getId());
+        if (i >= tamanio || ids[i] != movimiento.getId()) {
+            return false;
+        }
+        int despues = tamanio - i - 1;
+        System.arraycopy(ids, i + 1, ids, i, despues);
+        System.arraycopy(dias, i + 1, dias, i, despues);
+        System.arraycopy(centimos, i + 1, centimos, i, despues);
+        System.arraycopy(conceptos, i + 1, conceptos, i, despues);
+        tamanio--;
+        return true;
+    }
+
+    /**
+     * Aplica los cambios leídos del registro de cambios: quita cada movimiento cambiado
+     * de donde estaba y añade los que siguen vivos con sus datos actuales.
+     *
+     * @param cambios los cambios, que deben estar completos.
+     */
+    public synchronized void aplicar(Cambios cambios) {
+        for (Movimiento quitado : cambios.getQuitados()) {
+            quitar(quitado);
+        }
+        for (Movimiento actual : cambios.getActuales()) {
+            anadir(actual);
+        }
+    }
+
+    /**
+     * Suma las cantidades de los movimientos a partir de una fecha.
+     *
+     * @param desde la fecha a partir de la cual (inclusive) se suman, o null para todos.
+     * @return el total en céntimos.
+     */
+    public long sumar(LocalDate desde) {
+        return sumar(Consulta.desde(desde));
+    }
+
+    /**
+     * Suma las cantidades de los movimientos que cumplen una consulta.
+     *
+     * @param consulta la consulta.
+     * @return el total en céntimos.
+     */
+    public synchronized long sumar(Consulta consulta) {
+        if (consulta.isVacia()) {
+            return 0;
+        }
+        BitSet conceptosValidos = conceptosDe(consulta);
+        boolean filtra = consulta.filtraCantidad() || conceptosValidos != null;
+        long total = 0;
+        for (int i = primera(consulta.getDesde()), fin = fin(consulta.getHasta()); i < fin; i++) {
+            if (!filtra || cumple(i, consulta, conceptosValidos)) {
+                total += centimos[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Cuenta los movimientos a partir de una fecha.
+     *
+     * @param desde la fecha a partir de la cual (inclusive) se cuentan, o null para todos.
+     * @return el número de movimientos.
+     */
+    public int contar(LocalDate desde) {
+        return contar(Consulta.desde(desde));
+    }
+
+    /**
+     * Cuenta los movimientos que cumplen una consulta. Si solo filtra por fechas no se
+     * recorre ninguna fila.
+     *
+     * @param consulta la consulta.
+     * @return el número de movimientos.
+     */
+    public synchronized int contar(Consulta consulta) {
+        if (consulta.isVacia()) {
+            return 0;
+        }
+        int inicio = primera(consulta.getDesde());
+        int fin = fin(consulta.getHasta());
+        BitSet conceptosValidos = conceptosDe(consulta);
+        if (!consulta.filtraCantidad() && conceptosValidos == null) {
+            return Math.max(0, fin - inicio);
+        }
+        int numero = 0;
+        for (int i = inicio; i < fin; i++) {
+            if (cumple(i, consulta, conceptosValidos)) {
+                numero++;
+            }
+        }
+        return numero;
+    }
+
+    /**
+     * Obtiene el número, la suma y las fechas extremas de los movimientos a partir de una
+     * fecha, igual que {@link RepositorioMovimientos#obtenerResumen(LocalDate)}.
+     *
+     * @param desde la fecha a partir de la cual (inclusive) se agregan, o null para todos.
+     * @return el resumen de los movimientos.
+     */
+    public synchronized Resumen resumir(LocalDate desde) {
+        int primera = primera(desde);
+        return primera >= tamanio
+                ? new Resumen(0, 0, null, null)
+                : new Resumen(tamanio - primera, sumar(desde), LocalDate.ofEpochDay(dias[primera]), LocalDate.ofEpochDay(dias[tamanio - 1]));
+    }
+
+    /**
+     * Lee una página de movimientos, igual que
+     * {@link RepositorioMovimientos#leerPagina(LocalDate, Movimiento, int)}: del más
+     * reciente al más antiguo y, dentro de un mismo día, por ID descendente.
+     *
+     * @param desde la fecha a partir de la cual (inclusive) se leen, o null para todos.
+     * @param ultimo el último movimiento de la página anterior, o null para la primera.
+     * @param tamanioPagina el número máximo de movimientos de la página.
+     * @return un arreglo con los movimientos de la página.
+     */
+    public Movimiento[] leerPagina(LocalDate desde, Movimiento ultimo, int tamanioPagina) {
+        return leerPagina(Consulta.desde(desde), ultimo, tamanioPagina);
+    }
+
+    /**
+     * Lee una página de los movimientos que cumplen una consulta, en el mismo orden que
+     * {@link #leerPagina(LocalDate, Movimiento, int)}. Si solo filtra por fechas, la
+     * página se copia directamente; si no, se recorren las filas hacia atrás desde el
+     * último movimiento hasta llenarla.
+     *
+     * @param consulta la consulta.
+     * @param ultimo el último movimiento de la página anterior, o null para la primera.
+     * @param tamanioPagina el número máximo de movimientos de la página.
+     * @return un arreglo con los movimientos de la página.
+     */
+    public synchronized Movimiento[] leerPagina(Consulta consulta, Movimiento ultimo, int tamanioPagina) {
+        if (consulta.isVacia()) {
+            return new Movimiento[0];
+        }
+        int fin = fin(consulta.getHasta());
+        if (ultimo != null) {
+            fin = Math.min(fin, posicion(ultimo.getFecha().toEpochDay(), ultimo.getId()));
+        }
+        int primera = primera(consulta.getDesde());
+        BitSet conceptosValidos = conceptosDe(consulta);
+        if (!consulta.filtraCantidad() && conceptosValidos == null) {
+            int inicio = Math.max(primera, fin - tamanioPagina);
+            Movimiento[] pagina = new Movimiento[Math.max(0, fin - inicio)];
+            for (int i = fin - 1, j = 0; i >= inicio; i--, j++) {
+                pagina[j] = crear(i);
+            }
+            return pagina;
+        }
+        List<Movimiento> pagina = new ArrayList<>(tamanioPagina);
+        for (int i = fin - 1; i >= primera && pagina.size() < tamanioPagina; i--) {
+            if (cumple(i, consulta, conceptosValidos)) {
+                pagina.add(crear(i));
+            }
+        }
+        return pagina.toArray(new Movimiento[0]);
+    }
+
+    private Movimiento crear(int i) {
+        return new Movimiento(ids[i], diccionario.texto(conceptos[i]), centimos[i], LocalDate.ofEpochDay(dias[i]));
+    }
+
+    private void asegurarCapacidad(int capacidad) {
+        if (capacidad > ids.length) {
+            int nueva = Math.max(capacidad, ids.length * 2);
+            ids = Arrays.copyOf(ids, nueva);
+            dias = Arrays.copyOf(dias, nueva);
+            centimos = Arrays.copyOf(centimos, nueva);
+            conceptos = Arrays.copyOf(conceptos, nueva);
+        }
+    }
+}
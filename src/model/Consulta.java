@@ -0,0 +1,344 @@
+package model;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * La clase Consulta describe qué movimientos se quieren ver: un rango de fechas, un
+ * rango de cantidades (los ingresos son las cantidades positivas y los gastos las
+ * negativas) y textos que debe contener el concepto. Cada criterio se crea por
+ * separado y se combinan con {@link #y(Consulta)}, que devuelve una consulta nueva con
+ * los dos; las consultas nunca cambian una vez creadas.
+ *
+ * La misma consulta se puede resolver en la base de datos, con
+ * {@link RepositorioMovimientos#leerPagina(Consulta, Movimiento, int)}, o sobre la
+ * copia en memoria de {@link ColumnasMovimientos}. Los conceptos se comparan sin
+ * distinguir mayúsculas ni tildes, y en ambos casos se resuelven contra el diccionario
+ * de conceptos (cada texto distinto se comprueba una sola vez), así que el resultado
+ * es el mismo.
+ *
+ * @author DAM2
+ */
+public class Consulta {
+
+    private static final Consulta TODOS = new Consulta(null, null, Long.MIN_VALUE, Long.MAX_VALUE, List.of());
+
+    // Atributos:
+    private final LocalDate desde;
+    private final LocalDate hasta;
+    private final long minimo;
+    private final long maximo;
+    private final List<String> conceptos;
+
+    private Consulta(LocalDate desde, LocalDate hasta, long minimo, long maximo, List<String> conceptos) {
+        this.desde = desde;
+        this.hasta = hasta;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.conceptos = conceptos;
+    }
+
+    /**
+     * Obtiene la consulta que no filtra nada.
+     *
+     * @return la consulta de todos los movimientos.
+     */
+    public static Consulta todos() {
+        return TODOS;
+    }
+
+    /**
+     * Crea una consulta por rango de fechas.
+     *
+     * @param desde la primera fecha (inclusive), o null para no limitarla.
+     * @param hasta la última fecha (inclusive), o null para no limitarla.
+     * @return la consulta de los movimientos entre las dos fechas.
+     */
+    public static Consulta entre(LocalDate desde, LocalDate hasta) {
+        return new Consulta(desde, hasta, Long.MIN_VALUE, Long.MAX_VALUE, List.of());
+    }
+
+    /**
+     * Crea una consulta de los movimientos a partir de una fecha.
+     *
+     * @param desde la primera fecha (inclusive), o null para todos.
+     * @return la consulta de los movimientos desde esa fecha.
+     */
+    public static Consulta desde(LocalDate desde) {
+        return desde == null ? TODOS : entre(desde, null);
+    }
+
+    /**
+     * Crea una consulta de los movimientos de los últimos días, contando desde hoy.
+     *
+     * @param dias el número de días.
+     * @return la consulta de los movimientos desde hace ese número de días.
+     */
+    public static Consulta ultimosDias(int dias) {
+        return desde(LocalDate.now().minusDays(dias));
+    }
+
+    /**
+     * Crea una consulta por rango de cantidades.
+     *
+     * @param minimo la menor cantidad en céntimos (inclusive), o null para no limitarla.
+     * @param maximo la mayor cantidad en céntimos (inclusive), o null para no limitarla.
+     * @return la consulta de los movimientos entre las dos cantidades.
+     */
+    public static Consulta cantidadEntre(Long minimo, Long maximo) {
+        return new Consulta(null, null, minimo == null ? Long.MIN_VALUE : minimo,
+                maximo == null ? Long.MAX_VALUE : maximo, List.of());
+    }
+
+    /**
+     * Crea una consulta de los ingresos (cantidades positivas).
+     *
+     * @return la consulta de los ingresos.
+     */
+    public static Consulta ingresos() {
+        return cantidadEntre(1L, null);
+    }
+
+    /**
+     * Crea una consulta de los gastos (cantidades negativas).
+     *
+     * @return la consulta de los gastos.
+     */
+    public static Consulta gastos() {
+        return cantidadEntre(null, -1L);
+    }
+
+    /**
+     * Crea una consulta de los movimientos cuyo concepto contiene un texto, sin
+     * distinguir mayúsculas ni tildes.
+     *
+     * @param texto el texto a buscar en el concepto.
+     * @return la consulta de los movimientos con ese texto, o la de todos si el texto
+     *         está vacío.
+     */
+    public static Consulta concepto(String texto) {
+        String normalizado = texto == null ? "" : normalizar(texto.trim());
+        return normalizado.isEmpty() ? TODOS
+                : new Consulta(null, null, Long.MIN_VALUE, Long.MAX_VALUE, List.of(normalizado));
+    }
+
+    /**
+     * Combina esta consulta con otra: los movimientos deben cumplir las dos.
+     *
+     * @param otra la otra consulta.
+     * @return una consulta nueva con los criterios de ambas.
+     */
+    public Consulta y(Consulta otra) {
+        if (otra == TODOS) {
+            return this;
+        }
+        if (this == TODOS) {
+            return otra;
+        }
+        List<String> unidos = new ArrayList<>(conceptos);
+        for (String texto : otra.conceptos) {
+            if (!unidos.contains(texto)) {
+                unidos.add(texto);
+            }
+        }
+        return new Consulta(mayor(desde, otra.desde), menor(hasta, otra.hasta),
+                Math.max(minimo, otra.minimo), Math.min(maximo, otra.maximo), List.copyOf(unidos));
+    }
+
+    private static LocalDate mayor(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate menor(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Pasa un texto a minúsculas y le quita las tildes, para comparar conceptos.
+     *
+     * @param texto el texto a normalizar.
+     * @return el texto normalizado.
+     */
+    public static String normalizar(String texto) {
+        return Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indica si ningún movimiento puede cumplir la consulta, porque alguno de sus
+     * rangos está vacío. Así no hace falta leer nada.
+     *
+     * @return true si la consulta no puede devolver movimientos, false en caso contrario.
+     */
+    public boolean isVacia() {
+        return minimo > maximo || (desde != null && hasta != null && desde.isAfter(hasta));
+    }
+
+    /**
+     * Indica si la consulta filtra por cantidad.
+     *
+     * @return true si hay un rango de cantidades, false en caso contrario.
+     */
+    public boolean filtraCantidad() {
+        return minimo != Long.MIN_VALUE || maximo != Long.MAX_VALUE;
+    }
+
+    /**
+     * Indica si la consulta filtra por concepto.
+     *
+     * @return true si el concepto debe contener algún texto, false en caso contrario.
+     */
+    public boolean filtraConcepto() {
+        return !conceptos.isEmpty();
+    }
+
+    /**
+     * Comprueba si un movimiento cumple la consulta.
+     *
+     * @param movimiento el movimiento.
+     * @return true si lo cumple, false en caso contrario.
+     */
+    public boolean cumple(Movimiento movimiento) {
+        return cumpleFecha(movimiento.getFecha()) && cumpleCantidad(movimiento.getCantidad())
+                && cumpleConcepto(movimiento.getConcepto());
+    }
+
+    /**
+     * Comprueba si una fecha está dentro del rango de la consulta.
+     *
+     * @param fecha la fecha.
+     * @return true si la cumple, false en caso contrario.
+     */
+    public boolean cumpleFecha(LocalDate fecha) {
+        return (desde == null || !fecha.isBefore(desde)) && (hasta == null || !fecha.isAfter(hasta));
+    }
+
+    /**
+     * Comprueba si una cantidad está dentro del rango de la consulta.
+     *
+     * @param cantidad la cantidad en céntimos.
+     * @return true si la cumple, false en caso contrario.
+     */
+    public boolean cumpleCantidad(long cantidad) {
+        return cantidad >= minimo && cantidad <= maximo;
+    }
+
+    /**
+     * Comprueba si un concepto contiene todos los textos de la consulta.
+     *
+     * @param concepto el texto del concepto.
+     * @return true si lo cumple, false en caso contrario.
+     */
+    public boolean cumpleConcepto(String concepto) {
+        if (conceptos.isEmpty()) {
+            return true;
+        }
+        if (concepto == null) {
+            return false;
+        }
+        String normalizado = normalizar(concepto);
+        for (String texto : conceptos) {
+            if (!normalizado.contains(texto)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Obtiene la primera fecha de la consulta.
+     *
+     * @return la primera fecha (inclusive), o null si no está limitada.
+     */
+    public LocalDate getDesde() {
+        return desde;
+    }
+
+    /**
+     * Obtiene la última fecha de la consulta.
+     *
+     * @return la última fecha (inclusive), o null si no está limitada.
+     */
+    public LocalDate getHasta() {
+        return hasta;
+    }
+
+    /**
+     * Obtiene la menor cantidad de la consulta.
+     *
+     * @return la menor cantidad en céntimos (inclusive), o Long.MIN_VALUE si no está limitada.
+     */
+    public long getMinimo() {
+        return minimo;
+    }
+
+    /**
+     * Obtiene la mayor cantidad de la consulta.
+     *
+     * @return la mayor cantidad en céntimos (inclusive), o Long.MAX_VALUE si no está limitada.
+     */
+    public long getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * Obtiene los textos que debe contener el concepto, ya normalizados.
+     *
+     * @return los textos, vacío si no se filtra por concepto.
+     */
+    public List<String> getConceptos() {
+        return Collections.unmodifiableList(conceptos);
+    }
+
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) {
+            return true;
+        }
+        if (!(otro instanceof Consulta)) {
+            return false;
+        }
+        Consulta consulta = (Consulta) otro;
+        return minimo == consulta.minimo && maximo == consulta.maximo && Objects.equals(desde, consulta.desde)
+                && Objects.equals(hasta, consulta.hasta) && conceptos.equals(consulta.conceptos);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(desde, hasta, minimo, maximo, conceptos);
+    }
+
+    /**
+     * Describe la consulta para mostrarla al usuario, por ejemplo
+     * "desde 2024-01-01, gastos, concepto «super»".
+     *
+     * @return la descripción de la consulta.
+     */
+    @Override
+    public String toString() {
+        List<String> partes = new ArrayList<>();
+        if (desde != null && hasta != null) {
+            partes.add("del " + desde + " al " + hasta);
+        } else if (desde != null) {
+            partes.add("desde " + desde);
+        } else if (hasta != null) {
+            partes.add("hasta " + hasta);
+        }
+        if (minimo == 1 && maximo == Long.MAX_VALUE) {
+            partes.add("ingresos");
+        } else if (minimo == Long.MIN_VALUE && maximo == -1) {
+            partes.add("gastos");
+        } else if (filtraCantidad()) {
+            partes.add("cantidad" + (minimo == Long.MIN_VALUE ? "" : " desde " + Movimiento.centimosAEuros(minimo))
+                    + (maximo == Long.MAX_VALUE ? "" : " hasta " + Movimiento.centimosAEuros(maximo)));
+        }
+        for (String texto : conceptos) {
+            partes.add("concepto «" + texto + "»");
+        }
+        return partes.isEmpty() ? "todos" : String.join(", ", partes);
+    }
+}
@@ -0,0 +1,181 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+/**
+ * La clase CopiaSeguridad hace copias de seguridad de una cartera en segundo plano, sin
+ * bloquear la interfaz ni las lecturas y escrituras de la cartera.
+ *
+ * Las copias se guardan en la carpeta {@value #CARPETA}, junto a la cartera, con la fecha
+ * y hora en el nombre (por ejemplo {@code Movimientos-20241231-235959.db}) y, si se pide,
+ * comprimidas con gzip ({@code .db.gz}). Solo se conservan las {@link #MAXIMO_COPIAS}
+ * más recientes.
+ *
+ * @author DAM2
+ * @see RepositorioMovimientos#copiarA(File)
+ */
+public class CopiaSeguridad {
+
+    /** Carpeta, junto a la cartera, en la que se guardan las copias. */
+    public static final String CARPETA = "Copias";
+
+    /** Número de copias que se conservan de cada cartera. */
+    public static final int MAXIMO_COPIAS = 10;
+
+    /** Horas tras las cuales se hace una copia automática al abrir la cartera. */
+    public static final int HORAS_ENTRE_COPIAS = 24;
+
+    /** Segundos que se espera a que termine una copia en curso al cerrar. */
+    public static final int ESPERA_CIERRE = 30;
+
+    private static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String EXTENSION = ".db";
+    private static final String EXTENSION_COMPRIMIDA = ".db.gz";
+
+    private final RepositorioMovimientos repositorio;
+    private final File carpeta;
+    private final String nombre;
+    // Nombre exacto de las copias de esta cartera, para no confundirlas con las de otra
+    // cuyo nombre empiece igual (por ejemplo "Casa-2024" frente a "Casa")
+    private final Pattern patronCopias;
+    private final ExecutorService hilo = Executors.newSingleThreadExecutor(tarea -> {
+        Thread copia = new Thread(tarea, "CopiaSeguridad");
+        copia.setDaemon(true);
+        copia.setPriority(Thread.MIN_PRIORITY);
+        return copia;
+    });
+
+    /**
+     * Constructor que prepara las copias de una cartera.
+     *
+     * @param repositorio el repositorio abierto de la cartera.
+     * @param rutaCartera la ruta del archivo .db de la cartera.
+     */
+    public CopiaSeguridad(RepositorioMovimientos repositorio, String rutaCartera) {
+        File cartera = new File(rutaCartera).getAbsoluteFile();
+        this.repositorio = repositorio;
+        this.carpeta = new File(cartera.getParentFile(), CARPETA);
+        this.nombre = cartera.getName().replaceFirst("\\.db$", "");
+        this.patronCopias = Pattern.compile(Pattern.quote(nombre) + "-\\d{8}-\\d{6}"
+                + "(" + Pattern.quote(EXTENSION) + "|" + Pattern.quote(EXTENSION_COMPRIMIDA) + ")");
+    }
+
+    /**
+     * Hace una copia de seguridad en segundo plano.
+     *
+     * @param comprimir true para comprimir la copia con gzip, false para guardarla tal cual.
+     * @return un futuro que se completa con el archivo de la copia, o con null si no se
+     *         pudo hacer.
+     */
+    public CompletableFuture<File> hacerCopia(boolean comprimir) {
+        return CompletableFuture.supplyAsync(() -> copiar(comprimir), hilo);
+    }
+
+    /**
+     * Hace una copia de seguridad en segundo plano si la más reciente tiene más de
+     * {@link #HORAS_ENTRE_COPIAS} horas o no hay ninguna.
+     *
+     * @param comprimir true para comprimir la copia con gzip, false para guardarla tal cual.
+     * @return un futuro que se completa con el archivo de la copia, o con null si no hacía
+     *         falta o no se pudo hacer.
+     */
+    public CompletableFuture<File> hacerCopiaSiHaceFalta(boolean comprimir) {
+        List<File> copias = copias();
+        long limite = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(HORAS_ENTRE_COPIAS);
+        if (!copias.isEmpty() && copias.get(0).lastModified() > limite) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return hacerCopia(comprimir);
+    }
+
+    /**
+     * Obtiene las copias de seguridad de la cartera, de la más reciente a la más antigua.
+     *
+     * @return los archivos de las copias.
+     */
+    public List<File> copias() {
+        File[] archivos = carpeta.listFiles((dir, archivo) -> patronCopias.matcher(archivo).matches());
+        List<File> copias = new ArrayList<>(Arrays.asList(archivos == null ? new File[0] : archivos));
+        // La fecha del nombre ordena igual que el texto
+        copias.sort(Comparator.comparing(File::getName).reversed());
+        return copias;
+    }
+
+    /**
+     * Copia la cartera en un archivo temporal, lo comprime si se pide y, si todo va bien, le da su
+     * nombre definitivo y borra las copias que sobran. Los archivos temporales no tienen
+     * la extensión de las copias, así que una copia a medias nunca cuenta como copia.
+     */
+    private File copiar(boolean comprimir) {
+        carpeta.mkdirs();
+        String marca = LocalDateTime.now().format(FORMATO);
+        File copia = new File(carpeta, nombre + "-" + marca + EXTENSION + ".tmp");
+        File comprimida = new File(carpeta, nombre + "-" + marca + EXTENSION_COMPRIMIDA + ".tmp");
+        File definitiva = new File(carpeta, nombre + "-" + marca + (comprimir ? EXTENSION_COMPRIMIDA : EXTENSION));
+        try {
+            copia.delete();
+            if (!repositorio.copiarA(copia)) {
+                return null;
+            }
+            File terminada = copia;
+            if (comprimir) {
+                try (InputStream entrada = Files.newInputStream(copia.toPath());
+                        OutputStream salida = new GzipCompressorOutputStream(Files.newOutputStream(comprimida.toPath()))) {
+                    entrada.transferTo(salida);
+                }
+                terminada = comprimida;
+            }
+            Files.move(terminada.toPath(), definitiva.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            rotar();
+            System.out.println("CopiaSeguridad: Copia guardada en " + definitiva + ".");
+            return definitiva;
+        } catch (IOException e) {
+            System.out.println("CopiaSeguridad: Error al hacer la copia de " + nombre + ": " + e.getMessage());
+            return null;
+        } finally {
+            copia.delete();
+            comprimida.delete();
+        }
+    }
+
+    /**
+     * Borra las copias más antiguas, dejando las {@link #MAXIMO_COPIAS} más recientes.
+     */
+    private void rotar() {
+        List<File> copias = copias();
+        for (File antigua : copias.subList(Math.min(MAXIMO_COPIAS, copias.size()), copias.size())) {
+            if (!antigua.delete()) {
+                System.out.println("CopiaSeguridad: No se pudo borrar la copia antigua " + antigua + ".");
+            }
+        }
+    }
+
+    /**
+     * Deja de aceptar copias y espera a que termine la que esté en curso.
+     */
+    public void cerrar() {
+        hilo.shutdown();
+        try {
+            hilo.awaitTermination(ESPERA_CIERRE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * La clase DiccionarioConceptos guarda en memoria la correspondencia entre cada concepto
+ * y su número, de forma que cada texto distinto existe una sola vez (todos los
+ * movimientos con el mismo concepto comparten el mismo String) y se puede agrupar o
+ * comparar por número en lugar de por texto.
+ *
+ * Se usa como caché de la tabla {@link MovimientoDAO#CONCEPTOS} (una por base de datos,
+ * con los números de la tabla) y también de forma independiente, asignando los números
+ * con {@link #anadir(String)}.
+ *
+ * @author DAM2
+ */
+public class DiccionarioConceptos {
+
+    private final Map<String, Integer> numeros = new HashMap<>();
+    private String[] textos = new String[64];
+    private int siguiente = 1;
+
+    /**
+     * Obtiene el texto de un concepto a partir de su número.
+     *
+     * @param numero el número del concepto.
+     * @return el texto del concepto, o null si no está en el diccionario.
+     */
+    public synchronized String texto(int numero) {
+        return numero >= 0 && numero < textos.length ? textos[numero] : null;
+    }
+
+    /**
+     * Obtiene el número de un concepto.
+     *
+     * @param texto el texto del concepto.
+     * @return el número del concepto, o null si no está en el diccionario.
+     */
+    public synchronized Integer numero(String texto) {
+        return numeros.get(texto);
+    }
+
+    /**
+     * Añade un concepto con un número ya asignado (por ejemplo, el ID de la tabla de
+     * conceptos).
+     *
+     * @param numero el número del concepto.
+     * @param texto el texto del concepto.
+     * @return el texto guardado en el diccionario, que es el que debe usarse.
+     */
+    public synchronized String registrar(int numero, String texto) {
+        if (numero >= textos.length) {
+            textos = Arrays.copyOf(textos, Math.max(numero + 1, textos.length * 2));
+        }
+        if (textos[numero] == null) {
+            textos[numero] = texto;
+            numeros.put(texto, numero);
+            siguiente = Math.max(siguiente, numero + 1);
+        }
+        return textos[numero];
+    }
+
+    /**
+     * Obtiene el número de un concepto, asignándole el siguiente libre si es nuevo.
+     *
+     * @param texto el texto del concepto.
+     * @return el número del concepto.
+     */
+    public synchronized int anadir(String texto) {
+        Integer numero = numeros.get(texto);
+        if (numero == null) {
+            numero = siguiente;
+            registrar(numero, texto);
+        }
+        return numero;
+    }
+
+    /**
+     * Busca los conceptos que cumplen el criterio de concepto de una consulta. Cada texto
+     * distinto se comprueba una sola vez, así que después basta con mirar el número del
+     * concepto de cada movimiento.
+     *
+     * @param consulta la consulta.
+     * @return los números de los conceptos que la cumplen.
+     */
+    public synchronized BitSet buscar(Consulta consulta) {
+        BitSet encontrados = new BitSet(siguiente);
+        for (int numero = 0; numero < textos.length; numero++) {
+            if (textos[numero] != null && consulta.cumpleConcepto(textos[numero])) {
+                encontrados.set(numero);
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Vacía el diccionario, por ejemplo si se deshace una transacción que había añadido
+     * conceptos a la base de datos.
+     */
+    public synchronized void vaciar() {
+        numeros.clear();
+        Arrays.fill(textos, null);
+        siguiente = 1;
+    }
+}
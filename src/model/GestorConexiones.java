@@ -0,0 +1,340 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * La clase GestorConexiones mantiene abiertas las conexiones SQLite de una base de datos
+ * concreta durante toda la vida de la aplicación, evitando abrir y cerrar el archivo en
+ * cada operación.
+ *
+ * Dispone de una única conexión de escritura, protegida por un cerrojo, y de un pequeño
+ * conjunto de conexiones de solo lectura que se prestan y se devuelven. La base de datos
+ * se abre en modo WAL, de forma que las lecturas no bloquean a la escritura y viceversa.
+ *
+ * Las sentencias preparadas se guardan en caché por conexión, de forma que cada
+ * sentencia SQL solo se compila una vez.
+ *
+ * Además, lleva la cuenta de los tiempos de espera y de uso de cada préstamo y guarda
+ * la caché de conceptos de la base de datos.
+ *
+ * @author DAM2
+ */
+public class GestorConexiones {
+
+    /** Número máximo de conexiones de lectura abiertas a la vez. */
+    public static final int MAX_LECTORES = 4;
+
+    /** Tiempo máximo de espera para obtener una conexión, en segundos. */
+    public static final int ESPERA_MAXIMA = 30;
+
+    private final String ruta;
+    private final String url;
+    private final Connection escritor;
+    private final ReentrantLock cerrojoEscritura = new ReentrantLock(true);
+    private final BlockingQueue<Connection> lectoresLibres = new LinkedBlockingQueue<>();
+    private final List<Connection> lectores = new ArrayList<>();
+    private final Map<Connection, Map<String, PreparedStatement>> sentencias = new ConcurrentHashMap<>();
+    private final Estadisticas estadisticasLectura = new Estadisticas("lectura");
+    private final Estadisticas estadisticasEscritura = new Estadisticas("escritura");
+    private final DiccionarioConceptos conceptos = new DiccionarioConceptos();
+    private volatile boolean cerrado = false;
+
+    /**
+     * Constructor que abre la conexión de escritura sobre la base de datos indicada y
+     * activa el modo WAL. Las conexiones de lectura se abren bajo demanda.
+     *
+     * @param ruta la ruta del archivo de base de datos.
+     * @throws SQLException si no se puede abrir la base de datos.
+     */
+    public GestorConexiones(String ruta) throws SQLException {
+        this.ruta = ruta;
+        this.url = "jdbc:sqlite:" + ruta;
+        this.escritor = DriverManager.getConnection(url);
+        try (Statement pragma = escritor.createStatement()) {
+            pragma.execute("PRAGMA journal_mode = WAL");
+            pragma.execute("PRAGMA synchronous = NORMAL");
+            pragma.execute("PRAGMA busy_timeout = " + ESPERA_MAXIMA * 1000);
+        }
+    }
+
+    /**
+     * Obtiene la ruta de la base de datos a la que está ligado este gestor.
+     *
+     * @return la ruta del archivo de base de datos.
+     */
+    public String getRuta() {
+        return ruta;
+    }
+
+    /**
+     * Presta una conexión de solo lectura. Si no hay ninguna libre y aún no se ha alcanzado
+     * el máximo, se abre una nueva; en caso contrario se espera a que se devuelva alguna.
+     *
+     * @return el préstamo, que debe cerrarse para devolver la conexión.
+     * @throws SQLException si el gestor está cerrado o se agota el tiempo de espera.
+     */
+    public Prestamo prestarLectura() throws SQLException {
+        long inicio = System.nanoTime();
+        Connection conexion = lectoresLibres.poll();
+        if (conexion == null) {
+            conexion = abrirLector();
+        }
+        if (conexion == null) {
+            try {
+                conexion = lectoresLibres.poll(ESPERA_MAXIMA, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (conexion == null) {
+                throw new SQLException("GestorConexiones: No hay conexiones de lectura disponibles.");
+            }
+        }
+        return new Prestamo(conexion, false, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Presta la conexión de escritura en exclusiva. Mientras el préstamo no se cierre,
+     * ningún otro hilo podrá escribir.
+     *
+     * @return el préstamo, que debe cerrarse para liberar la conexión.
+     * @throws SQLException si el gestor está cerrado o se agota el tiempo de espera.
+     */
+    public Prestamo prestarEscritura() throws SQLException {
+        long inicio = System.nanoTime();
+        boolean obtenido = false;
+        try {
+            obtenido = cerrojoEscritura.tryLock(ESPERA_MAXIMA, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!obtenido) {
+            throw new SQLException("GestorConexiones: La conexión de escritura está ocupada.");
+        }
+        if (cerrado) {
+            cerrojoEscritura.unlock();
+            throw new SQLException("GestorConexiones: El gestor de " + ruta + " está cerrado.");
+        }
+        return new Prestamo(escritor, true, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Abre una nueva conexión de lectura si aún no se ha alcanzado el máximo permitido.
+     *
+     * @return la nueva conexión, o null si ya están todas abiertas.
+     * @throws SQLException si el gestor está cerrado o no se puede abrir la conexión.
+     */
+    private synchronized Connection abrirLector() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("GestorConexiones: El gestor de " + ruta + " está cerrado.");
+        }
+        if (lectores.size() >= MAX_LECTORES) {
+            return null;
+        }
+        Connection conexion = DriverManager.getConnection(url);
+        try (Statement pragma = conexion.createStatement()) {
+            pragma.execute("PRAGMA busy_timeout = " + ESPERA_MAXIMA * 1000);
+            pragma.execute("PRAGMA query_only = ON");
+        }
+        lectores.add(conexion);
+        return conexion;
+    }
+
+    /**
+     * Obtiene la sentencia preparada de la caché de una conexión, preparándola si es
+     * la primera vez que se usa. Como cada conexión solo la usa un hilo a la vez
+     * (el que la tiene prestada), la caché de cada conexión no necesita sincronización.
+     *
+     * @param conexion la conexión sobre la que se prepara la sentencia.
+     * @param sql la sentencia SQL.
+     * @return la sentencia preparada, que no debe cerrarse.
+     * @throws SQLException si la sentencia no es válida.
+     */
+    private PreparedStatement preparar(Connection conexion, String sql) throws SQLException {
+        Map<String, PreparedStatement> cache = sentencias.computeIfAbsent(conexion, c -> new HashMap<>());
+        PreparedStatement sentencia = cache.get(sql);
+        if (sentencia == null) {
+            sentencia = conexion.prepareStatement(sql);
+            cache.put(sql, sentencia);
+        } else {
+            sentencia.clearParameters();
+            sentencia.clearBatch();
+        }
+        return sentencia;
+    }
+
+    /**
+     * Devuelve una conexión prestada. Si el gestor se ha cerrado entretanto, la conexión
+     * se cierra en lugar de volver al conjunto.
+     *
+     * @param prestamo el préstamo que se devuelve.
+     */
+    private void devolver(Prestamo prestamo) {
+        long uso = System.nanoTime() - prestamo.inicioUso;
+        if (prestamo.escritura) {
+            estadisticasEscritura.registrar(prestamo.espera, uso);
+            cerrojoEscritura.unlock();
+        } else {
+            estadisticasLectura.registrar(prestamo.espera, uso);
+            if (cerrado) {
+                cerrarSilenciosamente(prestamo.conexion);
+            } else {
+                lectoresLibres.offer(prestamo.conexion);
+            }
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones del gestor. Las conexiones de lectura que sigan prestadas
+     * se cierran cuando se devuelvan.
+     */
+    public void cerrar() {
+        cerrojoEscritura.lock();
+        try {
+            synchronized (this) {
+                cerrado = true;
+                Connection conexion;
+                while ((conexion = lectoresLibres.poll()) != null) {
+                    cerrarSilenciosamente(conexion);
+                }
+            }
+            cerrarSilenciosamente(escritor);
+        } finally {
+            cerrojoEscritura.unlock();
+        }
+    }
+
+    /**
+     * Indica si el gestor ya ha sido cerrado.
+     *
+     * @return true si el gestor está cerrado, false en caso contrario.
+     */
+    public boolean isCerrado() {
+        return cerrado;
+    }
+
+    /**
+     * Devuelve un resumen de los tiempos de espera y de uso de las conexiones.
+     *
+     * @return un texto con las estadísticas de lectura y de escritura.
+     */
+    public String estadisticas() {
+        return "GestorConexiones (" + ruta + "): " + estadisticasLectura + "; " + estadisticasEscritura;
+    }
+
+    private static void cerrarSilenciosamente(Connection conexion) {
+        try {
+            conexion.close();
+        } catch (SQLException e) {
+            System.out.println("GestorConexiones: Error al cerrar una conexión.");
+        }
+    }
+
+    /**
+     * Representa el préstamo de una conexión. Debe cerrarse (preferiblemente con un
+     * try-with-resources) para devolver la conexión al gestor.
+     */
+    public class Prestamo implements AutoCloseable {
+
+        private final Connection conexion;
+        private final boolean escritura;
+        private final long espera;
+        private final long inicioUso = System.nanoTime();
+        private boolean devuelto = false;
+
+        private Prestamo(Connection conexion, boolean escritura, long espera) {
+            this.conexion = conexion;
+            this.escritura = escritura;
+            this.espera = espera;
+        }
+
+        /**
+         * Obtiene la conexión prestada.
+         *
+         * @return la conexión.
+         */
+        public Connection getConexion() {
+            return conexion;
+        }
+
+        /**
+         * Obtiene una sentencia preparada sobre la conexión prestada. Las sentencias
+         * se reutilizan entre préstamos, por lo que no deben cerrarse.
+         *
+         * @param sql la sentencia SQL con parámetros.
+         * @return la sentencia preparada y sin parámetros asignados.
+         * @throws SQLException si la sentencia no es válida.
+         */
+        public PreparedStatement preparar(String sql) throws SQLException {
+            return GestorConexiones.this.preparar(conexion, sql);
+        }
+
+        /**
+         * Obtiene la caché de la tabla de conceptos de la base de datos, compartida por
+         * todas sus conexiones.
+         *
+         * @return el diccionario de conceptos.
+         */
+        public DiccionarioConceptos getConceptos() {
+            return conceptos;
+        }
+
+        /**
+         * Devuelve la conexión al gestor. Llamarlo más de una vez no tiene efecto.
+         */
+        @Override
+        public void close() {
+            if (!devuelto) {
+                devuelto = true;
+                devolver(this);
+            }
+        }
+    }
+
+    /**
+     * Acumula los tiempos de espera y de uso de los préstamos de un tipo de conexión.
+     */
+    private static class Estadisticas {
+
+        private final String nombre;
+        private long prestamos;
+        private long esperaTotal;
+        private long esperaMaxima;
+        private long usoTotal;
+        private long usoMaximo;
+
+        Estadisticas(String nombre) {
+            this.nombre = nombre;
+        }
+
+        synchronized void registrar(long espera, long uso) {
+            prestamos++;
+            esperaTotal += espera;
+            esperaMaxima = Math.max(esperaMaxima, espera);
+            usoTotal += uso;
+            usoMaximo = Math.max(usoMaximo, uso);
+        }
+
+        @Override
+        public synchronized String toString() {
+            double esperaMedia = prestamos == 0 ? 0 : esperaTotal / (double) prestamos;
+            double usoMedio = prestamos == 0 ? 0 : usoTotal / (double) prestamos;
+            return String.format("%s: %d préstamos, espera media %.3f ms (máx %.3f ms), uso medio %.3f ms (máx %.3f ms)",
+                    nombre, prestamos,
+                    esperaMedia / 1_000_000, esperaMaxima / 1_000_000.0,
+                    usoMedio / 1_000_000, usoMaximo / 1_000_000.0);
+        }
+    }
+}
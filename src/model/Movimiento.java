@@ -1,5 +1,6 @@
 package model;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -12,14 +13,23 @@ import java.util.GregorianCalendar;
  * Además, esta clase proporciona métodos para acceder y modificar los valores de los 
  * atributos y convertir la fecha a un objeto Date compatible con las bibliotecas antiguas.
  * 
+ * Las cantidades se manejan siempre en céntimos (un long), de forma que las sumas son 
+ * exactas. Solo se convierten a euros con decimales para mostrarlas.
+ * 
  * @author DAM2
  */
 public class Movimiento {
 
+    /** Longitud máxima del concepto, igual que en la tabla de movimientos. */
+    public static final int MAX_LONGITUD_CONCEPTO = 25;
+
+    /** Límite (no incluido) del valor absoluto de una cantidad en céntimos, igual que en la tabla de movimientos. */
+    public static final long LIMITE_CANTIDAD = 1_000_000_000L;
+
     // Atributos:
     private long id;
     private String concepto;
-    private double cantidad;
+    private long cantidad;
     private LocalDate fecha;
 
     // Constructores:
@@ -30,10 +40,10 @@ public class Movimiento {
      * 
      * @param id el identificador único del movimiento.
      * @param concepto el concepto que describe el movimiento.
-     * @param cantidad la cantidad asociada al movimiento (positiva o negativa).
+     * @param cantidad la cantidad asociada al movimiento en céntimos (positiva o negativa).
      * @param fecha la fecha en la que ocurrió el movimiento.
      */
-    public Movimiento(long id, String concepto, double cantidad, LocalDate fecha) {
+    public Movimiento(long id, String concepto, long cantidad, LocalDate fecha) {
         this.id = id;
         this.concepto = concepto;
         this.cantidad = cantidad;
@@ -42,6 +52,59 @@ public class Movimiento {
 
     // Métodos:
 
+    /**
+     * Convierte una cantidad en céntimos a euros, con exactamente dos decimales.
+     * 
+     * @param centimos la cantidad en céntimos.
+     * @return la cantidad en euros.
+     */
+    public static BigDecimal centimosAEuros(long centimos) {
+        return BigDecimal.valueOf(centimos, 2);
+    }
+
+    /**
+     * Convierte un texto con una cantidad en euros (con punto decimal y como máximo 
+     * dos decimales) a céntimos.
+     * 
+     * @param euros el texto con la cantidad en euros, por ejemplo "12.5".
+     * @return la cantidad en céntimos.
+     * @throws NumberFormatException si el texto no es un número válido.
+     * @throws ArithmeticException si la cantidad tiene más de dos decimales o no cabe en un long.
+     */
+    public static long eurosACentimos(String euros) {
+        return new BigDecimal(euros.trim()).movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Comprueba que los datos de un movimiento cumplen las mismas reglas que la tabla 
+     * de movimientos: concepto de 1 a {@value #MAX_LONGITUD_CONCEPTO} caracteres, cantidad 
+     * distinta de cero y menor que {@value #LIMITE_CANTIDAD} céntimos en valor absoluto, 
+     * y fecha no anterior a 1970.
+     * 
+     * @param concepto el concepto del movimiento.
+     * @param cantidad la cantidad del movimiento en céntimos.
+     * @param fecha la fecha del movimiento.
+     * @return el motivo por el que el movimiento no es válido, o null si es válido.
+     */
+    public static String validar(String concepto, long cantidad, LocalDate fecha) {
+        if (concepto == null || concepto.isEmpty()) {
+            return "El concepto no puede estar vacío.";
+        }
+        if (concepto.codePointCount(0, concepto.length()) > MAX_LONGITUD_CONCEPTO) {
+            return "El concepto no puede tener más de " + MAX_LONGITUD_CONCEPTO + " caracteres.";
+        }
+        if (cantidad == 0) {
+            return "La cantidad no puede ser cero.";
+        }
+        if (cantidad <= -LIMITE_CANTIDAD || cantidad >= LIMITE_CANTIDAD) {
+            return "La cantidad debe ser menor que " + centimosAEuros(LIMITE_CANTIDAD).toPlainString() + " en valor absoluto.";
+        }
+        if (fecha == null || fecha.toEpochDay() < 0) {
+            return "La fecha no puede ser anterior a 1970.";
+        }
+        return null;
+    }
+
     /**
      * Convierte la fecha de este movimiento de LocalDate a un objeto Date 
      * de la biblioteca java.util. Esto es útil para trabajar con APIs más antiguas 
@@ -92,18 +155,27 @@ public class Movimiento {
     /**
      * Obtiene la cantidad asociada a este movimiento.
      * 
-     * @return la cantidad del movimiento.
+     * @return la cantidad del movimiento en céntimos.
      */
-    public double getCantidad() {
+    public long getCantidad() {
         return cantidad;
     }
 
+    /**
+     * Obtiene la cantidad asociada a este movimiento en euros, para mostrarla.
+     * 
+     * @return la cantidad del movimiento en euros, con dos decimales.
+     */
+    public BigDecimal getCantidadEnEuros() {
+        return centimosAEuros(cantidad);
+    }
+
     /**
      * Establece la cantidad para este movimiento.
      * 
-     * @param cantidad la cantidad del movimiento (puede ser positiva o negativa).
+     * @param cantidad la cantidad del movimiento en céntimos (puede ser positiva o negativa).
      */
-    public void setCantidad(double cantidad) {
+    public void setCantidad(long cantidad) {
         this.cantidad = cantidad;
     }
 
@@ -1,15 +1,25 @@
 package model;
 
 import java.io.File;
-import java.sql.Statement;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import model.esquema.Migrador;
 
 /**
  * La clase MovimientoDAO es responsable de gestionar las operaciones 
@@ -17,151 +27,915 @@ import java.util.Date;
  * la creación de la base de datos, la creación de la tabla de movimientos, 
  * la inserción, la lectura, la eliminación y la obtención de movimientos 
  * desde la base de datos SQLite.
+ * 
+ * Cada operación recibe el origen de sus conexiones ({@link OrigenConexiones}):
+ * {@link RepositorioSQLite} pasa el {@link GestorConexiones} de su archivo, de
+ * forma que puede haber varios archivos abiertos a la vez.
+ * 
+ * Los balances se calculan sobre las tablas de resumen diario y mensual, que
+ * la propia base de datos mantiene actualizadas mediante triggers.
+ * 
+ * Los conceptos se guardan una sola vez en la tabla {@link #CONCEPTOS} y cada
+ * movimiento solo guarda el ID de su concepto. Al leer, el texto se obtiene de
+ * un {@link DiccionarioConceptos} en memoria, por lo que los movimientos con el
+ * mismo concepto comparten el mismo String.
+ * 
+ * Las páginas filtradas se leen con una {@link Consulta}, que se traduce a una
+ * sentencia con parámetros. Si filtra por concepto, se elige entre recorrer el
+ * índice por fecha o el índice por concepto según cuántos movimientos tengan
+ * los conceptos que la cumplen.
  */
 public abstract class MovimientoDAO {
 
     // Ruta de la base de datos y nombre de la tabla
     public static String rutaBBDD = "BaseDeDatos" + File.separator + "Movimientos.db";
     public static final String NOMBRETABLA = "MOVIMIENTO";
+    public static final String RESUMEN_DIARIO = "RESUMEN_DIARIO";
+    public static final String RESUMEN_MENSUAL = "RESUMEN_MENSUAL";
+    public static final String DESHACER = "DESHACER";
+    public static final String BUSQUEDA = "MOVIMIENTO_BUSQUEDA";
+    public static final String CONCEPTOS = "CONCEPTO";
+    public static final String CAMBIOS = "CAMBIO";
+
+    // Vista con el texto del concepto de cada movimiento (contenido del índice de búsqueda)
+    public static final String CONCEPTOS_MOVIMIENTO = "MOVIMIENTO_CONCEPTO";
 
-    // Sentencia SQL para crear la tabla de movimientos
+    // Condición que cumplen los movimientos que no están borrados (borrado lógico)
+    public static final String VIVOS = "BORRADO IS NULL";
+
+    // Sentencia SQL que lee todos los movimientos que no están borrados
+    public static final String SELECT_VIVOS = "SELECT * FROM " + NOMBRETABLA + " WHERE " + VIVOS;
+
+    // Sentencia SQL para crear la tabla de movimientos (versión 1 del esquema; los cambios posteriores están en model.esquema.Migracion)
     public static final String CREATETABLE
-            = "CREATE TABLE " + NOMBRETABLA + "("
+            = "CREATE TABLE IF NOT EXISTS " + NOMBRETABLA + "("
             + "ID INTEGER PRIMARY KEY AUTOINCREMENT,"
             + "CONCEPTO TEXT CHECK(LENGTH(CONCEPTO) <= 25 AND LENGTH(CONCEPTO) > 0),"
             + "CANTIDAD REAL CHECK(CANTIDAD > -10000000 AND CANTIDAD < 10000000 AND CANTIDAD <> 0 AND (CANTIDAD * 100) = CAST(CANTIDAD * 100 AS INTEGER)),"
             + "FECHA INTEGER CHECK(FECHA >= 0)"
             + ")";
 
+    // Sentencias SQL parametrizadas (se preparan una vez por conexión)
+    private static final String INSERT = "INSERT INTO " + NOMBRETABLA + "(ID_CONCEPTO, CANTIDAD, FECHA) VALUES(?, ?, ?)";
+    private static final String INSERTAR_CONCEPTO = "INSERT INTO " + CONCEPTOS + "(TEXTO) VALUES(?) ON CONFLICT(TEXTO) DO NOTHING";
+    private static final String SELECT_CONCEPTO = "SELECT ID FROM " + CONCEPTOS + " WHERE TEXTO = ?";
+    private static final String SELECT_CONCEPTOS = "SELECT ID, TEXTO FROM " + CONCEPTOS;
+    private static final String BORRAR = "UPDATE " + NOMBRETABLA + " SET BORRADO = ? WHERE ID = ? AND " + VIVOS;
+    private static final String RESTAURAR = "UPDATE " + NOMBRETABLA + " SET BORRADO = NULL WHERE ID = ? AND BORRADO IS NOT NULL";
+    private static final String SELECT_POR_ID = "SELECT * FROM " + NOMBRETABLA + " WHERE ID = ? AND " + VIVOS;
+    private static final String APUNTAR_BORRADO = "INSERT INTO " + DESHACER + "(ID_MOVIMIENTO) VALUES(?)";
+    private static final String RECORTAR_DESHACER = "DELETE FROM " + DESHACER + " WHERE ORDEN <= (SELECT MAX(ORDEN) FROM " + DESHACER + ") - ?";
+    private static final String ULTIMO_BORRADO = "SELECT ORDEN, ID_MOVIMIENTO FROM " + DESHACER + " ORDER BY ORDEN DESC LIMIT 1";
+    private static final String OLVIDAR_BORRADO = "DELETE FROM " + DESHACER + " WHERE ORDEN = ?";
+    private static final String BUSCAR = "SELECT M.* FROM " + BUSQUEDA + " B JOIN " + NOMBRETABLA + " M ON M.ID = B.rowid "
+            + "WHERE " + BUSQUEDA + " MATCH ? AND M." + VIVOS + " ORDER BY B.rank LIMIT ?";
+    private static final String PURGAR = "DELETE FROM " + NOMBRETABLA + " WHERE ID IN ("
+            + "SELECT ID FROM " + NOMBRETABLA + " WHERE BORRADO < ? "
+            + "AND ID NOT IN (SELECT ID_MOVIMIENTO FROM " + DESHACER + ") LIMIT ?)";
+    private static final String LEER_CAMBIOS = "SELECT C.ID AS NUMERO_CAMBIO, C.ID_MOVIMIENTO, C.FECHA AS FECHA_ANTERIOR, M.* FROM " + CAMBIOS + " C "
+            + "LEFT JOIN " + NOMBRETABLA + " M ON M.ID = C.ID_MOVIMIENTO AND M." + VIVOS + " WHERE C.ID > ? ORDER BY C.ID LIMIT ?";
+    private static final String PRIMER_CAMBIO = "SELECT MIN(ID) FROM " + CAMBIOS;
+    private static final String ULTIMO_CAMBIO = "SELECT COALESCE(MAX(ID), 0) FROM " + CAMBIOS;
+    private static final String CONTAR_POR_CONCEPTO = "SELECT COUNT(*) FROM (SELECT 1 FROM " + NOMBRETABLA
+            + " INDEXED BY IDX_MOVIMIENTO_CONCEPTO WHERE " + VIVOS + " AND ID_CONCEPTO IN (SELECT value FROM json_each(?)) LIMIT ?)";
+    private static final String RECORTAR_CAMBIOS = "DELETE FROM " + CAMBIOS + " WHERE ID <= (SELECT MAX(ID) FROM " + CAMBIOS + ") - ?";
+
+    // Número de movimientos que se envían en cada lote al escribir varios a la vez
+    public static int tamanioLote = 1000;
+
+    // Número de filas que el driver trae de cada vez al recorrer una consulta
+    public static int tamanioFetch = 256;
+
+    // Número máximo de borrados que se pueden deshacer
+    public static int tamanioDeshacer = RepositorioMovimientos.TAMANIO_DESHACER;
+
+    // Número máximo de cambios que se leen de una vez del registro de cambios
+    public static int maximoCambios = 10000;
+
+    // Número de cambios que se conservan en el registro al purgar
+    public static int tamanioRegistroCambios = 100000;
+
+    // Número máximo de movimientos de los conceptos de una consulta para leerlos por el índice de conceptos
+    public static int umbralConcepto = 2000;
+
     /**
-     * Crea la base de datos SQLite en la ruta especificada si no existe.
-     * Si la base de datos ya existe, simplemente crea la tabla de movimientos.
+     * Origen del gestor de conexiones sobre el que trabaja una operación, normalmente
+     * el de un {@link RepositorioSQLite}.
+     */
+    @FunctionalInterface
+    interface OrigenConexiones {
+
+        /**
+         * Obtiene el gestor de conexiones.
+         *
+         * @return el gestor de conexiones.
+         * @throws SQLException si no se puede abrir la base de datos.
+         */
+        GestorConexiones gestor() throws SQLException;
+    }
+
+    /**
+     * Aplica sobre la base de datos las migraciones de esquema pendientes
+     * (creación de tablas, índices, columnas nuevas...).
      * 
-     * @return true si la base de datos y la tabla fueron creadas correctamente, 
-     *         false si ocurrió un error.
+     * @param origen el origen de las conexiones con la base de datos.
+     * @return true si el esquema quedó en la última versión, false si ocurrió un error.
      */
-    public static boolean crearBaseDeDatos() {
-        boolean creado;
-        String url;
-        try {
-            new File(rutaBBDD).getParentFile().mkdirs();
-        } catch (NullPointerException e) {
-            // Si ocurre un error al crear el directorio, no se interrumpe el proceso
-        }
-        url = "jdbc:sqlite:" + rutaBBDD;
-        try (Connection conexion = DriverManager.getConnection(url)) {
-            creado = true;
+    static boolean actualizarEsquema(OrigenConexiones origen) {
+        boolean actualizado;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura()) {
+            actualizado = Migrador.migrar(prestamo.getConexion());
         } catch (SQLException e) {
             e.printStackTrace();
-            creado = false;
-            System.out.println("MovimientoDAO: Error al crear la base de datos");
+            System.out.println("MovimientoDAO: Error al actualizar el esquema.");
+            actualizado = false;
         }
-        crearTablaMovimiento();
-        return creado;
+        return actualizado;
     }
 
     /**
-     * Crea la tabla MOVIMIENTO en la base de datos si no existe.
-     * Si la tabla ya existe, simplemente no realiza ninguna acción.
+     * Lee una página de movimientos a partir de una fecha, ordenados del más reciente al
+     * más antiguo (y, dentro de un mismo día, del último añadido al primero).
+     * 
+     * La página siguiente se pide pasando el último movimiento de la anterior: la consulta
+     * continúa justo detrás de su fecha e ID usando el índice, por lo que cuesta lo mismo
+     * leer la primera página que la milésima.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param desde la fecha a partir de la cual (inclusive) se leen los movimientos, o null para leerlos todos.
+     * @param ultimo el último movimiento de la página anterior, o null para leer la primera página.
+     * @param tamanio el número máximo de movimientos de la página.
+     * @return un arreglo con los movimientos de la página, que tendrá menos de {@code tamanio}
+     *         elementos si es la última.
      */
-    private static void crearTablaMovimiento() {
-        String url = "jdbc:sqlite:" + rutaBBDD;
-        try (Connection conexion = DriverManager.getConnection(url); Statement crearTabla = conexion.createStatement()) {
-            crearTabla.execute(CREATETABLE);
+    static Movimiento[] leerPagina(OrigenConexiones origen, LocalDate desde, Movimiento ultimo, int tamanio) {
+        return leerPagina(origen, Consulta.desde(desde), ultimo, tamanio);
+    }
+
+    /**
+     * Lee una página de los movimientos que cumplen una consulta, ordenados igual que
+     * {@link #leerPagina(OrigenConexiones, LocalDate, Movimiento, int)}.
+     * 
+     * Los rangos de fechas y cantidades se comparan con parámetros sobre los índices
+     * por fecha. El criterio de concepto se resuelve antes contra el diccionario de
+     * conceptos y se pasa como la lista de IDs de los conceptos que lo cumplen. Si esos
+     * conceptos tienen como mucho {@link #umbralConcepto} movimientos, se leen por el
+     * índice de conceptos y se ordenan; si tienen más, se recorre el índice por fecha,
+     * que ya da el orden, hasta llenar la página.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param consulta la consulta que deben cumplir los movimientos.
+     * @param ultimo el último movimiento de la página anterior, o null para leer la primera página.
+     * @param tamanio el número máximo de movimientos de la página.
+     * @return un arreglo con los movimientos de la página, que tendrá menos de {@code tamanio}
+     *         elementos si es la última.
+     */
+    static Movimiento[] leerPagina(OrigenConexiones origen, Consulta consulta, Movimiento ultimo, int tamanio) {
+        if (consulta.isVacia()) {
+            return new Movimiento[0];
+        }
+        List<Object> parametros = new ArrayList<>();
+        List<String> condiciones = new ArrayList<>();
+        condiciones.add(VIVOS);
+        String indice = "";
+        if (consulta.filtraConcepto()) {
+            String conceptos = buscarConceptos(origen, consulta);
+            long numero = conceptos == null ? 0 : contarPorConcepto(origen, conceptos);
+            if (numero == 0) {
+                return new Movimiento[0];
+            }
+            boolean porConcepto = numero > 0 && numero <= umbralConcepto;
+            if (porConcepto) {
+                indice = " INDEXED BY IDX_MOVIMIENTO_CONCEPTO";
+            }
+            // Con '+' el índice de conceptos no se usa y se recorre el de fechas
+            condiciones.add((porConcepto ? "" : "+") + "ID_CONCEPTO IN (SELECT value FROM json_each(?))");
+            parametros.add(conceptos);
+        }
+        if (consulta.getDesde() != null) {
+            condiciones.add("FECHA >= ?");
+            parametros.add(codificarFecha(consulta.getDesde()));
+        }
+        if (consulta.getHasta() != null) {
+            condiciones.add("FECHA <= ?");
+            parametros.add(codificarFecha(consulta.getHasta()));
+        }
+        if (consulta.getMinimo() != Long.MIN_VALUE) {
+            condiciones.add("CANTIDAD >= ?");
+            parametros.add(consulta.getMinimo());
+        }
+        if (consulta.getMaximo() != Long.MAX_VALUE) {
+            condiciones.add("CANTIDAD <= ?");
+            parametros.add(consulta.getMaximo());
+        }
+        if (ultimo != null) {
+            condiciones.add("(FECHA, ID) < (?, ?)");
+            parametros.add(codificarFecha(ultimo.getFecha()));
+            parametros.add(ultimo.getId());
+        }
+        parametros.add(tamanio);
+        String select = "SELECT * FROM " + NOMBRETABLA + indice
+                + " WHERE " + String.join(" AND ", condiciones)
+                + " ORDER BY FECHA DESC, ID DESC LIMIT ?";
+        Movimiento[] movimientos;
+        try (Stream<Movimiento> filas = streamMovimientos(origen, select, parametros.toArray())) {
+            movimientos = filas.toArray(Movimiento[]::new);
+        } catch (IllegalStateException e) {
+            movimientos = new Movimiento[0];
+        }
+        return movimientos;
+    }
+
+    /**
+     * Busca los conceptos que cumplen el criterio de concepto de una consulta. Se
+     * vuelve a cargar antes la tabla de conceptos, por si otro proceso ha añadido
+     * alguno.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param consulta la consulta.
+     * @return los IDs de los conceptos como un array JSON, para pasarlo como un solo
+     *         parámetro a json_each, o null si ocurrió un error.
+     */
+    private static String buscarConceptos(OrigenConexiones origen, Consulta consulta) {
+        BitSet encontrados;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura()) {
+            cargarConceptos(prestamo);
+            encontrados = prestamo.getConceptos().buscar(consulta);
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.out.println("MovimientoDAO: Error al crear la tabla, o ya existe.");
+            System.out.println("MovimientoDAO: Error al leer los conceptos.");
+            return null;
+        }
+        StringBuilder ids = new StringBuilder("[");
+        for (int id = encontrados.nextSetBit(0); id >= 0; id = encontrados.nextSetBit(id + 1)) {
+            ids.append(ids.length() > 1 ? "," : "").append(id);
         }
+        return ids.append(']').toString();
     }
 
     /**
-     * Lee los movimientos desde la base de datos utilizando una sentencia SELECT personalizada.
-     * Los resultados se devuelven como un arreglo de objetos Movimiento.
+     * Cuenta los movimientos vivos de unos conceptos con el índice de conceptos, sin
+     * pasar de {@link #umbralConcepto} + 1, de forma que contar nunca cuesta más que
+     * leerlos por ese índice.
      * 
-     * @param select la sentencia SQL SELECT que define qué movimientos leer.
-     * @return un arreglo de objetos Movimiento que representa los registros encontrados en la base de datos.
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param conceptos los IDs de los conceptos como un array JSON.
+     * @return el número de movimientos (umbralConcepto + 1 si hay más), o -1 si ocurrió un error.
      */
-    public static Movimiento[] leerMovimientos(String select) {
-        ArrayList<Movimiento> movimientos = new ArrayList<>();
-        String url = "jdbc:sqlite:" + rutaBBDD;
-        try (Connection conexion = DriverManager.getConnection(url); Statement consulta = conexion.createStatement()) {
-            ResultSet query = consulta.executeQuery(select);
-            while (query.next()) {
-                long id = query.getLong("ID");
-                String concepto = query.getString("CONCEPTO");
-                double cantidad = query.getDouble("CANTIDAD");
-                Calendar fechaLong = Calendar.getInstance();
-                fechaLong.setTime(new Date(query.getLong("FECHA")));
-                LocalDate fecha = LocalDate.of(fechaLong.get(Calendar.YEAR), fechaLong.get(Calendar.MONTH) + 1, fechaLong.get(Calendar.DAY_OF_MONTH));
-                movimientos.add(new Movimiento(id, concepto, cantidad, fecha));
+    private static long contarPorConcepto(OrigenConexiones origen, String conceptos) {
+        long numero = -1;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura()) {
+            PreparedStatement contar = prestamo.preparar(CONTAR_POR_CONCEPTO);
+            contar.setString(1, conceptos);
+            contar.setInt(2, umbralConcepto + 1);
+            try (ResultSet query = contar.executeQuery()) {
+                if (query.next()) {
+                    numero = query.getLong(1);
+                }
             }
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al contar los movimientos por concepto.");
+        }
+        return numero;
+    }
+
+    /**
+     * Busca movimientos por su concepto usando el índice de texto completo. Cada palabra
+     * del texto se busca como prefijo (por ejemplo "super" encuentra "Supermercado") y
+     * deben aparecer todas; no se distinguen mayúsculas ni tildes. Los resultados se
+     * ordenan por relevancia.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param texto las palabras a buscar.
+     * @param limite el número máximo de resultados.
+     * @return un arreglo con los movimientos encontrados, vacío si el texto no tiene palabras.
+     */
+    static Movimiento[] buscarMovimientos(OrigenConexiones origen, String texto, int limite) {
+        StringBuilder consulta = new StringBuilder();
+        for (String palabra : texto.trim().split("\\s+")) {
+            if (!palabra.isEmpty()) {
+                // Entre comillas para que los caracteres especiales de FTS5 se traten como texto
+                consulta.append('"').append(palabra.replace("\"", "\"\"")).append("\"* ");
+            }
+        }
+        if (consulta.length() == 0) {
+            return new Movimiento[0];
+        }
+        Movimiento[] movimientos;
+        try (Stream<Movimiento> filas = streamMovimientos(origen, BUSCAR, consulta.toString().trim(), limite)) {
+            movimientos = filas.toArray(Movimiento[]::new);
+        } catch (IllegalStateException e) {
+            movimientos = new Movimiento[0];
+        }
+        return movimientos;
+    }
+
+    /**
+     * Recorre los movimientos de una sentencia SELECT fila a fila, sin cargarlos todos
+     * en memoria. Las filas se traen del driver en bloques de {@link #tamanioFetch}.
+     * 
+     * El Stream mantiene prestada una conexión de lectura hasta que se cierra, por lo que
+     * debe usarse siempre dentro de un try-with-resources.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param select la sentencia SQL SELECT, con '?' en lugar de los parámetros.
+     * @param parametros los valores de los parámetros, en orden.
+     * @return un Stream de movimientos que debe cerrarse, o un Stream vacío si la consulta no pudo ejecutarse.
+     * @throws IllegalStateException (al recorrer el Stream) si ocurre un error leyendo una fila.
+     */
+    static Stream<Movimiento> streamMovimientos(OrigenConexiones origen, String select, Object... parametros) {
+        GestorConexiones.Prestamo prestamo = null;
+        try {
+            prestamo = origen.gestor().prestarLectura();
+            PreparedStatement consulta = prestamo.preparar(select);
+            for (int i = 0; i < parametros.length; i++) {
+                consulta.setObject(i + 1, parametros[i]);
+            }
+            consulta.setFetchSize(tamanioFetch);
+            ResultSet query = consulta.executeQuery();
+            GestorConexiones.Prestamo prestado = prestamo;
+            Spliterator<Movimiento> filas = new Spliterators.AbstractSpliterator<Movimiento>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Movimiento> accion) {
+                    try {
+                        if (!query.next()) {
+                            return false;
+                        }
+                        accion.accept(leerFila(query, prestado));
+                        return true;
+                    } catch (SQLException e) {
+                        System.out.println("MovimientoDAO: Error al leer movimientos.");
+                        throw new IllegalStateException("Error al leer movimientos", e);
+                    }
+                }
+            };
+            return StreamSupport.stream(filas, false).onClose(() -> {
+                try {
+                    query.close();
+                } catch (SQLException e) {
+                    System.out.println("MovimientoDAO: Error al cerrar la consulta.");
+                }
+                prestado.close();
+            });
         } catch (SQLException e) {
             System.out.println("MovimientoDAO: Error al leer movimientos.");
+            if (prestamo != null) {
+                prestamo.close();
+            }
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Construye un Movimiento a partir de la fila actual de un ResultSet. El
+     * texto del concepto se toma del diccionario de conceptos; si no está, se
+     * vuelve a cargar la tabla de conceptos con la misma conexión.
+     * 
+     * @param query el ResultSet posicionado en la fila a leer.
+     * @param prestamo el préstamo de la conexión con la que se lee.
+     * @return el movimiento de la fila.
+     * @throws SQLException si falta alguna columna o el concepto no existe.
+     */
+    private static Movimiento leerFila(ResultSet query, GestorConexiones.Prestamo prestamo) throws SQLException {
+        long id = query.getLong("ID");
+        int numeroConcepto = query.getInt("ID_CONCEPTO");
+        String concepto = null;
+        if (!query.wasNull()) {
+            DiccionarioConceptos conceptos = prestamo.getConceptos();
+            concepto = conceptos.texto(numeroConcepto);
+            if (concepto == null) {
+                cargarConceptos(prestamo);
+                concepto = conceptos.texto(numeroConcepto);
+                if (concepto == null) {
+                    throw new SQLException("Concepto desconocido: " + numeroConcepto);
+                }
+            }
+        }
+        long cantidad = query.getLong("CANTIDAD");
+        LocalDate fecha = decodificarFecha(query.getLong("FECHA"));
+        return new Movimiento(id, concepto, cantidad, fecha);
+    }
+
+    /**
+     * Carga la tabla de conceptos completa en el diccionario. Los conceptos
+     * distintos son pocos, así que se leen todos de una vez.
+     * 
+     * @param prestamo el préstamo de la conexión con la que se lee.
+     * @throws SQLException si no se puede leer la tabla.
+     */
+    private static void cargarConceptos(GestorConexiones.Prestamo prestamo) throws SQLException {
+        try (ResultSet query = prestamo.preparar(SELECT_CONCEPTOS).executeQuery()) {
+            while (query.next()) {
+                prestamo.getConceptos().registrar(query.getInt(1), query.getString(2));
+            }
         }
-        return movimientos.toArray(Movimiento[]::new);
     }
 
     /**
-     * Inserta un nuevo movimiento en la base de datos.
+     * Obtiene el ID de un concepto, añadiéndolo a la tabla de conceptos si es
+     * nuevo. Debe llamarse con la conexión de escritura y dentro de la
+     * transacción que inserta el movimiento.
+     * 
+     * @param prestamo el préstamo de la conexión de escritura.
+     * @param texto el texto del concepto.
+     * @return el ID del concepto.
+     * @throws SQLException si el concepto no es válido o no se puede guardar.
+     */
+    private static int obtenerIdConcepto(GestorConexiones.Prestamo prestamo, String texto) throws SQLException {
+        Integer numero = prestamo.getConceptos().numero(texto);
+        if (numero == null) {
+            PreparedStatement insertar = prestamo.preparar(INSERTAR_CONCEPTO);
+            insertar.setString(1, texto);
+            insertar.executeUpdate();
+            PreparedStatement consulta = prestamo.preparar(SELECT_CONCEPTO);
+            consulta.setString(1, texto);
+            try (ResultSet query = consulta.executeQuery()) {
+                query.next();
+                numero = query.getInt(1);
+            }
+            prestamo.getConceptos().registrar(numero, texto);
+        }
+        return numero;
+    }
+
+    /**
+     * Convierte el valor almacenado en la columna FECHA (días desde el 1970-01-01)
+     * a un LocalDate, sin pasar por Calendar ni Date.
+     * 
+     * @param fechaLong el valor de la columna FECHA.
+     * @return la fecha correspondiente.
+     */
+    private static LocalDate decodificarFecha(long fechaLong) {
+        return LocalDate.ofEpochDay(fechaLong);
+    }
+
+    /**
+     * Convierte una fecha al valor con el que se almacena en la columna FECHA
+     * (días desde el 1970-01-01), para insertarla o usarla como parámetro en consultas.
+     * 
+     * @param fecha la fecha a convertir.
+     * @return el valor equivalente de la columna FECHA.
+     */
+    private static long codificarFecha(LocalDate fecha) {
+        return fecha.toEpochDay();
+    }
+
+    /**
+     * Inserta varios movimientos en la base de datos por lotes. Cada lote de
+     * {@link #tamanioLote} movimientos se envía con una única sentencia preparada,
+     * y todos los lotes se confirman juntos en una sola transacción. A cada
+     * movimiento insertado se le asigna el ID generado.
+     * 
+     * Si un lote falla, se deshace la transacción entera: no se escribe ningún
+     * movimiento y ninguno recibe ID.
      * 
-     * @param movimiento el objeto Movimiento a insertar.
-     * @return true si el movimiento fue insertado correctamente, false si ocurrió un error.
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param movimientos los movimientos a insertar.
+     * @return los IDs generados, en el mismo orden que los movimientos, o null si ocurrió un error.
      */
-    public static boolean escribirMovimiento(Movimiento movimiento) {
-        boolean insertado;
-        String url = "jdbc:sqlite:" + rutaBBDD;
-        try (Connection conexion = DriverManager.getConnection(url); Statement sentenciaInsert = conexion.createStatement()) {
-            String insert = "INSERT INTO " + NOMBRETABLA + "(CONCEPTO, CANTIDAD, FECHA) VALUES("
-                    + "'" + movimiento.getConcepto() + "',"
-                    + movimiento.getCantidad() + ","
-                    + movimiento.fechaToDate().getTime() + ");";
-            sentenciaInsert.execute(insert);
-            insertado = true;
+    static long[] escribirMovimientos(OrigenConexiones origen, Collection<Movimiento> movimientos) {
+        long[] ids = new long[movimientos.size()];
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura()) {
+            Connection conexion = prestamo.getConexion();
+            PreparedStatement insert = prestamo.preparar(INSERT);
+            List<Movimiento> lote = new ArrayList<>(Math.min(tamanioLote, movimientos.size()));
+            int escritos = 0;
+            conexion.setAutoCommit(false);
+            try {
+                for (Movimiento movimiento : movimientos) {
+                    if (movimiento.getConcepto() == null) {
+                        insert.setNull(1, Types.INTEGER);
+                    } else {
+                        insert.setInt(1, obtenerIdConcepto(prestamo, movimiento.getConcepto()));
+                    }
+                    insert.setLong(2, movimiento.getCantidad());
+                    insert.setLong(3, codificarFecha(movimiento.getFecha()));
+                    insert.addBatch();
+                    lote.add(movimiento);
+                    if (lote.size() == tamanioLote) {
+                        escritos = ejecutarLote(prestamo, insert, lote, ids, escritos);
+                    }
+                }
+                if (!lote.isEmpty()) {
+                    ejecutarLote(prestamo, insert, lote, ids, escritos);
+                }
+                conexion.commit();
+            } catch (SQLException e) {
+                insert.clearBatch();
+                conexion.rollback();
+                // Los conceptos añadidos en la transacción deshecha ya no existen
+                prestamo.getConceptos().vaciar();
+                throw e;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            insertado = false;
+            System.out.println("MovimientoDAO: Error al escribir movimientos.");
+            return null;
+        }
+        // Los IDs solo se asignan una vez confirmada la transacción
+        int i = 0;
+        for (Movimiento movimiento : movimientos) {
+            movimiento.setId(ids[i++]);
+        }
+        return ids;
+    }
+
+    /**
+     * Ejecuta el lote pendiente dentro de la transacción en curso y apunta los IDs
+     * generados. Como la conexión de escritura es exclusiva y la tabla usa
+     * AUTOINCREMENT, los IDs de un mismo lote son consecutivos y terminan en
+     * last_insert_rowid().
+     * 
+     * @return el número total de movimientos escritos tras este lote.
+     */
+    private static int ejecutarLote(GestorConexiones.Prestamo prestamo, PreparedStatement insert,
+            List<Movimiento> lote, long[] ids, int escritos) throws SQLException {
+        insert.executeBatch();
+        long ultimoId;
+        try (ResultSet query = prestamo.preparar("SELECT last_insert_rowid()").executeQuery()) {
+            query.next();
+            ultimoId = query.getLong(1);
+        }
+        long id = ultimoId - lote.size() + 1;
+        for (int i = 0; i < lote.size(); i++) {
+            ids[escritos++] = id++;
         }
-        return insertado;
+        lote.clear();
+        return escritos;
     }
 
     /**
-     * Elimina un movimiento de la base de datos mediante su identificador.
+     * Elimina varios movimientos de la base de datos en una única transacción.
+     * 
+     * El borrado es lógico: los movimientos se marcan como borrados y se apuntan en el
+     * diario de deshacer (que conserva los últimos {@link #tamanioDeshacer} borrados), de
+     * forma que {@link #deshacerBorrado(OrigenConexiones)} puede restaurarlos con su ID
+     * original. Los borrados antiguos se eliminan físicamente con
+     * {@link #purgarBorrados(OrigenConexiones, long, int)}.
      * 
-     * @param id el ID del movimiento a eliminar.
-     * @return true si el movimiento fue eliminado correctamente, false si ocurrió un error.
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param ids los IDs de los movimientos a eliminar.
+     * @return true si los movimientos fueron eliminados correctamente, false si ocurrió un error
+     *         (en cuyo caso no se elimina ninguno).
      */
-    public static boolean borrarMovimiento(long id) {
+    static boolean borrarMovimientos(OrigenConexiones origen, Collection<Long> ids) {
         boolean borrado;
-        String url = "jdbc:sqlite:" + rutaBBDD;
-        try (Connection conexion = DriverManager.getConnection(url); Statement sentenciaDelete = conexion.createStatement()) {
-            String delete = "DELETE FROM " + NOMBRETABLA + " WHERE ID = " + id + ";";
-            sentenciaDelete.execute(delete);
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura()) {
+            Connection conexion = prestamo.getConexion();
+            PreparedStatement borrar = prestamo.preparar(BORRAR);
+            PreparedStatement apuntar = prestamo.preparar(APUNTAR_BORRADO);
+            long instante = System.currentTimeMillis();
+            conexion.setAutoCommit(false);
+            try {
+                for (long id : ids) {
+                    borrar.setLong(1, instante);
+                    borrar.setLong(2, id);
+                    if (borrar.executeUpdate() > 0) {
+                        apuntar.setLong(1, id);
+                        apuntar.executeUpdate();
+                    }
+                }
+                PreparedStatement recortar = prestamo.preparar(RECORTAR_DESHACER);
+                recortar.setInt(1, tamanioDeshacer);
+                recortar.executeUpdate();
+                conexion.commit();
+            } catch (SQLException e) {
+                conexion.rollback();
+                throw e;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
             borrado = true;
         } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al borrar movimientos.");
             borrado = false;
         }
         return borrado;
     }
 
+    /**
+     * Deshace el último borrado apuntado en el diario de deshacer, volviendo a marcar el
+     * movimiento como vivo con su ID original. Si el movimiento ya no existe, se descarta
+     * su apunte y se prueba con el anterior.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @return el movimiento restaurado, o null si no había nada que deshacer o si ocurrió un error.
+     */
+    static Movimiento deshacerBorrado(OrigenConexiones origen) {
+        Movimiento movimiento = null;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura()) {
+            Connection conexion = prestamo.getConexion();
+            conexion.setAutoCommit(false);
+            try {
+                boolean quedan = true;
+                while (movimiento == null && quedan) {
+                    long orden = 0;
+                    long id = 0;
+                    try (ResultSet query = prestamo.preparar(ULTIMO_BORRADO).executeQuery()) {
+                        quedan = query.next();
+                        if (quedan) {
+                            orden = query.getLong(1);
+                            id = query.getLong(2);
+                        }
+                    }
+                    if (quedan) {
+                        PreparedStatement olvidar = prestamo.preparar(OLVIDAR_BORRADO);
+                        olvidar.setLong(1, orden);
+                        olvidar.executeUpdate();
+                        PreparedStatement restaurar = prestamo.preparar(RESTAURAR);
+                        restaurar.setLong(1, id);
+                        if (restaurar.executeUpdate() > 0) {
+                            PreparedStatement consulta = prestamo.preparar(SELECT_POR_ID);
+                            consulta.setLong(1, id);
+                            try (ResultSet query = consulta.executeQuery()) {
+                                if (query.next()) {
+                                    movimiento = leerFila(query, prestamo);
+                                }
+                            }
+                        }
+                    }
+                }
+                conexion.commit();
+            } catch (SQLException e) {
+                movimiento = null;
+                conexion.rollback();
+                throw e;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al deshacer el borrado.");
+        }
+        return movimiento;
+    }
+
+    /**
+     * Elimina físicamente los movimientos borrados antes de un instante, salvo los que
+     * siguen en el diario de deshacer. Se eliminan por lotes, cada uno en su propia
+     * transacción, liberando la conexión de escritura entre lote y lote para no bloquear
+     * otras escrituras durante mucho tiempo.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param antesDe el instante (en milisegundos) antes del cual se purgan los borrados.
+     * @param lote el número máximo de movimientos que se eliminan en cada transacción.
+     * @return el número de movimientos eliminados, o -1 si ocurrió un error.
+     */
+    static int purgarBorrados(OrigenConexiones origen, long antesDe, int lote) {
+        int purgados = 0;
+        int eliminados;
+        do {
+            try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura()) {
+                PreparedStatement purgar = prestamo.preparar(PURGAR);
+                purgar.setLong(1, antesDe);
+                purgar.setInt(2, lote);
+                eliminados = purgar.executeUpdate();
+            } catch (SQLException e) {
+                System.out.println("MovimientoDAO: Error al purgar movimientos borrados.");
+                return -1;
+            }
+            purgados += eliminados;
+        } while (eliminados == lote);
+        // También se recorta el registro de cambios, conservando los más recientes
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura()) {
+            PreparedStatement recortar = prestamo.preparar(RECORTAR_CAMBIOS);
+            recortar.setInt(1, tamanioRegistroCambios);
+            recortar.executeUpdate();
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al recortar el registro de cambios.");
+        }
+        return purgados;
+    }
+
     /**
      * Obtiene un movimiento específico de la base de datos utilizando su ID.
      * 
+     * @param origen el origen de las conexiones con la base de datos.
      * @param id el ID del movimiento a obtener.
      * @return el objeto Movimiento correspondiente al ID, o null si no se encuentra.
      */
-    public static Movimiento obtenerMovimientoPorId(long id) {
+    static Movimiento obtenerMovimientoPorId(OrigenConexiones origen, long id) {
         Movimiento movimiento = null;
-        String url = "jdbc:sqlite:" + rutaBBDD;
-        try (Connection conexion = DriverManager.getConnection(url); Statement consulta = conexion.createStatement()) {
-            ResultSet query = consulta.executeQuery("SELECT * FROM MOVIMIENTO WHERE ID = " + id + ";");
-            String concepto = query.getString("CONCEPTO");
-            double cantidad = query.getDouble("CANTIDAD");
-            Calendar fechaLong = Calendar.getInstance();
-            fechaLong.setTime(new Date(query.getLong("FECHA")));
-            LocalDate fecha = LocalDate.of(fechaLong.get(Calendar.YEAR), fechaLong.get(Calendar.MONTH) + 1, fechaLong.get(Calendar.DAY_OF_MONTH));
-            movimiento = new Movimiento(id, concepto, cantidad, fecha);
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura()) {
+            PreparedStatement consulta = prestamo.preparar(SELECT_POR_ID);
+            consulta.setLong(1, id);
+            try (ResultSet query = consulta.executeQuery()) {
+                if (query.next()) {
+                    movimiento = leerFila(query, prestamo);
+                }
+            }
         } catch (SQLException e) {
             System.out.println("MovimientoDAO: Error al leer movimientos.");
         }
         return movimiento;
     }
+
+    /**
+     * Obtiene un resumen agregado (número de movimientos, suma de cantidades y
+     * fechas mínima y máxima) a partir del resumen diario, sin leer cada movimiento.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param desde la fecha a partir de la cual (inclusive) se agregan los movimientos, o null para agregarlos todos.
+     * @return el resumen de los movimientos, o un resumen vacío si ocurrió un error.
+     */
+    static Resumen obtenerResumen(OrigenConexiones origen, LocalDate desde) {
+        Resumen resumen = new Resumen(0, 0, null, null);
+        String select = "SELECT COALESCE(SUM(NUMERO), 0), COALESCE(SUM(TOTAL), 0), MIN(DIA), MAX(DIA) FROM " + RESUMEN_DIARIO
+                + (desde == null ? "" : " WHERE DIA >= ?");
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura()) {
+            PreparedStatement consulta = prestamo.preparar(select);
+            if (desde != null) {
+                consulta.setLong(1, codificarFecha(desde));
+            }
+            try (ResultSet query = consulta.executeQuery()) {
+                if (query.next() && query.getLong(1) > 0) {
+                    resumen = new Resumen(query.getLong(1), query.getLong(2),
+                            decodificarFecha(query.getLong(3)), decodificarFecha(query.getLong(4)));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al calcular el resumen de movimientos.");
+        }
+        return resumen;
+    }
+
+    /**
+     * Lee el balance de cada día con movimientos a partir de una fecha, en orden
+     * cronológico, desde el resumen diario.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param desde la fecha a partir de la cual (inclusive) se leen los días, o null para leerlos todos.
+     * @return el total en céntimos de cada día, ordenado por fecha; vacío si ocurrió un error.
+     */
+    static Map<LocalDate, Long> leerResumenDiario(OrigenConexiones origen, LocalDate desde) {
+        Map<LocalDate, Long> totales = new LinkedHashMap<>();
+        String select = "SELECT DIA, TOTAL FROM " + RESUMEN_DIARIO + (desde == null ? "" : " WHERE DIA >= ?") + " ORDER BY DIA";
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura()) {
+            PreparedStatement consulta = prestamo.preparar(select);
+            if (desde != null) {
+                consulta.setLong(1, codificarFecha(desde));
+            }
+            try (ResultSet query = consulta.executeQuery()) {
+                while (query.next()) {
+                    totales.put(decodificarFecha(query.getLong(1)), query.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al leer el resumen diario.");
+        }
+        return totales;
+    }
+
+    /**
+     * Vuelve a calcular desde cero las tablas de resumen diario y mensual a partir
+     * de los movimientos. Normalmente no es necesario, ya que los triggers las
+     * mantienen al día, pero permite reparar archivos modificados por otras
+     * herramientas sin triggers.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @return true si los resúmenes se reconstruyeron correctamente, false si ocurrió un error.
+     */
+    static boolean reconstruirResumenes(OrigenConexiones origen) {
+        boolean reconstruido;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura()) {
+            Connection conexion = prestamo.getConexion();
+            conexion.setAutoCommit(false);
+            try {
+                prestamo.preparar("DELETE FROM " + RESUMEN_DIARIO).executeUpdate();
+                prestamo.preparar("DELETE FROM " + RESUMEN_MENSUAL).executeUpdate();
+                prestamo.preparar("INSERT INTO " + RESUMEN_DIARIO + "(DIA, TOTAL, NUMERO) "
+                        + "SELECT FECHA, SUM(CANTIDAD), COUNT(*) FROM " + NOMBRETABLA + " WHERE " + VIVOS + " GROUP BY FECHA").executeUpdate();
+                prestamo.preparar("INSERT INTO " + RESUMEN_MENSUAL + "(MES, TOTAL, NUMERO) "
+                        + "SELECT CAST(strftime('%Y%m', DIA * 86400, 'unixepoch') AS INTEGER) AS M, SUM(TOTAL), SUM(NUMERO) "
+                        + "FROM " + RESUMEN_DIARIO + " GROUP BY M").executeUpdate();
+                conexion.commit();
+            } catch (SQLException e) {
+                conexion.rollback();
+                throw e;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
+            reconstruido = true;
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al reconstruir los resúmenes.");
+            reconstruido = false;
+        }
+        return reconstruido;
+    }
+
+    /**
+     * Copia la base de datos completa en otro archivo con la API de copias de SQLite
+     * (sqlite3_backup), mediante el comando {@code backup to} del driver sqlite-jdbc.
+     * La copia se hace por pasos de unas pocas páginas con una conexión de lectura,
+     * por lo que en modo WAL no bloquea la escritura ni las demás lecturas; si otra
+     * conexión escribe entre dos pasos, SQLite vuelve a empezar la copia, de forma que
+     * el resultado es siempre una instantánea coherente.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param destino el archivo de la copia, que no debe existir.
+     * @return true si la copia se hizo correctamente, false si ocurrió un error.
+     */
+    static boolean copiarBaseDeDatos(OrigenConexiones origen, File destino) {
+        // El comando no admite caracteres de escape: se usan las comillas que no aparezcan en la ruta
+        String ruta = destino.getAbsolutePath();
+        char comillas = ruta.indexOf('"') < 0 ? '"' : '\'';
+        boolean copiado;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura();
+                Statement sentencia = prestamo.getConexion().createStatement()) {
+            sentencia.executeUpdate("backup to " + comillas + ruta + comillas);
+            copiado = true;
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al copiar la base de datos en " + destino + ".");
+            copiado = false;
+        }
+        return copiado;
+    }
+
+    /**
+     * Obtiene el número del último cambio apuntado en el registro de cambios, a
+     * partir del cual se leen los cambios posteriores con {@link #leerCambios(OrigenConexiones, long)}.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @return el número del último cambio (0 si no hay ninguno), o -1 si ocurrió un error.
+     */
+    static long ultimoCambio(OrigenConexiones origen) {
+        long ultimo = -1;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura();
+                ResultSet query = prestamo.preparar(ULTIMO_CAMBIO).executeQuery()) {
+            if (query.next()) {
+                ultimo = query.getLong(1);
+            }
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al leer el registro de cambios.");
+        }
+        return ultimo;
+    }
+
+    /**
+     * Lee los movimientos que han cambiado desde un cambio del registro de cambios,
+     * con una sola consulta. Cada movimiento cambiado se devuelve con la fecha que
+     * tenía antes del cambio y, si sigue vivo, también con sus datos actuales. Si
+     * hay más de {@link #maximoCambios} cambios, o si parte de ellos ya se han
+     * recortado del registro, los cambios se devuelven como incompletos.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @param desde el número del último cambio ya conocido.
+     * @return los cambios posteriores, o null si ocurrió un error.
+     */
+    static Cambios leerCambios(OrigenConexiones origen, long desde) {
+        long ultimo = desde;
+        boolean completo = true;
+        List<Movimiento> quitados = new ArrayList<>();
+        Map<Long, Movimiento> actuales = new LinkedHashMap<>();
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarLectura()) {
+            // Si el registro se ha recortado por encima de desde, faltan cambios
+            try (ResultSet query = prestamo.preparar(PRIMER_CAMBIO).executeQuery()) {
+                if (query.next() && query.getLong(1) > desde + 1) {
+                    completo = false;
+                }
+            }
+            PreparedStatement consulta = prestamo.preparar(LEER_CAMBIOS);
+            consulta.setLong(1, desde);
+            consulta.setInt(2, maximoCambios + 1);
+            try (ResultSet query = consulta.executeQuery()) {
+                while (completo && query.next()) {
+                    if (quitados.size() == maximoCambios) {
+                        completo = false;
+                        break;
+                    }
+                    ultimo = query.getLong("NUMERO_CAMBIO");
+                    long id = query.getLong("ID_MOVIMIENTO");
+                    quitados.add(new Movimiento(id, null, 0, decodificarFecha(query.getLong("FECHA_ANTERIOR"))));
+                    query.getLong("ID");
+                    if (!query.wasNull() && !actuales.containsKey(id)) {
+                        actuales.put(id, leerFila(query, prestamo));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al leer el registro de cambios.");
+            return null;
+        }
+        return new Cambios(ultimo, completo, quitados, new ArrayList<>(actuales.values()));
+    }
+
+    /**
+     * Obtiene el número de versión de los datos de SQLite (PRAGMA data_version) en
+     * la conexión de escritura. Como es la única conexión que escribe, el número
+     * solo cambia cuando otro proceso modifica el archivo.
+     * 
+     * @param origen el origen de las conexiones con la base de datos.
+     * @return el número de versión de los datos, o -1 si ocurrió un error.
+     */
+    static long versionDatos(OrigenConexiones origen) {
+        long version = -1;
+        try (GestorConexiones.Prestamo prestamo = origen.gestor().prestarEscritura();
+                ResultSet query = prestamo.preparar("PRAGMA data_version").executeQuery()) {
+            if (query.next()) {
+                version = query.getLong(1);
+            }
+        } catch (SQLException e) {
+            System.out.println("MovimientoDAO: Error al leer la versión de los datos.");
+        }
+        return version;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package model;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La clase PurgaBorrados elimina físicamente, en segundo plano, los movimientos que se
+ * borraron (borrado lógico) hace más de {@link #DIAS_RETENCION} días y que ya no se
+ * pueden deshacer.
+ *
+ * La purga se ejecuta al poco de arrancar y después periódicamente, por lotes de
+ * {@link #TAMANIO_LOTE} movimientos, de forma que nunca retiene la conexión de escritura
+ * durante mucho tiempo.
+ *
+ * @author DAM2
+ * @see RepositorioMovimientos#purgarBorrados(long, int)
+ */
+public class PurgaBorrados {
+
+    /** Días que se conservan los movimientos borrados antes de purgarlos. */
+    public static final int DIAS_RETENCION = 30;
+
+    /** Número de movimientos que se eliminan en cada transacción. */
+    public static final int TAMANIO_LOTE = 500;
+
+    /** Minutos entre una purga y la siguiente. */
+    public static final int PERIODO = 60;
+
+    private final RepositorioMovimientos repositorio;
+    private final ScheduledExecutorService planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "PurgaBorrados");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /**
+     * Constructor que programa la purga periódica. La primera se ejecuta al minuto de
+     * arrancar para no competir con la carga inicial de datos.
+     *
+     * @param repositorio el repositorio cuyos borrados se purgan.
+     */
+    public PurgaBorrados(RepositorioMovimientos repositorio) {
+        this.repositorio = repositorio;
+        planificador.scheduleWithFixedDelay(this::purgar, 1, PERIODO, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Elimina los movimientos borrados hace más de {@link #DIAS_RETENCION} días.
+     */
+    private void purgar() {
+        long antesDe = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(DIAS_RETENCION);
+        int purgados = repositorio.purgarBorrados(antesDe, TAMANIO_LOTE);
+        if (purgados > 0) {
+            System.out.println("PurgaBorrados: " + purgados + " movimientos borrados eliminados.");
+        }
+    }
+
+    /**
+     * Detiene la purga periódica. Si hay una purga en curso, termina el lote actual.
+     */
+    public void cerrar() {
+        planificador.shutdownNow();
+    }
+}
@@ -0,0 +1,760 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * La clase RepositorioBinario guarda los movimientos en un registro binario de solo
+ * añadido, formado por registros de ancho fijo que se leen a través de un
+ * {@link MappedByteBuffer}, sin copiarlos ni convertirlos en objetos al abrir la cartera.
+ *
+ * Al abrir solo se recorre el archivo una vez para construir, en arrays de tipos
+ * primitivos, el índice de movimientos vivos ordenado por fecha e ID; los objetos
+ * {@link Movimiento} se crean únicamente para los movimientos que se devuelven (por
+ * ejemplo, los de la página que se muestra).
+ *
+ * Los conceptos se guardan una sola vez en un diccionario aparte (también de ancho fijo)
+ * y cada registro solo guarda el número de su concepto.
+ *
+ * Formato de cada registro ({@value #TAMANIO_REGISTRO} bytes, big-endian):
+ * <pre>
+ * 0  tipo (1 byte: 'A' alta, 'B' borrado, 'R' restauración) + 3 de relleno
+ * 4  número de concepto (int, solo en altas)
+ * 8  ID del movimiento (long)
+ * 16 día desde el 1970-01-01 (int, solo en altas) + 4 de relleno
+ * 24 céntimos (long, en altas) o instante del borrado en milisegundos (long, en borrados)
+ * </pre>
+ * El primer registro del archivo es una cabecera con la firma {@value #FIRMA}.
+ *
+ * La compactación escribe una generación nueva del archivo con solo los registros
+ * necesarios y pasa a usarla; la anterior se borra en cuanto se puede (en Windows, un
+ * archivo mapeado no se puede borrar hasta reiniciar la aplicación).
+ *
+ * @author DAM2
+ */
+public class RepositorioBinario implements RepositorioMovimientos {
+
+    /** Tamaño de cada registro del archivo de movimientos, en bytes. */
+    public static final int TAMANIO_REGISTRO = 32;
+
+    /** Tamaño de cada entrada del diccionario de conceptos, en bytes. */
+    public static final int TAMANIO_CONCEPTO = 104;
+
+    /** Firma de la cabecera del archivo de movimientos. */
+    public static final String FIRMA = "DAMWALLET-MOV-1";
+
+    // Cada segmento mapeado ocupa 1 GiB (múltiplo del tamaño de registro)
+    private static final int BITS_SEGMENTO = 30;
+    private static final long TAMANIO_SEGMENTO = 1L << BITS_SEGMENTO;
+
+    // La clave de orden de un movimiento vivo es (día << BITS_ID) | id
+    private static final int BITS_ID = 41;
+    private static final long MASCARA_ID = (1L << BITS_ID) - 1;
+
+    private static final byte ALTA = 'A';
+    private static final byte BORRADO = 'B';
+    private static final byte RESTAURACION = 'R';
+
+    private final String base;
+    private int generacion;
+    private FileChannel canal;
+    private MappedByteBuffer[] segmentos = new MappedByteBuffer[0];
+    private long numeroRegistros;
+
+    private FileChannel canalConceptos;
+    private final List<String> conceptos = new ArrayList<>();
+    private final List<String[]> palabrasConceptos = new ArrayList<>();
+    private final Map<String, Integer> numerosConceptos = new HashMap<>();
+
+    // Índice en memoria, reconstruido al abrir
+    private int[] registroPorId = new int[1024];
+    private long[] claves = new long[1024];
+    private int numeroVivos;
+    private final Map<Long, Long> borrados = new LinkedHashMap<>();
+    private final Deque<Long> deshacer = new ArrayDeque<>();
+    private final NavigableMap<Integer, long[]> diario = new TreeMap<>();
+    private long siguienteId = 1;
+    private long registrosInutiles;
+
+    /**
+     * Constructor que abre (o crea) los archivos de la cartera y construye el índice.
+     *
+     * @param base la ruta de la cartera sin extensión; se usan los archivos
+     *        {@code base.N.movimientos} (N es la generación) y {@code base.conceptos}.
+     * @throws IOException si no se pueden abrir o leer los archivos.
+     */
+    public RepositorioBinario(String base) throws IOException {
+        this.base = base;
+        File directorio = new File(base).getAbsoluteFile().getParentFile();
+        if (directorio != null) {
+            directorio.mkdirs();
+        }
+        canalConceptos = FileChannel.open(new File(base + ".conceptos").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        leerConceptos();
+
+        generacion = buscarUltimaGeneracion();
+        abrirGeneracion();
+        borrarGeneracionesAnteriores();
+    }
+
+    private File archivoGeneracion(int n) {
+        return new File(base + "." + n + ".movimientos");
+    }
+
+    /**
+     * Obtiene los números de generación de los archivos de movimientos que existen.
+     */
+    private List<Integer> generaciones() {
+        File archivoBase = new File(base).getAbsoluteFile();
+        String prefijo = archivoBase.getName() + ".";
+        List<Integer> numeros = new ArrayList<>();
+        String[] nombres = archivoBase.getParentFile().list();
+        for (String nombre : nombres == null ? new String[0] : nombres) {
+            if (nombre.startsWith(prefijo) && nombre.endsWith(".movimientos")) {
+                try {
+                    numeros.add(Integer.parseInt(nombre.substring(prefijo.length(), nombre.length() - ".movimientos".length())));
+                } catch (NumberFormatException e) {
+                    // No es una generación
+                }
+            }
+        }
+        return numeros;
+    }
+
+    /**
+     * Busca la generación más reciente del archivo de movimientos. Las generaciones
+     * solo aparecen completas, ya que se escriben aparte y se renombran al final.
+     */
+    private int buscarUltimaGeneracion() {
+        return generaciones().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    private void borrarGeneracionesAnteriores() {
+        for (int n : generaciones()) {
+            if (n < generacion && !archivoGeneracion(n).delete()) {
+                System.out.println("RepositorioBinario: No se pudo borrar " + archivoGeneracion(n) + ", se borrará al reiniciar.");
+            }
+        }
+    }
+
+    /**
+     * Abre la generación actual del archivo de movimientos, escribiendo la cabecera si es
+     * nueva, y construye el índice recorriendo sus registros.
+     */
+    private void abrirGeneracion() throws IOException {
+        canal = FileChannel.open(archivoGeneracion(generacion).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (canal.size() == 0) {
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANIO_REGISTRO);
+            cabecera.put(FIRMA.getBytes(StandardCharsets.US_ASCII));
+            cabecera.clear();
+            canal.write(cabecera, 0);
+            canal.force(true);
+        }
+        // Un registro a medias (por ejemplo, tras un corte de luz) se descarta
+        long tamanio = canal.size() / TAMANIO_REGISTRO * TAMANIO_REGISTRO;
+        if (tamanio < canal.size()) {
+            canal.truncate(tamanio);
+        }
+        numeroRegistros = tamanio / TAMANIO_REGISTRO;
+        segmentos = new MappedByteBuffer[0];
+        mapear();
+        byte[] firma = new byte[FIRMA.length()];
+        for (int i = 0; i < firma.length; i++) {
+            firma[i] = segmentos[0].get(i);
+        }
+        if (!FIRMA.equals(new String(firma, StandardCharsets.US_ASCII))) {
+            canal.close();
+            throw new IOException("RepositorioBinario: " + archivoGeneracion(generacion) + " no es un archivo de movimientos.");
+        }
+        construirIndice();
+    }
+
+    /**
+     * Mapea el archivo de movimientos hasta su tamaño actual. Los segmentos completos no
+     * cambian nunca: solo se vuelve a mapear el último si está a medias, y se mapean los
+     * nuevos.
+     */
+    private void mapear() throws IOException {
+        long tamanio = numeroRegistros * TAMANIO_REGISTRO;
+        int numero = (int) ((tamanio + TAMANIO_SEGMENTO - 1) >>> BITS_SEGMENTO);
+        int desde = segmentos.length;
+        if (desde > 0 && segmentos[desde - 1].capacity() < TAMANIO_SEGMENTO) {
+            desde--;
+        }
+        segmentos = Arrays.copyOf(segmentos, numero);
+        for (int i = desde; i < numero; i++) {
+            long inicio = (long) i << BITS_SEGMENTO;
+            segmentos[i] = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(TAMANIO_SEGMENTO, tamanio - inicio));
+        }
+    }
+
+    private ByteBuffer segmento(long registro) {
+        return segmentos[(int) ((registro * TAMANIO_REGISTRO) >>> BITS_SEGMENTO)];
+    }
+
+    private int desplazamiento(long registro) {
+        return (int) ((registro * TAMANIO_REGISTRO) & (TAMANIO_SEGMENTO - 1));
+    }
+
+    private byte tipo(long registro) {
+        return segmento(registro).get(desplazamiento(registro));
+    }
+
+    private int concepto(long registro) {
+        return segmento(registro).getInt(desplazamiento(registro) + 4);
+    }
+
+    private long id(long registro) {
+        return segmento(registro).getLong(desplazamiento(registro) + 8);
+    }
+
+    private int dia(long registro) {
+        return segmento(registro).getInt(desplazamiento(registro) + 16);
+    }
+
+    private long valor(long registro) {
+        return segmento(registro).getLong(desplazamiento(registro) + 24);
+    }
+
+    /**
+     * Recorre todos los registros del archivo mapeado y construye el índice de
+     * movimientos vivos, los borrados, el diario de deshacer y los totales diarios.
+     */
+    private void construirIndice() {
+        Arrays.fill(registroPorId, -1);
+        numeroVivos = 0;
+        borrados.clear();
+        deshacer.clear();
+        diario.clear();
+        registrosInutiles = 0;
+        for (long r = 1; r < numeroRegistros; r++) {
+            long id = id(r);
+            switch (tipo(r)) {
+                case ALTA:
+                    asegurarId(id);
+                    registroPorId[(int) id] = (int) r;
+                    claves = asegurar(claves, numeroVivos + 1);
+                    claves[numeroVivos++] = clave(dia(r), id);
+                    sumarDia(dia(r), valor(r), 1);
+                    siguienteId = Math.max(siguienteId, id + 1);
+                    break;
+                case BORRADO:
+                    marcarBorrado(id, valor(r), false);
+                    registrosInutiles++;
+                    break;
+                case RESTAURACION:
+                    marcarVivo(id, false);
+                    registrosInutiles++;
+                    break;
+                default:
+                    registrosInutiles++;
+                    break;
+            }
+        }
+        // Las claves vivas se ordenan una sola vez al final
+        long[] vivas = new long[numeroVivos];
+        int n = 0;
+        for (int i = 0; i < numeroVivos; i++) {
+            long id = claves[i] & MASCARA_ID;
+            if (!borrados.containsKey(id)) {
+                vivas[n++] = claves[i];
+            }
+        }
+        Arrays.sort(vivas, 0, n);
+        claves = Arrays.copyOf(vivas, Math.max(n, 1024));
+        numeroVivos = n;
+    }
+
+    private static long clave(int dia, long id) {
+        return ((long) dia << BITS_ID) | id;
+    }
+
+    private void asegurarId(long id) {
+        if (id >= registroPorId.length) {
+            int anterior = registroPorId.length;
+            registroPorId = Arrays.copyOf(registroPorId, (int) Math.max(id + 1, anterior * 2L));
+            Arrays.fill(registroPorId, anterior, registroPorId.length, -1);
+        }
+    }
+
+    private static long[] asegurar(long[] array, int tamanio) {
+        return tamanio <= array.length ? array : Arrays.copyOf(array, Math.max(tamanio, array.length * 2));
+    }
+
+    private int registroDe(long id) {
+        return id > 0 && id < registroPorId.length ? registroPorId[(int) id] : -1;
+    }
+
+    /**
+     * Busca una clave en el índice ordenado de movimientos vivos.
+     *
+     * @return la posición de la clave, o (-(punto de inserción) - 1) si no está.
+     */
+    private int buscar(long clave) {
+        return Arrays.binarySearch(claves, 0, numeroVivos, clave);
+    }
+
+    private void insertarClave(long clave) {
+        int posicion = -buscar(clave) - 1;
+        claves = asegurar(claves, numeroVivos + 1);
+        System.arraycopy(claves, posicion, claves, posicion + 1, numeroVivos - posicion);
+        claves[posicion] = clave;
+        numeroVivos++;
+    }
+
+    /**
+     * Inserta varias claves en el índice ordenado de una vez: se ordenan y se mezclan con
+     * las existentes desde el final, de forma que cada clave se mueve una sola vez.
+     */
+    private void insertarClaves(long[] nuevas) {
+        if (nuevas.length == 1) {
+            insertarClave(nuevas[0]);
+            return;
+        }
+        Arrays.sort(nuevas);
+        claves = asegurar(claves, numeroVivos + nuevas.length);
+        int i = numeroVivos - 1;
+        int j = nuevas.length - 1;
+        for (int k = numeroVivos + nuevas.length - 1; j >= 0; k--) {
+            claves[k] = i >= 0 && claves[i] > nuevas[j] ? claves[i--] : nuevas[j--];
+        }
+        numeroVivos += nuevas.length;
+    }
+
+    private void quitarClave(long clave) {
+        int posicion = buscar(clave);
+        if (posicion >= 0) {
+            System.arraycopy(claves, posicion + 1, claves, posicion, numeroVivos - posicion - 1);
+            numeroVivos--;
+        }
+    }
+
+    /**
+     * Marca un movimiento vivo como borrado, actualizando los totales y el diario de
+     * deshacer. Durante la construcción del índice las claves aún no están ordenadas,
+     * por lo que no se tocan.
+     */
+    private boolean marcarBorrado(long id, long instante, boolean actualizarClaves) {
+        int r = registroDe(id);
+        if (r < 0 || borrados.containsKey(id)) {
+            return false;
+        }
+        if (actualizarClaves) {
+            quitarClave(clave(dia(r), id));
+        }
+        sumarDia(dia(r), valor(r), -1);
+        borrados.put(id, instante);
+        deshacer.push(id);
+        while (deshacer.size() > TAMANIO_DESHACER) {
+            deshacer.removeLast();
+        }
+        return true;
+    }
+
+    private boolean marcarVivo(long id, boolean actualizarClaves) {
+        int r = registroDe(id);
+        if (r < 0 || borrados.remove(id) == null) {
+            return false;
+        }
+        deshacer.remove(id);
+        if (actualizarClaves) {
+            insertarClave(clave(dia(r), id));
+        }
+        sumarDia(dia(r), valor(r), 1);
+        return true;
+    }
+
+    private void sumarDia(int dia, long cantidad, int signo) {
+        long[] totales = diario.computeIfAbsent(dia, d -> new long[2]);
+        totales[0] += signo * cantidad;
+        totales[1] += signo;
+        if (totales[1] == 0) {
+            diario.remove(dia);
+        }
+    }
+
+    /**
+     * Crea el objeto Movimiento de un registro de alta.
+     */
+    private Movimiento leerMovimiento(long id) {
+        int r = registroDe(id);
+        return new Movimiento(id, conceptos.get(concepto(r)), valor(r), LocalDate.ofEpochDay(dia(r)));
+    }
+
+    private Movimiento leerClave(int posicion) {
+        return leerMovimiento(claves[posicion] & MASCARA_ID);
+    }
+
+    @Override
+    public synchronized Movimiento[] leerPagina(LocalDate desde, Movimiento ultimo, int tamanio) {
+        // Las claves están en orden ascendente, así que la lista se recorre desde el final
+        int posicion = numeroVivos - 1;
+        if (ultimo != null) {
+            int encontrada = buscar(clave((int) ultimo.getFecha().toEpochDay(), ultimo.getId()));
+            posicion = encontrada >= 0 ? encontrada - 1 : -encontrada - 2;
+        }
+        long minima = desde == null ? Long.MIN_VALUE : clave((int) desde.toEpochDay(), 0);
+        List<Movimiento> pagina = new ArrayList<>();
+        while (posicion >= 0 && pagina.size() < tamanio && claves[posicion] >= minima) {
+            pagina.add(leerClave(posicion--));
+        }
+        return pagina.toArray(new Movimiento[0]);
+    }
+
+    /**
+     * Recorre los movimientos vivos del más reciente al más antiguo, creando cada objeto
+     * al llegar a él. Los que se purguen mientras tanto se omiten.
+     */
+    @Override
+    public synchronized Stream<Movimiento> streamMovimientos() {
+        long[] copia = Arrays.copyOf(claves, numeroVivos);
+        return IntStream.range(0, copia.length)
+                .mapToObj(i -> {
+                    synchronized (this) {
+                        long id = copia[copia.length - 1 - i] & MASCARA_ID;
+                        return registroDe(id) < 0 ? null : leerMovimiento(id);
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public synchronized Movimiento obtenerMovimientoPorId(long id) {
+        return registroDe(id) < 0 || borrados.containsKey(id) ? null : leerMovimiento(id);
+    }
+
+    @Override
+    public synchronized long[] escribirMovimientos(Collection<Movimiento> nuevos) {
+        int[] numeros = new int[nuevos.size()];
+        ByteBuffer registros = ByteBuffer.allocate(nuevos.size() * TAMANIO_REGISTRO);
+        long id = siguienteId;
+        try {
+            // Las mismas reglas que la tabla de movimientos, antes de añadir ningún concepto
+            for (Movimiento movimiento : nuevos) {
+                String motivo = Movimiento.validar(movimiento.getConcepto(), movimiento.getCantidad(), movimiento.getFecha());
+                if (motivo != null) {
+                    throw new IOException(motivo);
+                }
+            }
+            int i = 0;
+            for (Movimiento movimiento : nuevos) {
+                numeros[i++] = numeroConcepto(movimiento.getConcepto());
+            }
+            i = 0;
+            for (Movimiento movimiento : nuevos) {
+                escribirRegistro(registros, ALTA, numeros[i++], id++, (int) movimiento.getFecha().toEpochDay(), movimiento.getCantidad());
+            }
+            anadir(registros);
+        } catch (IOException e) {
+            System.out.println("RepositorioBinario: Error al escribir movimientos: " + e.getMessage());
+            return null;
+        }
+        long[] ids = new long[nuevos.size()];
+        long[] nuevasClaves = new long[nuevos.size()];
+        long r = numeroRegistros - nuevos.size();
+        int i = 0;
+        for (Movimiento movimiento : nuevos) {
+            movimiento.setId(siguienteId++);
+            asegurarId(movimiento.getId());
+            registroPorId[(int) movimiento.getId()] = (int) r++;
+            nuevasClaves[i] = clave((int) movimiento.getFecha().toEpochDay(), movimiento.getId());
+            sumarDia((int) movimiento.getFecha().toEpochDay(), movimiento.getCantidad(), 1);
+            ids[i++] = movimiento.getId();
+        }
+        insertarClaves(nuevasClaves);
+        return ids;
+    }
+
+    @Override
+    public synchronized boolean borrarMovimientos(Collection<Long> ids) {
+        long instante = System.currentTimeMillis();
+        List<Long> vivos = new ArrayList<>();
+        for (long id : ids) {
+            if (obtenerMovimientoPorId(id) != null && !vivos.contains(id)) {
+                vivos.add(id);
+            }
+        }
+        ByteBuffer registros = ByteBuffer.allocate(vivos.size() * TAMANIO_REGISTRO);
+        for (long id : vivos) {
+            escribirRegistro(registros, BORRADO, 0, id, 0, instante);
+        }
+        try {
+            anadir(registros);
+        } catch (IOException e) {
+            System.out.println("RepositorioBinario: Error al borrar movimientos.");
+            return false;
+        }
+        for (long id : vivos) {
+            marcarBorrado(id, instante, true);
+            registrosInutiles++;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Movimiento deshacerBorrado() {
+        while (!deshacer.isEmpty()) {
+            long id = deshacer.peek();
+            ByteBuffer registro = ByteBuffer.allocate(TAMANIO_REGISTRO);
+            escribirRegistro(registro, RESTAURACION, 0, id, 0, 0);
+            try {
+                anadir(registro);
+            } catch (IOException e) {
+                System.out.println("RepositorioBinario: Error al deshacer el borrado.");
+                return null;
+            }
+            registrosInutiles++;
+            if (marcarVivo(id, true)) {
+                return leerMovimiento(id);
+            }
+            deshacer.remove(id);
+        }
+        return null;
+    }
+
+    /**
+     * Purga los borrados antiguos y compacta el archivo si se ha purgado alguno o si más
+     * de la mitad de sus registros ya no son necesarios.
+     */
+    @Override
+    public synchronized int purgarBorrados(long antesDe, int lote) {
+        int purgados = 0;
+        for (Map.Entry<Long, Long> borrado : new ArrayList<>(borrados.entrySet())) {
+            long id = borrado.getKey();
+            if (borrado.getValue() < antesDe && !deshacer.contains(id)) {
+                borrados.remove(id);
+                registroPorId[(int) id] = -1;
+                registrosInutiles++;
+                purgados++;
+            }
+        }
+        if (purgados > 0 || registrosInutiles * 2 > numeroRegistros) {
+            try {
+                compactar();
+            } catch (IOException e) {
+                // La generación actual sigue siendo válida: los purgados se volverán a purgar
+                System.out.println("RepositorioBinario: Error al compactar: " + e.getMessage());
+            }
+        }
+        return purgados;
+    }
+
+    @Override
+    public synchronized Resumen obtenerResumen(LocalDate desde) {
+        NavigableMap<Integer, long[]> dias = desde == null ? diario : diario.tailMap((int) desde.toEpochDay(), true);
+        long numero = 0;
+        long total = 0;
+        for (long[] dia : dias.values()) {
+            total += dia[0];
+            numero += dia[1];
+        }
+        return dias.isEmpty()
+                ? new Resumen(0, 0, null, null)
+                : new Resumen(numero, total, LocalDate.ofEpochDay(dias.firstKey()), LocalDate.ofEpochDay(dias.lastKey()));
+    }
+
+    @Override
+    public synchronized Map<LocalDate, Long> leerResumenDiario(LocalDate desde) {
+        Map<LocalDate, Long> totales = new LinkedHashMap<>();
+        for (Map.Entry<Integer, long[]> dia : (desde == null ? diario : diario.tailMap((int) desde.toEpochDay(), true)).entrySet()) {
+            totales.put(LocalDate.ofEpochDay(dia.getKey()), dia.getValue()[0]);
+        }
+        return totales;
+    }
+
+    /**
+     * Busca primero en el diccionario los conceptos que contienen todas las palabras y
+     * después recorre los movimientos vivos comparando solo números de concepto.
+     */
+    @Override
+    public synchronized Movimiento[] buscarMovimientos(String texto, int limite) {
+        String[] buscadas = palabras(texto);
+        if (buscadas.length == 0) {
+            return new Movimiento[0];
+        }
+        boolean[] coinciden = new boolean[conceptos.size()];
+        for (int c = 0; c < conceptos.size(); c++) {
+            String[] palabras = palabrasConceptos.get(c);
+            coinciden[c] = Stream.of(buscadas).allMatch(b -> Stream.of(palabras).anyMatch(p -> p.startsWith(b)));
+        }
+        List<Movimiento> encontrados = new ArrayList<>();
+        for (int i = numeroVivos - 1; i >= 0 && encontrados.size() < limite; i--) {
+            if (coinciden[concepto(registroDe(claves[i] & MASCARA_ID))]) {
+                encontrados.add(leerClave(i));
+            }
+        }
+        return encontrados.toArray(new Movimiento[0]);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            canal.close();
+            canalConceptos.close();
+        } catch (IOException e) {
+            System.out.println("RepositorioBinario: Error al cerrar " + base + ".");
+        }
+    }
+
+    /**
+     * Escribe una generación nueva del archivo con un alta por cada movimiento guardado y
+     * un borrado por cada movimiento borrado (dejando al final, en orden, los que se
+     * pueden deshacer), y pasa a usarla.
+     *
+     * @throws IOException si no se puede escribir la generación nueva.
+     */
+    public synchronized void compactar() throws IOException {
+        File temporal = new File(base + ".movimientos.tmp");
+        try (FileChannel nuevo = FileChannel.open(temporal.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer bloque = ByteBuffer.allocate(TAMANIO_REGISTRO * 4096);
+            bloque.put(FIRMA.getBytes(StandardCharsets.US_ASCII));
+            bloque.position(TAMANIO_REGISTRO);
+            for (int id = 1; id < registroPorId.length; id++) {
+                int r = registroPorId[id];
+                if (r >= 0) {
+                    bloque = volcarSiLleno(nuevo, bloque);
+                    escribirRegistro(bloque, ALTA, concepto(r), id, dia(r), valor(r));
+                }
+            }
+            List<Long> pendientes = new ArrayList<>(deshacer);
+            for (Map.Entry<Long, Long> borrado : borrados.entrySet()) {
+                if (!pendientes.contains(borrado.getKey())) {
+                    bloque = volcarSiLleno(nuevo, bloque);
+                    escribirRegistro(bloque, BORRADO, 0, borrado.getKey(), 0, borrado.getValue());
+                }
+            }
+            for (int i = pendientes.size() - 1; i >= 0; i--) {
+                bloque = volcarSiLleno(nuevo, bloque);
+                escribirRegistro(bloque, BORRADO, 0, pendientes.get(i), 0, borrados.get(pendientes.get(i)));
+            }
+            bloque.flip();
+            while (bloque.hasRemaining()) {
+                nuevo.write(bloque);
+            }
+            nuevo.force(true);
+        }
+        Files.move(temporal.toPath(), archivoGeneracion(generacion + 1).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        canal.close();
+        generacion++;
+        abrirGeneracion();
+        borrarGeneracionesAnteriores();
+    }
+
+    private static ByteBuffer volcarSiLleno(FileChannel canal, ByteBuffer bloque) throws IOException {
+        if (bloque.remaining() < TAMANIO_REGISTRO) {
+            bloque.flip();
+            while (bloque.hasRemaining()) {
+                canal.write(bloque);
+            }
+            bloque.clear();
+        }
+        return bloque;
+    }
+
+    private static void escribirRegistro(ByteBuffer destino, byte tipo, int concepto, long id, int dia, long valor) {
+        int inicio = destino.position();
+        destino.put(tipo).put((byte) 0).put((byte) 0).put((byte) 0)
+                .putInt(concepto).putLong(id).putInt(dia).putInt(0).putLong(valor);
+        destino.position(inicio + TAMANIO_REGISTRO);
+    }
+
+    /**
+     * Añade registros al final del archivo, los fuerza a disco y amplía el mapeo.
+     */
+    private void anadir(ByteBuffer registros) throws IOException {
+        registros.flip();
+        long posicion = numeroRegistros * TAMANIO_REGISTRO;
+        while (registros.hasRemaining()) {
+            posicion += canal.write(registros, posicion);
+        }
+        canal.force(false);
+        numeroRegistros = posicion / TAMANIO_REGISTRO;
+        mapear();
+    }
+
+    /**
+     * Lee el diccionario de conceptos completo. Una entrada a medias se descarta.
+     */
+    private void leerConceptos() throws IOException {
+        long numero = canalConceptos.size() / TAMANIO_CONCEPTO;
+        canalConceptos.truncate(numero * TAMANIO_CONCEPTO);
+        ByteBuffer entradas = ByteBuffer.allocate((int) (numero * TAMANIO_CONCEPTO));
+        while (entradas.hasRemaining() && canalConceptos.read(entradas, entradas.position()) > 0) {
+            // Leer el diccionario completo
+        }
+        for (int i = 0; i < numero; i++) {
+            entradas.position(i * TAMANIO_CONCEPTO);
+            byte[] texto = new byte[entradas.getShort()];
+            entradas.get(texto);
+            registrarConcepto(new String(texto, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void registrarConcepto(String concepto) {
+        numerosConceptos.put(concepto, conceptos.size());
+        conceptos.add(concepto);
+        palabrasConceptos.add(palabras(concepto));
+    }
+
+    /**
+     * Obtiene el número de un concepto, añadiéndolo al diccionario si es nuevo. El
+     * concepto ya debe ser válido (ver {@link Movimiento#validar}).
+     *
+     * @throws IOException si el concepto no cabe en una entrada o no se puede escribir.
+     */
+    private int numeroConcepto(String concepto) throws IOException {
+        Integer numero = numerosConceptos.get(concepto);
+        if (numero == null) {
+            byte[] texto = concepto.getBytes(StandardCharsets.UTF_8);
+            if (texto.length > TAMANIO_CONCEPTO - 2) {
+                throw new IOException("RepositorioBinario: Concepto no válido: " + concepto);
+            }
+            ByteBuffer entrada = ByteBuffer.allocate(TAMANIO_CONCEPTO);
+            entrada.putShort((short) texto.length).put(texto);
+            entrada.clear();
+            long posicion = (long) conceptos.size() * TAMANIO_CONCEPTO;
+            while (entrada.hasRemaining()) {
+                posicion += canalConceptos.write(entrada, posicion);
+            }
+            canalConceptos.force(false);
+            numero = conceptos.size();
+            registrarConcepto(concepto);
+        }
+        return numero;
+    }
+
+    /**
+     * Separa un texto en palabras en minúsculas y sin tildes.
+     */
+    private static String[] palabras(String texto) {
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+        return Stream.of(normalizado.split("[^\\p{L}\\p{N}]+")).filter(p -> !p.isEmpty()).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,356 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * La clase RepositorioConsolidado muestra varias carteras como si fueran una sola. Cada
+ * cartera se abre con su propio repositorio y se consulta en su propio hilo, de forma
+ * que una consulta consolidada tarda lo que tarde la cartera más lenta y no la suma de
+ * todas. Las páginas de cada cartera, ya ordenadas, se mezclan con una cola de prioridad.
+ *
+ * Los IDs de cada cartera se repiten entre carteras, así que se codifican como
+ * {@code id * n + cartera} (n es el número de carteras). Así el orden por fecha e ID es
+ * total y de cada ID se sabe a qué cartera pertenece.
+ *
+ * Los movimientos nuevos se añaden a la primera cartera. Los borrados se aplican en la
+ * cartera de cada movimiento y solo se pueden deshacer los hechos en esta vista.
+ *
+ * @author DAM2
+ */
+public class RepositorioConsolidado implements RepositorioMovimientos {
+
+    // Orden de la lista de movimientos: fecha descendente y, dentro del día, ID descendente
+    private static final Comparator<Movimiento> ORDEN
+            = Comparator.comparing(Movimiento::getFecha).thenComparingLong(Movimiento::getId).reversed();
+
+    private final List<RepositorioMovimientos> carteras;
+    private final ExecutorService trabajadores;
+    private final Deque<Integer> borrados = new ArrayDeque<>();
+
+    private RepositorioConsolidado(List<RepositorioMovimientos> carteras, ExecutorService trabajadores) {
+        this.carteras = carteras;
+        this.trabajadores = trabajadores;
+    }
+
+    /**
+     * Abre varias carteras a la vez, cada una en su propio hilo.
+     *
+     * @param tipo el tipo de repositorio con el que se abre cada cartera.
+     * @param rutas las rutas de los archivos .db de las carteras.
+     * @return el repositorio consolidado, o null si alguna cartera no se pudo abrir (en
+     *         cuyo caso se cierran las que sí se abrieron).
+     */
+    public static RepositorioConsolidado abrir(TipoRepositorio tipo, List<String> rutas) {
+        AtomicInteger numero = new AtomicInteger();
+        ExecutorService trabajadores = Executors.newFixedThreadPool(rutas.size(), tarea -> {
+            Thread hilo = new Thread(tarea, "Cartera-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        List<Future<RepositorioMovimientos>> aperturas = new ArrayList<>();
+        for (String ruta : rutas) {
+            aperturas.add(trabajadores.submit(() -> tipo.abrir(ruta)));
+        }
+        List<RepositorioMovimientos> carteras = new ArrayList<>();
+        boolean abiertas = true;
+        for (Future<RepositorioMovimientos> apertura : aperturas) {
+            RepositorioMovimientos cartera = esperar(apertura);
+            if (cartera == null) {
+                abiertas = false;
+            } else {
+                carteras.add(cartera);
+            }
+        }
+        if (!abiertas) {
+            carteras.forEach(RepositorioMovimientos::close);
+            trabajadores.shutdown();
+            return null;
+        }
+        return new RepositorioConsolidado(carteras, trabajadores);
+    }
+
+    private static <T> T esperar(Future<T> futuro) {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta consolidada interrumpida", e);
+        } catch (ExecutionException e) {
+            System.out.println("RepositorioConsolidado: Error en una cartera: " + e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Ejecuta una consulta en todas las carteras a la vez, cada una en su hilo.
+     *
+     * @param consulta la consulta, que recibe el número de la cartera.
+     * @return el resultado de cada cartera, en el orden de las carteras (null si falló).
+     */
+    private <T> List<T> enCadaCartera(IntFunction<T> consulta) {
+        List<Future<T>> futuros = new ArrayList<>();
+        for (int i = 0; i < carteras.size(); i++) {
+            int cartera = i;
+            futuros.add(trabajadores.submit(() -> consulta.apply(cartera)));
+        }
+        List<T> resultados = new ArrayList<>();
+        for (Future<T> futuro : futuros) {
+            resultados.add(esperar(futuro));
+        }
+        return resultados;
+    }
+
+    private long codificar(long id, int cartera) {
+        return id * carteras.size() + cartera;
+    }
+
+    private int cartera(long id) {
+        return (int) (id % carteras.size());
+    }
+
+    private long idEnCartera(long id) {
+        return id / carteras.size();
+    }
+
+    private Movimiento codificar(Movimiento movimiento, int cartera) {
+        return movimiento == null ? null
+                : new Movimiento(codificar(movimiento.getId(), cartera), movimiento.getConcepto(), movimiento.getCantidad(), movimiento.getFecha());
+    }
+
+    /**
+     * Mezcla listas de movimientos ordenadas (del más reciente al más antiguo) en una
+     * sola, también ordenada, con una cola de prioridad con la cabeza de cada lista.
+     *
+     * @param listas las listas ordenadas, con los IDs ya codificados.
+     * @param limite el número máximo de movimientos del resultado.
+     * @return los primeros movimientos de la mezcla.
+     */
+    private static Movimiento[] mezclar(List<Movimiento[]> listas, int limite) {
+        // Cada elemento de la cola es {lista, posición}
+        PriorityQueue<int[]> cabezas = new PriorityQueue<>(Math.max(1, listas.size()),
+                (a, b) -> ORDEN.compare(listas.get(a[0])[a[1]], listas.get(b[0])[b[1]]));
+        for (int i = 0; i < listas.size(); i++) {
+            if (listas.get(i).length > 0) {
+                cabezas.add(new int[]{i, 0});
+            }
+        }
+        List<Movimiento> mezcla = new ArrayList<>();
+        while (!cabezas.isEmpty() && mezcla.size() < limite) {
+            int[] cabeza = cabezas.poll();
+            Movimiento[] lista = listas.get(cabeza[0]);
+            mezcla.add(lista[cabeza[1]]);
+            if (++cabeza[1] < lista.length) {
+                cabezas.add(cabeza);
+            }
+        }
+        return mezcla.toArray(new Movimiento[0]);
+    }
+
+    @Override
+    public Movimiento[] leerPagina(LocalDate desde, Movimiento ultimo, int tamanio) {
+        return leerPagina(Consulta.desde(desde), ultimo, tamanio);
+    }
+
+    /**
+     * Lee la página siguiente de cada cartera a la vez y las mezcla. Cada cartera
+     * resuelve la consulta por su cuenta, de forma que las de SQLite la filtran en la
+     * base de datos. La página de cada cartera continúa tras el último movimiento
+     * mostrado: como los IDs codificados ordenan por cartera dentro de un mismo ID, las
+     * carteras anteriores a la del último movimiento incluyen también ese ID.
+     */
+    @Override
+    public Movimiento[] leerPagina(Consulta consulta, Movimiento ultimo, int tamanio) {
+        List<Movimiento[]> paginas = new ArrayList<>();
+        List<Movimiento[]> leidas = enCadaCartera(cartera -> {
+            Movimiento cursor = null;
+            if (ultimo != null) {
+                long id = idEnCartera(ultimo.getId()) + (cartera < cartera(ultimo.getId()) ? 1 : 0);
+                cursor = new Movimiento(id, ultimo.getConcepto(), ultimo.getCantidad(), ultimo.getFecha());
+            }
+            Movimiento[] pagina = carteras.get(cartera).leerPagina(consulta, cursor, tamanio);
+            for (int i = 0; i < pagina.length; i++) {
+                pagina[i] = codificar(pagina[i], cartera);
+            }
+            return pagina;
+        });
+        for (Movimiento[] pagina : leidas) {
+            paginas.add(pagina == null ? new Movimiento[0] : pagina);
+        }
+        return mezclar(paginas, tamanio);
+    }
+
+    /**
+     * Recorre los movimientos de todas las carteras, una detrás de otra.
+     */
+    @Override
+    public Stream<Movimiento> streamMovimientos() {
+        return IntStream.range(0, carteras.size()).boxed()
+                .flatMap(i -> carteras.get(i).streamMovimientos().map(m -> codificar(m, i)));
+    }
+
+    @Override
+    public Movimiento obtenerMovimientoPorId(long id) {
+        int cartera = cartera(id);
+        return codificar(carteras.get(cartera).obtenerMovimientoPorId(idEnCartera(id)), cartera);
+    }
+
+    /**
+     * Añade los movimientos a la primera cartera.
+     */
+    @Override
+    public long[] escribirMovimientos(Collection<Movimiento> movimientos) {
+        long[] ids = carteras.get(0).escribirMovimientos(movimientos);
+        if (ids != null) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = codificar(ids[i], 0);
+            }
+            int i = 0;
+            for (Movimiento movimiento : movimientos) {
+                movimiento.setId(ids[i++]);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Borra cada movimiento en su cartera. Si falla el borrado en una cartera, los de las
+     * carteras anteriores ya se han aplicado.
+     */
+    @Override
+    public synchronized boolean borrarMovimientos(Collection<Long> ids) {
+        Map<Integer, List<Long>> porCartera = new TreeMap<>();
+        for (long id : ids) {
+            porCartera.computeIfAbsent(cartera(id), c -> new ArrayList<>()).add(idEnCartera(id));
+        }
+        for (Map.Entry<Integer, List<Long>> grupo : porCartera.entrySet()) {
+            if (!carteras.get(grupo.getKey()).borrarMovimientos(grupo.getValue())) {
+                return false;
+            }
+            for (int i = 0; i < grupo.getValue().size(); i++) {
+                borrados.push(grupo.getKey());
+            }
+        }
+        while (borrados.size() > TAMANIO_DESHACER) {
+            borrados.removeLast();
+        }
+        return true;
+    }
+
+    /**
+     * Deshace el último borrado hecho en esta vista, en la cartera en la que se hizo.
+     */
+    @Override
+    public synchronized Movimiento deshacerBorrado() {
+        if (borrados.isEmpty()) {
+            return null;
+        }
+        int cartera = borrados.pop();
+        return codificar(carteras.get(cartera).deshacerBorrado(), cartera);
+    }
+
+    @Override
+    public int purgarBorrados(long antesDe, int lote) {
+        int purgados = 0;
+        for (Integer purgadosCartera : enCadaCartera(cartera -> carteras.get(cartera).purgarBorrados(antesDe, lote))) {
+            if (purgadosCartera == null || purgadosCartera < 0) {
+                return -1;
+            }
+            purgados += purgadosCartera;
+        }
+        return purgados;
+    }
+
+    @Override
+    public Resumen obtenerResumen(LocalDate desde) {
+        long numero = 0;
+        long total = 0;
+        LocalDate minima = null;
+        LocalDate maxima = null;
+        for (Resumen resumen : enCadaCartera(cartera -> carteras.get(cartera).obtenerResumen(desde))) {
+            if (resumen == null || resumen.getNumero() == 0) {
+                continue;
+            }
+            numero += resumen.getNumero();
+            total += resumen.getTotal();
+            minima = minima == null || resumen.getFechaMinima().isBefore(minima) ? resumen.getFechaMinima() : minima;
+            maxima = maxima == null || resumen.getFechaMaxima().isAfter(maxima) ? resumen.getFechaMaxima() : maxima;
+        }
+        return new Resumen(numero, total, minima, maxima);
+    }
+
+    @Override
+    public Map<LocalDate, Long> leerResumenDiario(LocalDate desde) {
+        Map<LocalDate, Long> totales = new TreeMap<>();
+        for (Map<LocalDate, Long> diario : enCadaCartera(cartera -> carteras.get(cartera).leerResumenDiario(desde))) {
+            if (diario != null) {
+                diario.forEach((dia, total) -> totales.merge(dia, total, Long::sum));
+            }
+        }
+        return new LinkedHashMap<>(totales);
+    }
+
+    /**
+     * Busca en todas las carteras a la vez. La relevancia de cada cartera no es
+     * comparable con la de las demás, así que los resultados se mezclan por fecha.
+     */
+    @Override
+    public Movimiento[] buscarMovimientos(String texto, int limite) {
+        List<Movimiento[]> resultados = new ArrayList<>();
+        List<Movimiento[]> encontrados = enCadaCartera(cartera -> carteras.get(cartera).buscarMovimientos(texto, limite));
+        for (int i = 0; i < encontrados.size(); i++) {
+            Movimiento[] lista = encontrados.get(i) == null ? new Movimiento[0] : encontrados.get(i);
+            for (int j = 0; j < lista.length; j++) {
+                lista[j] = codificar(lista[j], i);
+            }
+            Arrays.sort(lista, ORDEN);
+            resultados.add(lista);
+        }
+        return mezclar(resultados, limite);
+    }
+
+    @Override
+    public boolean reconstruirResumenes() {
+        return enCadaCartera(cartera -> carteras.get(cartera).reconstruirResumenes()).stream().allMatch(Boolean.TRUE::equals);
+    }
+
+    @Override
+    public String estadisticas() {
+        StringJoiner texto = new StringJoiner("\n");
+        for (RepositorioMovimientos cartera : carteras) {
+            String estadisticas = cartera.estadisticas();
+            if (estadisticas != null) {
+                texto.add(estadisticas);
+            }
+        }
+        return texto.length() == 0 ? null : texto.toString();
+    }
+
+    /**
+     * Cierra todas las carteras y los hilos de consulta.
+     */
+    @Override
+    public void close() {
+        carteras.forEach(RepositorioMovimientos::close);
+        trabajadores.shutdown();
+    }
+}
@@ -0,0 +1,291 @@
+package model;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * La clase RepositorioMemoria guarda los movimientos únicamente en memoria. Es útil para
+ * pruebas y mediciones, ya que no depende de ningún archivo ni driver, y es la base de
+ * {@link RepositorioRegistro}.
+ *
+ * Los movimientos vivos se mantienen ordenados por fecha e ID descendentes, de forma que
+ * las páginas se leen sin ordenar, y los totales diarios se actualizan en cada cambio,
+ * igual que las tablas de resumen de SQLite.
+ *
+ * Todos los métodos están sincronizados, por lo que puede leerse desde el hilo de la
+ * interfaz mientras otro hilo escribe.
+ *
+ * @author DAM2
+ */
+public class RepositorioMemoria implements RepositorioMovimientos {
+
+    // Orden de la lista de movimientos: fecha descendente y, dentro del día, ID descendente
+    private static final Comparator<Movimiento> ORDEN
+            = Comparator.comparing(Movimiento::getFecha).thenComparingLong(Movimiento::getId).reversed();
+
+    private final Map<Long, Movimiento> movimientos = new HashMap<>();
+    private final Map<Long, Long> borrados = new LinkedHashMap<>();
+    private final NavigableSet<Movimiento> vivos = new TreeSet<>(ORDEN);
+    private final NavigableMap<LocalDate, long[]> diario = new TreeMap<>();
+    private final Deque<Long> deshacer = new ArrayDeque<>();
+    private long siguienteId = 1;
+
+    @Override
+    public synchronized Movimiento[] leerPagina(LocalDate desde, Movimiento ultimo, int tamanio) {
+        List<Movimiento> pagina = new ArrayList<>();
+        Iterator<Movimiento> it = (ultimo == null ? vivos : vivos.tailSet(ultimo, false)).iterator();
+        while (it.hasNext() && pagina.size() < tamanio) {
+            Movimiento movimiento = it.next();
+            if (desde != null && movimiento.getFecha().isBefore(desde)) {
+                break;
+            }
+            pagina.add(movimiento);
+        }
+        return pagina.toArray(new Movimiento[0]);
+    }
+
+    @Override
+    public synchronized Stream<Movimiento> streamMovimientos() {
+        return new ArrayList<>(vivos).stream();
+    }
+
+    @Override
+    public synchronized Movimiento obtenerMovimientoPorId(long id) {
+        return borrados.containsKey(id) ? null : movimientos.get(id);
+    }
+
+    @Override
+    public synchronized long[] escribirMovimientos(Collection<Movimiento> nuevos) {
+        return aplicarAltas(nuevos, reservarIds(nuevos.size()));
+    }
+
+    @Override
+    public synchronized boolean borrarMovimientos(Collection<Long> ids) {
+        long instante = System.currentTimeMillis();
+        for (long id : ids) {
+            borrar(id, instante);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Movimiento deshacerBorrado() {
+        Movimiento restaurado = null;
+        while (restaurado == null && !deshacer.isEmpty()) {
+            restaurado = restaurar(deshacer.pop());
+        }
+        return restaurado;
+    }
+
+    @Override
+    public synchronized int purgarBorrados(long antesDe, int lote) {
+        int purgados = 0;
+        Iterator<Map.Entry<Long, Long>> it = borrados.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Long> borrado = it.next();
+            if (borrado.getValue() < antesDe && !deshacer.contains(borrado.getKey())) {
+                movimientos.remove(borrado.getKey());
+                it.remove();
+                purgados++;
+            }
+        }
+        return purgados;
+    }
+
+    @Override
+    public synchronized Resumen obtenerResumen(LocalDate desde) {
+        NavigableMap<LocalDate, long[]> dias = desde == null ? diario : diario.tailMap(desde, true);
+        long numero = 0;
+        long total = 0;
+        for (long[] dia : dias.values()) {
+            total += dia[0];
+            numero += dia[1];
+        }
+        return dias.isEmpty()
+                ? new Resumen(0, 0, null, null)
+                : new Resumen(numero, total, dias.firstKey(), dias.lastKey());
+    }
+
+    @Override
+    public synchronized Map<LocalDate, Long> leerResumenDiario(LocalDate desde) {
+        Map<LocalDate, Long> totales = new LinkedHashMap<>();
+        for (Map.Entry<LocalDate, long[]> dia : (desde == null ? diario : diario.tailMap(desde, true)).entrySet()) {
+            totales.put(dia.getKey(), dia.getValue()[0]);
+        }
+        return totales;
+    }
+
+    @Override
+    public synchronized Movimiento[] buscarMovimientos(String texto, int limite) {
+        List<String> buscadas = new ArrayList<>();
+        for (String palabra : normalizar(texto).split("[^\\p{L}\\p{N}]+")) {
+            if (!palabra.isEmpty()) {
+                buscadas.add(palabra);
+            }
+        }
+        List<Movimiento> encontrados = new ArrayList<>();
+        if (buscadas.isEmpty()) {
+            return new Movimiento[0];
+        }
+        for (Movimiento movimiento : vivos) {
+            if (encontrados.size() >= limite) {
+                break;
+            }
+            String[] palabras = normalizar(movimiento.getConcepto()).split("[^\\p{L}\\p{N}]+");
+            if (buscadas.stream().allMatch(b -> Stream.of(palabras).anyMatch(p -> p.startsWith(b)))) {
+                encontrados.add(movimiento);
+            }
+        }
+        return encontrados.toArray(new Movimiento[0]);
+    }
+
+    /**
+     * No hay nada que liberar: los movimientos se pierden al cerrar.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Reserva IDs consecutivos para movimientos nuevos.
+     *
+     * @param cantidad el número de IDs a reservar.
+     * @return el primero de los IDs reservados.
+     */
+    protected synchronized long reservarIds(int cantidad) {
+        long primero = siguienteId;
+        siguienteId += cantidad;
+        return primero;
+    }
+
+    /**
+     * Añade movimientos nuevos con IDs consecutivos ya reservados, asignando a cada
+     * movimiento su ID. Se guarda una copia de cada uno, de forma que los cambios que se
+     * hagan sobre el original no alteren el orden de los movimientos guardados.
+     *
+     * @param nuevos los movimientos a añadir.
+     * @param primero el primero de los IDs reservados con {@link #reservarIds(int)}.
+     * @return los IDs asignados, en el mismo orden.
+     */
+    protected synchronized long[] aplicarAltas(Collection<Movimiento> nuevos, long primero) {
+        long[] ids = new long[nuevos.size()];
+        int i = 0;
+        for (Movimiento movimiento : nuevos) {
+            movimiento.setId(primero + i);
+            alta(new Movimiento(movimiento.getId(), movimiento.getConcepto(), movimiento.getCantidad(), movimiento.getFecha()));
+            ids[i++] = movimiento.getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Añade un movimiento vivo, ya con su ID, actualizando los totales diarios. Las
+     * subclases lo usan para cargar movimientos existentes.
+     *
+     * @param movimiento el movimiento a añadir.
+     */
+    protected synchronized void alta(Movimiento movimiento) {
+        movimientos.put(movimiento.getId(), movimiento);
+        vivos.add(movimiento);
+        sumarDia(movimiento, 1);
+        siguienteId = Math.max(siguienteId, movimiento.getId() + 1);
+    }
+
+    /**
+     * Marca un movimiento como borrado y lo apunta para poder deshacerlo.
+     *
+     * @param id el ID del movimiento.
+     * @param instante el instante del borrado, en milisegundos.
+     * @return true si el movimiento estaba vivo, false si no existía o ya estaba borrado.
+     */
+    protected synchronized boolean borrar(long id, long instante) {
+        Movimiento movimiento = movimientos.get(id);
+        if (movimiento == null || borrados.containsKey(id)) {
+            return false;
+        }
+        vivos.remove(movimiento);
+        sumarDia(movimiento, -1);
+        borrados.put(id, instante);
+        deshacer.push(id);
+        while (deshacer.size() > TAMANIO_DESHACER) {
+            deshacer.removeLast();
+        }
+        return true;
+    }
+
+    /**
+     * Vuelve a marcar como vivo un movimiento borrado.
+     *
+     * @param id el ID del movimiento.
+     * @return el movimiento restaurado, o null si no estaba borrado.
+     */
+    protected synchronized Movimiento restaurar(long id) {
+        Movimiento movimiento = movimientos.get(id);
+        if (movimiento == null || borrados.remove(id) == null) {
+            return null;
+        }
+        deshacer.remove(id);
+        vivos.add(movimiento);
+        sumarDia(movimiento, 1);
+        return movimiento;
+    }
+
+    /**
+     * Obtiene los IDs de los borrados que se pueden deshacer, del más antiguo al más
+     * reciente.
+     *
+     * @return los IDs pendientes de deshacer.
+     */
+    protected synchronized List<Long> pendientesDeDeshacer() {
+        List<Long> ids = new ArrayList<>(deshacer);
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    /**
+     * Obtiene todos los movimientos guardados, incluidos los borrados, junto con el
+     * instante de borrado de cada uno (null si está vivo).
+     *
+     * @return un mapa ordenado por ID con el instante de borrado de cada movimiento.
+     */
+    protected synchronized Map<Movimiento, Long> todos() {
+        Map<Movimiento, Long> todos = new LinkedHashMap<>();
+        for (Movimiento movimiento : new TreeMap<>(movimientos).values()) {
+            todos.put(movimiento, borrados.get(movimiento.getId()));
+        }
+        return todos;
+    }
+
+    private void sumarDia(Movimiento movimiento, int signo) {
+        long[] dia = diario.computeIfAbsent(movimiento.getFecha(), f -> new long[2]);
+        dia[0] += signo * movimiento.getCantidad();
+        dia[1] += signo;
+        if (dia[1] == 0) {
+            diario.remove(movimiento.getFecha());
+        }
+    }
+
+    /**
+     * Pasa un texto a minúsculas y sin tildes, para comparar palabras.
+     */
+    private static String normalizar(String texto) {
+        return Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+}
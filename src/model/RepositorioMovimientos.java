@@ -0,0 +1,233 @@
+package model;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * La interfaz RepositorioMovimientos define las operaciones de lectura, escritura,
+ * borrado y agregación de movimientos que necesitan el controlador y los informes,
+ * independientemente de dónde se guarden los movimientos.
+ *
+ * Cada instancia trabaja sobre su propio almacén (un archivo .db, un archivo de registro
+ * o solo la memoria), por lo que pueden abrirse varios a la vez. Las implementaciones
+ * deben admitir lecturas desde el hilo de la interfaz mientras otro hilo escribe.
+ *
+ * @author DAM2
+ * @see TipoRepositorio
+ */
+public interface RepositorioMovimientos extends AutoCloseable {
+
+    /** Número máximo de borrados que se pueden deshacer. */
+    int TAMANIO_DESHACER = 100;
+
+    /**
+     * Lee una página de movimientos a partir de una fecha, ordenados del más reciente al
+     * más antiguo (y, dentro de un mismo día, por ID descendente).
+     *
+     * @param desde la fecha a partir de la cual (inclusive) se leen los movimientos, o null para leerlos todos.
+     * @param ultimo el último movimiento de la página anterior, o null para leer la primera página.
+     * @param tamanio el número máximo de movimientos de la página.
+     * @return un arreglo con los movimientos de la página, que tendrá menos de {@code tamanio}
+     *         elementos si es la última.
+     */
+    Movimiento[] leerPagina(LocalDate desde, Movimiento ultimo, int tamanio);
+
+    /**
+     * Lee una página de los movimientos que cumplen una consulta, en el mismo orden que
+     * {@link #leerPagina(LocalDate, Movimiento, int)}.
+     *
+     * Por defecto se leen páginas por fecha (empezando tras la última fecha de la
+     * consulta) y se descartan los movimientos que no la cumplen. Los repositorios que
+     * pueden filtrar al leer, como el de SQLite, la redefinen.
+     *
+     * @param consulta la consulta que deben cumplir los movimientos.
+     * @param ultimo el último movimiento de la página anterior, o null para leer la primera página.
+     * @param tamanio el número máximo de movimientos de la página.
+     * @return un arreglo con los movimientos de la página, que tendrá menos de {@code tamanio}
+     *         elementos si es la última.
+     */
+    default Movimiento[] leerPagina(Consulta consulta, Movimiento ultimo, int tamanio) {
+        if (consulta.isVacia()) {
+            return new Movimiento[0];
+        }
+        Movimiento cursor = ultimo;
+        if (consulta.getHasta() != null && (cursor == null || cursor.getFecha().isAfter(consulta.getHasta()))) {
+            // Ningún movimiento tiene ID 0, así que se empieza justo después del día siguiente
+            cursor = new Movimiento(0, null, 0, consulta.getHasta().plusDays(1));
+        }
+        List<Movimiento> pagina = new ArrayList<>(tamanio);
+        while (pagina.size() < tamanio) {
+            Movimiento[] leidos = leerPagina(consulta.getDesde(), cursor, tamanio);
+            for (int i = 0; i < leidos.length && pagina.size() < tamanio; i++) {
+                if (consulta.cumple(leidos[i])) {
+                    pagina.add(leidos[i]);
+                }
+            }
+            if (leidos.length < tamanio) {
+                break;
+            }
+            cursor = leidos[leidos.length - 1];
+        }
+        return pagina.toArray(new Movimiento[0]);
+    }
+
+    /**
+     * Recorre todos los movimientos que no están borrados, sin un orden determinado.
+     * El Stream debe cerrarse, preferiblemente con un try-with-resources.
+     *
+     * @return un Stream con los movimientos.
+     * @throws IllegalStateException (al recorrer el Stream) si ocurre un error leyendo un movimiento.
+     */
+    Stream<Movimiento> streamMovimientos();
+
+    /**
+     * Obtiene un movimiento que no esté borrado a partir de su ID.
+     *
+     * @param id el ID del movimiento.
+     * @return el movimiento, o null si no existe o está borrado.
+     */
+    Movimiento obtenerMovimientoPorId(long id);
+
+    /**
+     * Escribe varios movimientos, asignando a cada uno su nuevo ID.
+     *
+     * @param movimientos los movimientos a escribir.
+     * @return los IDs asignados, en el mismo orden, o null si ocurrió un error (en cuyo
+     *         caso no se escribe ninguno).
+     */
+    long[] escribirMovimientos(Collection<Movimiento> movimientos);
+
+    /**
+     * Borra varios movimientos. El borrado es lógico y se apunta para poder deshacerlo
+     * con {@link #deshacerBorrado()}.
+     *
+     * @param ids los IDs de los movimientos a borrar.
+     * @return true si se borraron correctamente, false si ocurrió un error (en cuyo caso
+     *         no se borra ninguno).
+     */
+    boolean borrarMovimientos(Collection<Long> ids);
+
+    /**
+     * Deshace el último borrado, restaurando el movimiento con su ID original.
+     *
+     * @return el movimiento restaurado, o null si no había nada que deshacer o si ocurrió un error.
+     */
+    Movimiento deshacerBorrado();
+
+    /**
+     * Elimina definitivamente los movimientos borrados antes de un instante que ya no se
+     * pueden deshacer.
+     *
+     * @param antesDe el instante (en milisegundos) antes del cual se purgan los borrados.
+     * @param lote el número máximo de movimientos que se eliminan de cada vez.
+     * @return el número de movimientos eliminados, o -1 si ocurrió un error.
+     */
+    int purgarBorrados(long antesDe, int lote);
+
+    /**
+     * Obtiene el número, la suma y las fechas extremas de los movimientos a partir de una fecha.
+     *
+     * @param desde la fecha a partir de la cual (inclusive) se agregan los movimientos, o null para todos.
+     * @return el resumen de los movimientos.
+     */
+    Resumen obtenerResumen(LocalDate desde);
+
+    /**
+     * Obtiene el total de cada día con movimientos a partir de una fecha, ordenados por día.
+     *
+     * @param desde la fecha a partir de la cual (inclusive) se leen los totales, o null para todos.
+     * @return un mapa ordenado con el total en céntimos de cada día.
+     */
+    Map<LocalDate, Long> leerResumenDiario(LocalDate desde);
+
+    /**
+     * Busca movimientos por su concepto. Cada palabra del texto se busca como prefijo de
+     * alguna palabra del concepto, sin distinguir mayúsculas ni tildes.
+     *
+     * @param texto las palabras a buscar.
+     * @param limite el número máximo de resultados.
+     * @return un arreglo con los movimientos encontrados, de más a menos relevante.
+     */
+    Movimiento[] buscarMovimientos(String texto, int limite);
+
+    /**
+     * Vuelve a calcular los datos agregados que el repositorio mantenga (por ejemplo,
+     * los resúmenes diarios). Los repositorios que los calculan al vuelo no tienen nada
+     * que reconstruir.
+     *
+     * @return true si se reconstruyeron correctamente, false si ocurrió un error.
+     */
+    default boolean reconstruirResumenes() {
+        return true;
+    }
+
+    /**
+     * Copia el contenido del repositorio en un archivo, sin bloquear las lecturas ni las
+     * escrituras. Los repositorios que no admiten copias devuelven false.
+     *
+     * @param destino el archivo de la copia, que no debe existir.
+     * @return true si la copia se hizo correctamente, false si ocurrió un error o el
+     *         repositorio no admite copias.
+     * @see CopiaSeguridad
+     */
+    default boolean copiarA(File destino) {
+        return false;
+    }
+
+    /**
+     * Obtiene un número que cambia cada vez que otro proceso modifica el repositorio,
+     * pero no con las escrituras propias. Permite comprobar barato si hay cambios
+     * externos antes de leerlos con {@link #leerCambios(long)}.
+     *
+     * @return el número de versión de los datos, o -1 si el repositorio no lo admite o
+     *         si ocurrió un error.
+     * @see VigilanteCambios
+     */
+    default long versionDatos() {
+        return -1;
+    }
+
+    /**
+     * Obtiene el número del último cambio del registro de cambios del repositorio.
+     *
+     * @return el número del último cambio, o -1 si el repositorio no tiene registro de
+     *         cambios o si ocurrió un error.
+     */
+    default long ultimoCambio() {
+        return -1;
+    }
+
+    /**
+     * Lee los movimientos que han cambiado después de un cambio del registro de cambios,
+     * hechos por este proceso o por otros.
+     *
+     * @param desde el número del último cambio ya conocido.
+     * @return los cambios posteriores, o null si el repositorio no tiene registro de
+     *         cambios o si ocurrió un error.
+     */
+    default Cambios leerCambios(long desde) {
+        return null;
+    }
+
+    /**
+     * Obtiene las estadísticas de las conexiones del repositorio, con los tiempos de
+     * espera y de uso.
+     *
+     * @return un texto con las estadísticas, o null si el repositorio no usa conexiones.
+     * @see GestorConexiones#estadisticas()
+     */
+    default String estadisticas() {
+        return null;
+    }
+
+    /**
+     * Cierra el repositorio, liberando los archivos y conexiones que tenga abiertos.
+     */
+    @Override
+    void close();
+}
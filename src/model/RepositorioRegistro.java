@@ -0,0 +1,328 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * La clase RepositorioRegistro guarda los movimientos en un archivo de registro de solo
+ * añadido: cada alta, borrado o restauración se escribe como una línea nueva al final
+ * del archivo, sin modificar nunca las anteriores. Al abrirlo, el registro se reproduce
+ * sobre un {@link RepositorioMemoria}, que es quien responde a las consultas.
+ *
+ * Cada cambio se escribe y se fuerza a disco antes de aplicarse en memoria. Si la
+ * escritura falla, o si la aplicación se interrumpe a mitad de una línea, el archivo
+ * se recorta hasta la última línea completa, de forma que un cambio fallido nunca llega
+ * a aplicarse. Al purgar los movimientos borrados, el archivo se compacta
+ * reescribiéndolo solo con lo que sigue siendo necesario.
+ *
+ * Formato de las líneas (campos separados por ';'):
+ * <ul>
+ * <li>{@code A;id;día;céntimos;concepto}: alta (el día en días desde el 1970-01-01).</li>
+ * <li>{@code B;id;instante}: borrado lógico (el instante en milisegundos).</li>
+ * <li>{@code R;id}: restauración de un borrado.</li>
+ * </ul>
+ *
+ * @author DAM2
+ */
+public class RepositorioRegistro extends RepositorioMemoria {
+
+    private final File archivo;
+    private FileOutputStream salida;
+    private Writer escritor;
+    // Bytes del archivo hasta la última línea completa y confirmada
+    private long longitud = 0;
+
+    /**
+     * Constructor que abre (o crea) el archivo de registro y reproduce su contenido.
+     *
+     * @param ruta la ruta del archivo de registro.
+     * @throws IOException si no se puede leer o abrir el archivo.
+     */
+    public RepositorioRegistro(String ruta) throws IOException {
+        this.archivo = new File(ruta);
+        File directorio = archivo.getAbsoluteFile().getParentFile();
+        if (directorio != null) {
+            directorio.mkdirs();
+        }
+        if (archivo.exists()) {
+            reproducir();
+        }
+        abrirEscritor();
+    }
+
+    /**
+     * Lee el registro línea a línea y aplica cada cambio en memoria. Una última línea
+     * sin salto de línea (por ejemplo, tras un corte de luz) está incompleta: no se
+     * aplica y se recorta al abrir el escritor.
+     *
+     * @throws IOException si no se puede leer el archivo.
+     */
+    private void reproducir() throws IOException {
+        int numeroLinea = 0;
+        long posicion = 0;
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(64);
+        byte[] bufer = new byte[64 * 1024];
+        try (InputStream entrada = new FileInputStream(archivo)) {
+            int leidos;
+            while ((leidos = entrada.read(bufer)) != -1) {
+                int inicio = 0;
+                for (int i = 0; i < leidos; i++) {
+                    if (bufer[i] != '\n') {
+                        continue;
+                    }
+                    linea.write(bufer, inicio, i - inicio);
+                    inicio = i + 1;
+                    numeroLinea++;
+                    try {
+                        aplicar(linea.toString(StandardCharsets.UTF_8));
+                    } catch (RuntimeException e) {
+                        System.out.println("RepositorioRegistro: Línea " + numeroLinea + " no válida en " + archivo + ", se ignora.");
+                    }
+                    linea.reset();
+                    longitud = posicion + inicio;
+                }
+                linea.write(bufer, inicio, leidos - inicio);
+                posicion += leidos;
+            }
+        }
+        if (linea.size() > 0) {
+            System.out.println("RepositorioRegistro: Última línea incompleta en " + archivo + ", se descarta.");
+        }
+    }
+
+    private void aplicar(String linea) {
+        String[] campos = linea.split(";", 5);
+        switch (campos[0]) {
+            case "A":
+                long id = Long.parseLong(campos[1]);
+                alta(new Movimiento(id, descodificar(campos[4]), Long.parseLong(campos[3]), LocalDate.ofEpochDay(Long.parseLong(campos[2]))));
+                break;
+            case "B":
+                borrar(Long.parseLong(campos[1]), Long.parseLong(campos[2]));
+                break;
+            case "R":
+                restaurar(Long.parseLong(campos[1]));
+                break;
+            default:
+                throw new IllegalArgumentException(campos[0]);
+        }
+    }
+
+    /**
+     * Abre el archivo para añadir, recortándolo antes hasta la última línea completa.
+     */
+    private void abrirEscritor() throws IOException {
+        salida = new FileOutputStream(archivo, true);
+        if (salida.getChannel().size() > longitud) {
+            salida.getChannel().truncate(longitud);
+        }
+        escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Vacía el búfer de escritura y fuerza los cambios a disco.
+     */
+    private void confirmar() throws IOException {
+        escritor.flush();
+        salida.getFD().sync();
+        longitud = salida.getChannel().size();
+    }
+
+    /**
+     * Tras un error de escritura, descarta las líneas que hayan quedado en el búfer y
+     * reabre el archivo recortado hasta el último cambio confirmado, para que las
+     * líneas fallidas no se escriban con el siguiente cambio.
+     */
+    private void descartarPendientes() {
+        try {
+            // Se cierra el archivo sin cerrar el escritor, que escribiría su búfer
+            salida.close();
+        } catch (IOException e) {
+            // El archivo se vuelve a abrir igualmente
+        }
+        try {
+            abrirEscritor();
+        } catch (IOException e) {
+            System.out.println("RepositorioRegistro: No se pudo reabrir " + archivo + ".");
+        }
+    }
+
+    private static String lineaAlta(Movimiento movimiento, long id) {
+        return "A;" + id + ";" + movimiento.getFecha().toEpochDay() + ";" + movimiento.getCantidad() + ";" + codificar(movimiento.getConcepto()) + "\n";
+    }
+
+    private static String lineaBorrado(long id, long instante) {
+        return "B;" + id + ";" + instante + "\n";
+    }
+
+    @Override
+    public synchronized long[] escribirMovimientos(Collection<Movimiento> nuevos) {
+        long primero = reservarIds(nuevos.size());
+        try {
+            long id = primero;
+            for (Movimiento movimiento : nuevos) {
+                escritor.write(lineaAlta(movimiento, id++));
+            }
+            confirmar();
+        } catch (IOException e) {
+            System.out.println("RepositorioRegistro: Error al escribir movimientos.");
+            descartarPendientes();
+            return null;
+        }
+        return aplicarAltas(nuevos, primero);
+    }
+
+    @Override
+    public synchronized boolean borrarMovimientos(Collection<Long> ids) {
+        long instante = System.currentTimeMillis();
+        List<Long> vivos = new ArrayList<>();
+        try {
+            for (long id : ids) {
+                if (obtenerMovimientoPorId(id) != null) {
+                    escritor.write(lineaBorrado(id, instante));
+                    vivos.add(id);
+                }
+            }
+            confirmar();
+        } catch (IOException e) {
+            System.out.println("RepositorioRegistro: Error al borrar movimientos.");
+            descartarPendientes();
+            return false;
+        }
+        for (long id : vivos) {
+            borrar(id, instante);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Movimiento deshacerBorrado() {
+        Movimiento restaurado = super.deshacerBorrado();
+        if (restaurado != null) {
+            try {
+                escritor.write("R;" + restaurado.getId() + "\n");
+                confirmar();
+            } catch (IOException e) {
+                System.out.println("RepositorioRegistro: Error al deshacer el borrado.");
+                descartarPendientes();
+                borrar(restaurado.getId(), System.currentTimeMillis());
+                restaurado = null;
+            }
+        }
+        return restaurado;
+    }
+
+    /**
+     * Purga los borrados antiguos y, si se ha eliminado alguno, compacta el archivo.
+     */
+    @Override
+    public synchronized int purgarBorrados(long antesDe, int lote) {
+        int purgados = super.purgarBorrados(antesDe, lote);
+        if (purgados > 0) {
+            try {
+                compactar();
+            } catch (IOException e) {
+                // El registro anterior sigue siendo válido: los purgados se volverán a purgar
+                System.out.println("RepositorioRegistro: Error al compactar " + archivo + ".");
+            }
+        }
+        return purgados;
+    }
+
+    /**
+     * Reescribe el registro con solo las líneas necesarias para reconstruir el estado
+     * actual: un alta por movimiento guardado y un borrado por cada movimiento borrado,
+     * dejando al final los que se pueden deshacer y en el mismo orden. El archivo nuevo
+     * se escribe aparte y sustituye al anterior de una vez.
+     *
+     * @throws IOException si no se puede escribir o sustituir el archivo.
+     */
+    public synchronized void compactar() throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        Map<Movimiento, Long> todos = todos();
+        List<Long> deshacer = pendientesDeDeshacer();
+        try (FileOutputStream salidaTemporal = new FileOutputStream(temporal);
+                Writer escritorTemporal = new BufferedWriter(new OutputStreamWriter(salidaTemporal, StandardCharsets.UTF_8))) {
+            for (Movimiento movimiento : todos.keySet()) {
+                escritorTemporal.write(lineaAlta(movimiento, movimiento.getId()));
+            }
+            Map<Long, Long> instantes = new HashMap<>();
+            for (Map.Entry<Movimiento, Long> entrada : todos.entrySet()) {
+                if (entrada.getValue() != null) {
+                    instantes.put(entrada.getKey().getId(), entrada.getValue());
+                    if (!deshacer.contains(entrada.getKey().getId())) {
+                        escritorTemporal.write(lineaBorrado(entrada.getKey().getId(), entrada.getValue()));
+                    }
+                }
+            }
+            for (long id : deshacer) {
+                escritorTemporal.write(lineaBorrado(id, instantes.get(id)));
+            }
+            escritorTemporal.flush();
+            salidaTemporal.getFD().sync();
+        }
+        escritor.close();
+        Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        longitud = archivo.length();
+        abrirEscritor();
+    }
+
+    /**
+     * Copia el archivo de registro. Como cada cambio se escribe completo y se fuerza a
+     * disco antes de terminar, basta con que no se escriba durante la copia.
+     */
+    @Override
+    public synchronized boolean copiarA(File destino) {
+        try {
+            Files.copy(archivo.toPath(), destino.toPath());
+            return true;
+        } catch (IOException e) {
+            System.out.println("RepositorioRegistro: Error al copiar " + archivo + " en " + destino + ".");
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            escritor.close();
+        } catch (IOException e) {
+            System.out.println("RepositorioRegistro: Error al cerrar " + archivo + ".");
+        }
+    }
+
+    /**
+     * Escapa los saltos de línea del concepto para que cada cambio ocupe una sola línea.
+     */
+    private static String codificar(String concepto) {
+        return concepto.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String descodificar(String concepto) {
+        StringBuilder texto = new StringBuilder(concepto.length());
+        for (int i = 0; i < concepto.length(); i++) {
+            char c = concepto.charAt(i);
+            if (c == '\\' && i + 1 < concepto.length()) {
+                c = concepto.charAt(++i) == 'n' ? '\n' : concepto.charAt(i);
+            }
+            texto.append(c);
+        }
+        return texto.toString();
+    }
+}
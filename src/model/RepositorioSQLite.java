@@ -0,0 +1,136 @@
+package model;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * La clase RepositorioSQLite guarda los movimientos en un archivo de base de datos
+ * SQLite. Las operaciones son las de {@link MovimientoDAO}, sobre un
+ * {@link GestorConexiones} propio, de forma que pueden abrirse varios archivos a la vez.
+ *
+ * @author DAM2
+ */
+public class RepositorioSQLite implements RepositorioMovimientos {
+
+    private final GestorConexiones gestor;
+    private final MovimientoDAO.OrigenConexiones origen;
+
+    /**
+     * Constructor que abre (o crea) la base de datos y aplica las migraciones de esquema
+     * pendientes.
+     *
+     * @param ruta la ruta del archivo de base de datos.
+     * @throws SQLException si no se puede abrir la base de datos o actualizar su esquema.
+     */
+    public RepositorioSQLite(String ruta) throws SQLException {
+        File directorio = new File(ruta).getAbsoluteFile().getParentFile();
+        if (directorio != null) {
+            directorio.mkdirs();
+        }
+        this.gestor = new GestorConexiones(ruta);
+        this.origen = () -> gestor;
+        if (!MovimientoDAO.actualizarEsquema(origen)) {
+            gestor.cerrar();
+            throw new SQLException("RepositorioSQLite: No se pudo actualizar el esquema de " + ruta);
+        }
+    }
+
+    @Override
+    public Movimiento[] leerPagina(LocalDate desde, Movimiento ultimo, int tamanio) {
+        return MovimientoDAO.leerPagina(origen, desde, ultimo, tamanio);
+    }
+
+    @Override
+    public Movimiento[] leerPagina(Consulta consulta, Movimiento ultimo, int tamanio) {
+        return MovimientoDAO.leerPagina(origen, consulta, ultimo, tamanio);
+    }
+
+    @Override
+    public Stream<Movimiento> streamMovimientos() {
+        return MovimientoDAO.streamMovimientos(origen, MovimientoDAO.SELECT_VIVOS);
+    }
+
+    @Override
+    public Movimiento obtenerMovimientoPorId(long id) {
+        return MovimientoDAO.obtenerMovimientoPorId(origen, id);
+    }
+
+    @Override
+    public long[] escribirMovimientos(Collection<Movimiento> movimientos) {
+        return MovimientoDAO.escribirMovimientos(origen, movimientos);
+    }
+
+    @Override
+    public boolean borrarMovimientos(Collection<Long> ids) {
+        return MovimientoDAO.borrarMovimientos(origen, ids);
+    }
+
+    @Override
+    public Movimiento deshacerBorrado() {
+        return MovimientoDAO.deshacerBorrado(origen);
+    }
+
+    @Override
+    public int purgarBorrados(long antesDe, int lote) {
+        return MovimientoDAO.purgarBorrados(origen, antesDe, lote);
+    }
+
+    @Override
+    public Resumen obtenerResumen(LocalDate desde) {
+        return MovimientoDAO.obtenerResumen(origen, desde);
+    }
+
+    @Override
+    public Map<LocalDate, Long> leerResumenDiario(LocalDate desde) {
+        return MovimientoDAO.leerResumenDiario(origen, desde);
+    }
+
+    @Override
+    public Movimiento[] buscarMovimientos(String texto, int limite) {
+        return MovimientoDAO.buscarMovimientos(origen, texto, limite);
+    }
+
+    @Override
+    public boolean reconstruirResumenes() {
+        return MovimientoDAO.reconstruirResumenes(origen);
+    }
+
+    @Override
+    public boolean copiarA(File destino) {
+        return MovimientoDAO.copiarBaseDeDatos(origen, destino);
+    }
+
+    @Override
+    public long versionDatos() {
+        return MovimientoDAO.versionDatos(origen);
+    }
+
+    @Override
+    public long ultimoCambio() {
+        return MovimientoDAO.ultimoCambio(origen);
+    }
+
+    @Override
+    public Cambios leerCambios(long desde) {
+        return MovimientoDAO.leerCambios(origen, desde);
+    }
+
+    @Override
+    public String estadisticas() {
+        return gestor.estadisticas();
+    }
+
+    /**
+     * Cierra las conexiones con la base de datos.
+     */
+    @Override
+    public void close() {
+        if (!gestor.isCerrado()) {
+            gestor.cerrar();
+        }
+    }
+}
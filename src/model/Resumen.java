@@ -0,0 +1,70 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * La clase Resumen representa el resultado de agregar un conjunto de movimientos
+ * directamente en la base de datos: cuántos hay, cuánto suman y entre qué fechas
+ * se encuentran. Permite conocer el balance sin tener que leer cada movimiento.
+ *
+ * @author DAM2
+ */
+public class Resumen {
+
+    // Atributos:
+    private final long numero;
+    private final long total;
+    private final LocalDate fechaMinima;
+    private final LocalDate fechaMaxima;
+
+    /**
+     * Constructor para crear un resumen con sus valores agregados.
+     *
+     * @param numero el número de movimientos.
+     * @param total la suma de las cantidades de los movimientos, en céntimos.
+     * @param fechaMinima la fecha del movimiento más antiguo, o null si no hay movimientos.
+     * @param fechaMaxima la fecha del movimiento más reciente, o null si no hay movimientos.
+     */
+    public Resumen(long numero, long total, LocalDate fechaMinima, LocalDate fechaMaxima) {
+        this.numero = numero;
+        this.total = total;
+        this.fechaMinima = fechaMinima;
+        this.fechaMaxima = fechaMaxima;
+    }
+
+    /**
+     * Obtiene el número de movimientos agregados.
+     *
+     * @return el número de movimientos.
+     */
+    public long getNumero() {
+        return numero;
+    }
+
+    /**
+     * Obtiene la suma de las cantidades de los movimientos agregados.
+     *
+     * @return el total (balance) de los movimientos, en céntimos.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Obtiene la fecha del movimiento más antiguo.
+     *
+     * @return la fecha mínima, o null si no hay movimientos.
+     */
+    public LocalDate getFechaMinima() {
+        return fechaMinima;
+    }
+
+    /**
+     * Obtiene la fecha del movimiento más reciente.
+     *
+     * @return la fecha máxima, o null si no hay movimientos.
+     */
+    public LocalDate getFechaMaxima() {
+        return fechaMaxima;
+    }
+}
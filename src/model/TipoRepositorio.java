@@ -0,0 +1,92 @@
+package model;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * El enumerado TipoRepositorio enumera los almacenes de movimientos disponibles y sabe
+ * abrir cada uno sobre la ruta de una cartera.
+ *
+ * El tipo se elige al arrancar con la propiedad del sistema {@value #PROPIEDAD} (por
+ * ejemplo {@code -Ddamwallet.repositorio=memoria}); por defecto se usa SQLite.
+ *
+ * @author DAM2
+ * @see RepositorioMovimientos
+ */
+public enum TipoRepositorio {
+
+    /** Base de datos SQLite en el archivo .db de la cartera. */
+    SQLITE {
+        @Override
+        public RepositorioMovimientos abrir(String ruta) {
+            try {
+                return new RepositorioSQLite(ruta);
+            } catch (SQLException e) {
+                System.out.println("TipoRepositorio: Error al abrir la base de datos " + ruta + ": " + e.getMessage());
+                return null;
+            }
+        }
+    },
+
+    /** Solo en memoria: los movimientos se pierden al cerrar. */
+    MEMORIA {
+        @Override
+        public RepositorioMovimientos abrir(String ruta) {
+            return new RepositorioMemoria();
+        }
+    },
+
+    /** Registro de solo añadido junto al archivo .db de la cartera (con extensión .registro). */
+    REGISTRO {
+        @Override
+        public RepositorioMovimientos abrir(String ruta) {
+            String rutaRegistro = ruta.replaceFirst("\\.db$", "") + ".registro";
+            try {
+                return new RepositorioRegistro(rutaRegistro);
+            } catch (IOException e) {
+                System.out.println("TipoRepositorio: Error al abrir el registro " + rutaRegistro + ": " + e.getMessage());
+                return null;
+            }
+        }
+    },
+
+    /** Registro binario de ancho fijo junto al archivo .db de la cartera (con extensión .movimientos). */
+    BINARIO {
+        @Override
+        public RepositorioMovimientos abrir(String ruta) {
+            String base = ruta.replaceFirst("\\.db$", "");
+            try {
+                return new RepositorioBinario(base);
+            } catch (IOException e) {
+                System.out.println("TipoRepositorio: Error al abrir el registro binario " + base + ": " + e.getMessage());
+                return null;
+            }
+        }
+    };
+
+    /** Propiedad del sistema que indica el tipo de repositorio. */
+    public static final String PROPIEDAD = "damwallet.repositorio";
+
+    /**
+     * Abre el repositorio de este tipo para una cartera.
+     *
+     * @param ruta la ruta del archivo .db de la cartera.
+     * @return el repositorio abierto, o null si no se pudo abrir.
+     */
+    public abstract RepositorioMovimientos abrir(String ruta);
+
+    /**
+     * Obtiene el tipo de repositorio indicado en la propiedad {@value #PROPIEDAD}.
+     *
+     * @return el tipo indicado, o {@link #SQLITE} si no se indica ninguno o no es válido.
+     */
+    public static TipoRepositorio actual() {
+        String nombre = System.getProperty(PROPIEDAD, SQLITE.name());
+        try {
+            return valueOf(nombre.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("TipoRepositorio: Tipo de repositorio desconocido: " + nombre + ", se usa SQLite.");
+            return SQLITE;
+        }
+    }
+}
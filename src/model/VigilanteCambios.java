@@ -0,0 +1,170 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * La clase VigilanteCambios detecta en segundo plano los cambios que otro proceso (una
+ * herramienta de sincronización, otra instancia de la aplicación...) hace en el archivo
+ * de una cartera abierta, y entrega solo los movimientos que han cambiado.
+ *
+ * Un hilo vigila la carpeta del archivo con un {@link WatchService}. Cuando cambia el
+ * archivo (o su diario WAL), espera {@link #ESPERA_AGRUPAR} milisegundos para agrupar
+ * las escrituras seguidas y comprueba {@link RepositorioMovimientos#versionDatos()},
+ * que no cambia con las escrituras propias. Si ha cambiado, lee del registro de cambios
+ * los movimientos cambiados desde la última comprobación y se los entrega al
+ * consumidor, en el hilo del vigilante. Como algunos sistemas de archivos no avisan de
+ * los cambios, también se comprueba cada {@link #INTERVALO_COMPROBACION} segundos.
+ *
+ * @author DAM2
+ * @see Cambios
+ */
+public class VigilanteCambios {
+
+    /** Milisegundos que se esperan tras un aviso para agrupar las escrituras seguidas. */
+    public static final int ESPERA_AGRUPAR = 200;
+
+    /** Segundos entre comprobaciones aunque no llegue ningún aviso del sistema de archivos. */
+    public static final int INTERVALO_COMPROBACION = 5;
+
+    private final RepositorioMovimientos repositorio;
+    private final Path carpeta;
+    private final String nombre;
+    private final Consumer<Cambios> alCambiar;
+    private final WatchService servicio;
+    private final Thread vigilante;
+    private long ultimaVersion;
+    private long ultimoCambio;
+    private volatile boolean cerrado = false;
+
+    /**
+     * Empieza a vigilar el archivo de una cartera, si su repositorio tiene registro de
+     * cambios. Los cambios anteriores a esta llamada no se entregan.
+     *
+     * @param repositorio el repositorio abierto de la cartera.
+     * @param ruta la ruta del archivo de la cartera.
+     * @param alCambiar recibe los cambios externos, en el hilo del vigilante.
+     * @return el vigilante, o null si el repositorio no tiene registro de cambios o no
+     *         se puede vigilar el archivo.
+     */
+    public static VigilanteCambios vigilar(RepositorioMovimientos repositorio, String ruta, Consumer<Cambios> alCambiar) {
+        long version = repositorio.versionDatos();
+        long cambio = repositorio.ultimoCambio();
+        if (version < 0 || cambio < 0) {
+            return null;
+        }
+        try {
+            return new VigilanteCambios(repositorio, new File(ruta).getAbsoluteFile(), alCambiar, version, cambio);
+        } catch (IOException e) {
+            System.out.println("VigilanteCambios: No se puede vigilar " + ruta + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private VigilanteCambios(RepositorioMovimientos repositorio, File archivo, Consumer<Cambios> alCambiar,
+            long version, long cambio) throws IOException {
+        this.repositorio = repositorio;
+        this.carpeta = archivo.getParentFile().toPath();
+        this.nombre = archivo.getName();
+        this.alCambiar = alCambiar;
+        this.ultimaVersion = version;
+        this.ultimoCambio = cambio;
+        this.servicio = FileSystems.getDefault().newWatchService();
+        carpeta.register(servicio, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        vigilante = new Thread(this::vigilar, "VigilanteCambios");
+        vigilante.setDaemon(true);
+        vigilante.start();
+    }
+
+    /**
+     * Bucle del hilo vigilante.
+     */
+    private void vigilar() {
+        try {
+            while (!cerrado) {
+                WatchKey clave = servicio.poll(INTERVALO_COMPROBACION, TimeUnit.SECONDS);
+                if (clave != null && esDelArchivo(clave)) {
+                    // Se agrupan los avisos de una misma ráfaga de escrituras
+                    Thread.sleep(ESPERA_AGRUPAR);
+                    while ((clave = servicio.poll()) != null) {
+                        esDelArchivo(clave);
+                    }
+                }
+                if (!cerrado) {
+                    comprobar();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Se ha cerrado el vigilante
+        }
+    }
+
+    /**
+     * Comprueba si algún aviso es del archivo de la cartera o de sus archivos auxiliares
+     * (-wal, -shm, -journal), y prepara la clave para recibir más avisos.
+     */
+    private boolean esDelArchivo(WatchKey clave) {
+        boolean delArchivo = false;
+        for (WatchEvent<?> evento : clave.pollEvents()) {
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW
+                    || (evento.context() instanceof Path && evento.context().toString().startsWith(nombre))) {
+                delArchivo = true;
+            }
+        }
+        clave.reset();
+        return delArchivo;
+    }
+
+    /**
+     * Si otro proceso ha cambiado el archivo, lee los cambios y los entrega.
+     */
+    private void comprobar() {
+        long version = repositorio.versionDatos();
+        if (version < 0 || version == ultimaVersion) {
+            return;
+        }
+        ultimaVersion = version;
+        Cambios cambios;
+        do {
+            cambios = repositorio.leerCambios(ultimoCambio);
+            if (cambios == null) {
+                return;
+            }
+            if (cambios.isCompleto()) {
+                ultimoCambio = cambios.getUltimo();
+            } else {
+                // Se va a volver a leer todo, así que se salta hasta el final del registro
+                ultimoCambio = Math.max(ultimoCambio, repositorio.ultimoCambio());
+            }
+            if (!cambios.isVacio()) {
+                alCambiar.accept(cambios);
+            }
+        } while (cambios.isCompleto() && !cambios.isVacio() && !cerrado);
+    }
+
+    /**
+     * Deja de vigilar el archivo.
+     */
+    public void cerrar() {
+        cerrado = true;
+        try {
+            servicio.close();
+        } catch (IOException e) {
+            System.out.println("VigilanteCambios: Error al cerrar: " + e.getMessage());
+        }
+        try {
+            vigilante.join(TimeUnit.SECONDS.toMillis(INTERVALO_COMPROBACION));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -17,7 +17,8 @@ public class LastFileConfigurator implements Configurable {
     /**
      * Verifica si la configuración propuesta (en este caso, la ruta del archivo) es válida.
      * La configuración es válida si la ruta del archivo no es nula ni vacía y el archivo 
-     * especificado existe en el sistema.
+     * especificado existe en el sistema o se puede crear (su carpeta existe y se puede
+     * escribir en ella), ya que el repositorio crea la cartera al abrirla.
      * 
      * @param args los argumentos que contienen la ruta del archivo de configuración.
      * @return true si la ruta del archivo es válida, false si no lo es.
@@ -26,8 +27,13 @@ public class LastFileConfigurator implements Configurable {
     public boolean esValido(String... args) {
         boolean esValido;
         try {
-            File archivo = new File(args[0]);
-            esValido = args[0] != null && !args[0].isEmpty() && archivo.exists();
+            if (args[0] == null || args[0].isEmpty()) {
+                esValido = false;
+            } else {
+                File archivo = new File(args[0]).getAbsoluteFile();
+                File carpeta = archivo.getParentFile();
+                esValido = archivo.exists() || (carpeta != null && carpeta.isDirectory() && carpeta.canWrite());
+            }
         } catch (ArrayIndexOutOfBoundsException e) {
             System.out.println("La configuración propuesta para " + Config.LastFile.RUTA + " no es válida.");
             esValido = false;
@@ -0,0 +1,356 @@
+package model.esquema;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import model.MovimientoDAO;
+
+/**
+ * El enumerado Migracion define, en orden, cada uno de los cambios que ha sufrido el
+ * esquema de la base de datos. Cada valor tiene un número de versión, una descripción y
+ * las sentencias SQL que lo aplican sobre una base de datos de la versión anterior.
+ *
+ * Para cambiar el esquema nunca se modifica una migración existente: se añade una nueva
+ * al final con el siguiente número de versión. Así, los archivos .db de los usuarios se
+ * actualizan paso a paso sin perder datos.
+ *
+ * @author DAM2
+ * @see Migrador
+ */
+public enum Migracion {
+
+    /**
+     * Tabla inicial de movimientos. Usa CREATE TABLE IF NOT EXISTS para adoptar los
+     * archivos creados antes de existir el control de versiones.
+     */
+    V1_TABLA_MOVIMIENTO(1, "Tabla de movimientos",
+            MovimientoDAO.CREATETABLE),
+
+    /**
+     * Índice de cobertura por fecha y cantidad para los filtros "Mes" y "Año" y la
+     * ordenación por fecha, de forma que los balances por periodo se calculan leyendo
+     * solo el índice.
+     */
+    V2_INDICE_FECHA_CANTIDAD(2, "Índice de cobertura por fecha y cantidad",
+            "CREATE INDEX IF NOT EXISTS IDX_MOVIMIENTO_FECHA_CANTIDAD ON " + MovimientoDAO.NOMBRETABLA + "(FECHA, CANTIDAD)"),
+
+    /**
+     * Quita el índice solo por fecha que creaba antes la versión 2, sustituido por el de
+     * cobertura. En las bases de datos nuevas no hace nada; se conserva para no cambiar
+     * la numeración de las versiones.
+     */
+    V3_SIN_INDICE_FECHA(3, "Sin índice solo por fecha",
+            "CREATE INDEX IF NOT EXISTS IDX_MOVIMIENTO_FECHA_CANTIDAD ON " + MovimientoDAO.NOMBRETABLA + "(FECHA, CANTIDAD)",
+            "DROP INDEX IF EXISTS IDX_MOVIMIENTO_FECHA"),
+
+    /**
+     * Pasa la columna CANTIDAD de REAL a INTEGER en céntimos, de forma que las sumas
+     * son exactas y se almacenan como enteros compactos. SQLite no permite cambiar el
+     * tipo ni las restricciones de una columna, así que se reconstruye la tabla
+     * conservando los IDs.
+     */
+    V4_CANTIDAD_EN_CENTIMOS(4, "Cantidades en céntimos",
+            "CREATE TABLE " + MovimientoDAO.NOMBRETABLA + "_NUEVA("
+            + "ID INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "CONCEPTO TEXT CHECK(LENGTH(CONCEPTO) <= 25 AND LENGTH(CONCEPTO) > 0),"
+            + "CANTIDAD INTEGER CHECK(CANTIDAD > -1000000000 AND CANTIDAD < 1000000000 AND CANTIDAD <> 0),"
+            + "FECHA INTEGER CHECK(FECHA >= 0)"
+            + ")",
+            "INSERT INTO " + MovimientoDAO.NOMBRETABLA + "_NUEVA(ID, CONCEPTO, CANTIDAD, FECHA) "
+            + "SELECT ID, CONCEPTO, CAST(ROUND(CANTIDAD * 100) AS INTEGER), FECHA FROM " + MovimientoDAO.NOMBRETABLA,
+            "DROP TABLE " + MovimientoDAO.NOMBRETABLA,
+            "ALTER TABLE " + MovimientoDAO.NOMBRETABLA + "_NUEVA RENAME TO " + MovimientoDAO.NOMBRETABLA,
+            "CREATE INDEX IDX_MOVIMIENTO_FECHA_CANTIDAD ON " + MovimientoDAO.NOMBRETABLA + "(FECHA, CANTIDAD)"),
+
+    /**
+     * Pasa la columna FECHA de milisegundos (de la medianoche en hora local) a días
+     * desde el 1970-01-01, de forma que se decodifica directamente con
+     * LocalDate.ofEpochDay y los filtros por fecha comparan enteros pequeños.
+     */
+    V5_FECHA_EN_DIAS(5, "Fechas en días desde 1970-01-01",
+            "UPDATE " + MovimientoDAO.NOMBRETABLA
+            + " SET FECHA = CAST(julianday(date(FECHA / 1000, 'unixepoch', 'localtime')) - 2440587.5 AS INTEGER)"),
+
+    /**
+     * Tablas de resumen por día y por mes (suma y número de movimientos), mantenidas por
+     * triggers en cada inserción, borrado o modificación, y rellenadas con los movimientos
+     * existentes. Así los balances por periodo leen unos cientos de filas agregadas en
+     * lugar de toda la tabla de movimientos. El mes se guarda como AAAAMM.
+     */
+    V6_RESUMENES(6, "Resúmenes diarios y mensuales",
+            "CREATE TABLE RESUMEN_DIARIO(DIA INTEGER PRIMARY KEY, TOTAL INTEGER NOT NULL, NUMERO INTEGER NOT NULL)",
+            "CREATE TABLE RESUMEN_MENSUAL(MES INTEGER PRIMARY KEY, TOTAL INTEGER NOT NULL, NUMERO INTEGER NOT NULL)",
+            "INSERT INTO RESUMEN_DIARIO(DIA, TOTAL, NUMERO) "
+            + "SELECT FECHA, SUM(CANTIDAD), COUNT(*) FROM " + MovimientoDAO.NOMBRETABLA + " GROUP BY FECHA",
+            "INSERT INTO RESUMEN_MENSUAL(MES, TOTAL, NUMERO) "
+            + "SELECT CAST(strftime('%Y%m', DIA * 86400, 'unixepoch') AS INTEGER) AS M, SUM(TOTAL), SUM(NUMERO) FROM RESUMEN_DIARIO GROUP BY M",
+            "CREATE TRIGGER TRG_RESUMEN_INSERT AFTER INSERT ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + sumarResumen("NEW", "+")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_DELETE AFTER DELETE ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + sumarResumen("OLD", "-")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_UPDATE AFTER UPDATE OF FECHA, CANTIDAD ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + sumarResumen("OLD", "-")
+            + sumarResumen("NEW", "+")
+            + "END"),
+
+    /**
+     * Índice por fecha e ID para la paginación de la lista de movimientos: cada página
+     * continúa tras la fecha e ID del último movimiento de la anterior, recorriendo el
+     * índice en orden sin ordenar ni saltar filas.
+     */
+    V7_INDICE_PAGINACION(7, "Índice de paginación por fecha e ID",
+            "CREATE INDEX IF NOT EXISTS IDX_MOVIMIENTO_FECHA_ID ON " + MovimientoDAO.NOMBRETABLA + "(FECHA, ID)"),
+
+    /**
+     * Borrado lógico: los movimientos borrados se marcan en la columna BORRADO (instante
+     * del borrado en milisegundos, NULL si está vivo) en lugar de eliminarse, de forma que
+     * deshacer un borrado es un único UPDATE que conserva el ID original. La tabla DESHACER
+     * guarda el orden de los borrados para poder deshacerlos incluso tras reiniciar.
+     *
+     * El índice de paginación pasa a ser parcial (solo movimientos vivos) y se añade otro,
+     * también parcial, para que la purga encuentre los borrados antiguos sin recorrer la
+     * tabla. Los triggers de resumen se rehacen para ignorar los movimientos borrados.
+     */
+    V8_BORRADO_LOGICO(8, "Borrado lógico y diario de deshacer",
+            "ALTER TABLE " + MovimientoDAO.NOMBRETABLA + " ADD COLUMN BORRADO INTEGER",
+            "CREATE INDEX IDX_MOVIMIENTO_VIVOS ON " + MovimientoDAO.NOMBRETABLA + "(FECHA, ID) WHERE BORRADO IS NULL",
+            "DROP INDEX IF EXISTS IDX_MOVIMIENTO_FECHA_ID",
+            "CREATE INDEX IDX_MOVIMIENTO_BORRADOS ON " + MovimientoDAO.NOMBRETABLA + "(BORRADO) WHERE BORRADO IS NOT NULL",
+            "CREATE TABLE " + MovimientoDAO.DESHACER + "(ORDEN INTEGER PRIMARY KEY AUTOINCREMENT, ID_MOVIMIENTO INTEGER NOT NULL)",
+            "DROP TRIGGER TRG_RESUMEN_INSERT",
+            "DROP TRIGGER TRG_RESUMEN_DELETE",
+            "DROP TRIGGER TRG_RESUMEN_UPDATE",
+            "CREATE TRIGGER TRG_RESUMEN_INSERT AFTER INSERT ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN NEW.BORRADO IS NULL BEGIN "
+            + sumarResumen("NEW", "+")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_DELETE AFTER DELETE ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN OLD.BORRADO IS NULL BEGIN "
+            + sumarResumen("OLD", "-")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_UPDATE_ANTERIOR AFTER UPDATE OF FECHA, CANTIDAD, BORRADO ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN OLD.BORRADO IS NULL BEGIN "
+            + sumarResumen("OLD", "-")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_UPDATE_NUEVO AFTER UPDATE OF FECHA, CANTIDAD, BORRADO ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN NEW.BORRADO IS NULL BEGIN "
+            + sumarResumen("NEW", "+")
+            + "END"),
+
+    /**
+     * Índice de texto completo (FTS5) sobre el concepto, para buscar movimientos por
+     * palabras o prefijos sin recorrer la tabla con LIKE. Es una tabla de contenido
+     * externo: solo guarda el índice y lee el texto de MOVIMIENTO. Los triggers la
+     * mantienen sincronizada en cada inserción, borrado físico o cambio de concepto; los
+     * borrados lógicos se filtran al buscar.
+     */
+    V9_BUSQUEDA_CONCEPTO(9, "Búsqueda de texto completo por concepto",
+            "CREATE VIRTUAL TABLE " + MovimientoDAO.BUSQUEDA + " USING fts5(CONCEPTO, content='" + MovimientoDAO.NOMBRETABLA
+            + "', content_rowid='ID', tokenize='unicode61 remove_diacritics 2')",
+            "INSERT INTO " + MovimientoDAO.BUSQUEDA + "(" + MovimientoDAO.BUSQUEDA + ") VALUES('rebuild')",
+            "CREATE TRIGGER TRG_BUSQUEDA_INSERT AFTER INSERT ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + indexarConcepto("NEW", "NEW.CONCEPTO")
+            + "END",
+            "CREATE TRIGGER TRG_BUSQUEDA_DELETE AFTER DELETE ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + desindexarConcepto("OLD", "OLD.CONCEPTO")
+            + "END",
+            "CREATE TRIGGER TRG_BUSQUEDA_UPDATE AFTER UPDATE OF CONCEPTO ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + desindexarConcepto("OLD", "OLD.CONCEPTO")
+            + indexarConcepto("NEW", "NEW.CONCEPTO")
+            + "END"),
+
+    /**
+     * Diccionario de conceptos: cada concepto distinto se guarda una sola vez en la tabla
+     * CONCEPTO (los más frecuentes con los IDs más bajos) y la columna CONCEPTO de
+     * MOVIMIENTO se sustituye por ID_CONCEPTO. SQLite no permite quitar una columna usada
+     * por triggers e índices, así que se reconstruye la tabla conservando los IDs, igual
+     * que en la versión 4, y se rehacen sus índices y triggers.
+     *
+     * El índice de búsqueda pasa a leer el texto de la vista MOVIMIENTO_CONCEPTO, y sus
+     * triggers lo obtienen de la tabla de conceptos.
+     */
+    V10_DICCIONARIO_CONCEPTOS(10, "Diccionario de conceptos",
+            "CREATE TABLE " + MovimientoDAO.CONCEPTOS + "(ID INTEGER PRIMARY KEY, "
+            + "TEXTO TEXT NOT NULL UNIQUE CHECK(LENGTH(TEXTO) <= 25 AND LENGTH(TEXTO) > 0))",
+            "INSERT INTO " + MovimientoDAO.CONCEPTOS + "(TEXTO) SELECT CONCEPTO FROM " + MovimientoDAO.NOMBRETABLA
+            + " WHERE CONCEPTO IS NOT NULL GROUP BY CONCEPTO ORDER BY COUNT(*) DESC",
+            "DROP TABLE " + MovimientoDAO.BUSQUEDA,
+            "CREATE TABLE " + MovimientoDAO.NOMBRETABLA + "_NUEVA("
+            + "ID INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "ID_CONCEPTO INTEGER REFERENCES " + MovimientoDAO.CONCEPTOS + "(ID),"
+            + "CANTIDAD INTEGER CHECK(CANTIDAD > -1000000000 AND CANTIDAD < 1000000000 AND CANTIDAD <> 0),"
+            + "FECHA INTEGER CHECK(FECHA >= 0),"
+            + "BORRADO INTEGER"
+            + ")",
+            "INSERT INTO " + MovimientoDAO.NOMBRETABLA + "_NUEVA(ID, ID_CONCEPTO, CANTIDAD, FECHA, BORRADO) "
+            + "SELECT M.ID, C.ID, M.CANTIDAD, M.FECHA, M.BORRADO FROM " + MovimientoDAO.NOMBRETABLA + " M "
+            + "LEFT JOIN " + MovimientoDAO.CONCEPTOS + " C ON C.TEXTO = M.CONCEPTO",
+            "DROP TABLE " + MovimientoDAO.NOMBRETABLA,
+            "ALTER TABLE " + MovimientoDAO.NOMBRETABLA + "_NUEVA RENAME TO " + MovimientoDAO.NOMBRETABLA,
+            "CREATE INDEX IDX_MOVIMIENTO_FECHA_CANTIDAD ON " + MovimientoDAO.NOMBRETABLA + "(FECHA, CANTIDAD)",
+            "CREATE INDEX IDX_MOVIMIENTO_VIVOS ON " + MovimientoDAO.NOMBRETABLA + "(FECHA, ID) WHERE BORRADO IS NULL",
+            "CREATE INDEX IDX_MOVIMIENTO_BORRADOS ON " + MovimientoDAO.NOMBRETABLA + "(BORRADO) WHERE BORRADO IS NOT NULL",
+            "CREATE TRIGGER TRG_RESUMEN_INSERT AFTER INSERT ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN NEW.BORRADO IS NULL BEGIN "
+            + sumarResumen("NEW", "+")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_DELETE AFTER DELETE ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN OLD.BORRADO IS NULL BEGIN "
+            + sumarResumen("OLD", "-")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_UPDATE_ANTERIOR AFTER UPDATE OF FECHA, CANTIDAD, BORRADO ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN OLD.BORRADO IS NULL BEGIN "
+            + sumarResumen("OLD", "-")
+            + "END",
+            "CREATE TRIGGER TRG_RESUMEN_UPDATE_NUEVO AFTER UPDATE OF FECHA, CANTIDAD, BORRADO ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN NEW.BORRADO IS NULL BEGIN "
+            + sumarResumen("NEW", "+")
+            + "END",
+            "CREATE VIEW " + MovimientoDAO.CONCEPTOS_MOVIMIENTO + " AS SELECT M.ID AS ID, C.TEXTO AS CONCEPTO FROM "
+            + MovimientoDAO.NOMBRETABLA + " M LEFT JOIN " + MovimientoDAO.CONCEPTOS + " C ON C.ID = M.ID_CONCEPTO",
+            "CREATE VIRTUAL TABLE " + MovimientoDAO.BUSQUEDA + " USING fts5(CONCEPTO, content='" + MovimientoDAO.CONCEPTOS_MOVIMIENTO
+            + "', content_rowid='ID', tokenize='unicode61 remove_diacritics 2')",
+            "INSERT INTO " + MovimientoDAO.BUSQUEDA + "(" + MovimientoDAO.BUSQUEDA + ") VALUES('rebuild')",
+            "CREATE TRIGGER TRG_BUSQUEDA_INSERT AFTER INSERT ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + indexarConcepto("NEW", textoConcepto("NEW"))
+            + "END",
+            "CREATE TRIGGER TRG_BUSQUEDA_DELETE AFTER DELETE ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + desindexarConcepto("OLD", textoConcepto("OLD"))
+            + "END",
+            "CREATE TRIGGER TRG_BUSQUEDA_UPDATE AFTER UPDATE OF ID_CONCEPTO ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + desindexarConcepto("OLD", textoConcepto("OLD"))
+            + indexarConcepto("NEW", textoConcepto("NEW"))
+            + "END"),
+
+    /**
+     * Registro de cambios: cada inserción, modificación o borrado de un movimiento vivo
+     * apunta en CAMBIO el ID del movimiento y la fecha que tenía antes del cambio, con un
+     * número creciente. Así, quien tenga el archivo abierto puede leer solo los
+     * movimientos que ha cambiado otro proceso. Los borrados físicos de movimientos ya
+     * borrados (la purga) no se apuntan, porque no cambian nada visible.
+     */
+    V11_REGISTRO_CAMBIOS(11, "Registro de cambios",
+            "CREATE TABLE " + MovimientoDAO.CAMBIOS + "(ID INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "ID_MOVIMIENTO INTEGER NOT NULL, FECHA INTEGER NOT NULL)",
+            "CREATE TRIGGER TRG_CAMBIO_INSERT AFTER INSERT ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + apuntarCambio("NEW")
+            + "END",
+            "CREATE TRIGGER TRG_CAMBIO_UPDATE AFTER UPDATE OF ID_CONCEPTO, CANTIDAD, FECHA, BORRADO ON " + MovimientoDAO.NOMBRETABLA + " BEGIN "
+            + apuntarCambio("OLD")
+            + "END",
+            "CREATE TRIGGER TRG_CAMBIO_DELETE AFTER DELETE ON " + MovimientoDAO.NOMBRETABLA
+            + " WHEN OLD.BORRADO IS NULL BEGIN "
+            + apuntarCambio("OLD")
+            + "END"),
+
+    /**
+     * Índice de movimientos vivos por concepto, fecha e ID. Permite leer los movimientos
+     * de unos pocos conceptos sin recorrer todos por fecha, y contar cuántos hay para
+     * elegir el plan de una {@link model.Consulta} por concepto.
+     */
+    V12_INDICE_CONCEPTO(12, "Índice de movimientos por concepto",
+            "CREATE INDEX IDX_MOVIMIENTO_CONCEPTO ON " + MovimientoDAO.NOMBRETABLA + "(ID_CONCEPTO, FECHA, ID) WHERE BORRADO IS NULL");
+
+    // Atributos de la migración
+    public final int VERSION;
+    public final String DESCRIPCION;
+    private final String[] sentencias;
+
+    /**
+     * Constructor privado del enumerado Migracion.
+     *
+     * @param version el número de versión del esquema tras aplicar la migración.
+     * @param descripcion una descripción breve del cambio.
+     * @param sentencias las sentencias SQL que aplican el cambio, en orden.
+     */
+    private Migracion(int version, String descripcion, String... sentencias) {
+        this.VERSION = version;
+        this.DESCRIPCION = descripcion;
+        this.sentencias = sentencias;
+    }
+
+    /**
+     * Genera las sentencias de un trigger que suman (o restan) un movimiento en las
+     * tablas de resumen diario y mensual, eliminando las filas que se quedan sin
+     * movimientos.
+     *
+     * @param fila la fila del trigger ("NEW" u "OLD").
+     * @param signo "+" para sumar el movimiento, "-" para restarlo.
+     * @return las sentencias SQL, terminadas en ';'.
+     */
+    private static String sumarResumen(String fila, String signo) {
+        String mes = "CAST(strftime('%Y%m', " + fila + ".FECHA * 86400, 'unixepoch') AS INTEGER)";
+        String unidad = signo + "1";
+        return "INSERT INTO RESUMEN_DIARIO(DIA, TOTAL, NUMERO) VALUES(" + fila + ".FECHA, " + signo + fila + ".CANTIDAD, " + unidad + ") "
+                + "ON CONFLICT(DIA) DO UPDATE SET TOTAL = TOTAL + excluded.TOTAL, NUMERO = NUMERO + excluded.NUMERO; "
+                + "DELETE FROM RESUMEN_DIARIO WHERE DIA = " + fila + ".FECHA AND NUMERO = 0; "
+                + "INSERT INTO RESUMEN_MENSUAL(MES, TOTAL, NUMERO) VALUES(" + mes + ", " + signo + fila + ".CANTIDAD, " + unidad + ") "
+                + "ON CONFLICT(MES) DO UPDATE SET TOTAL = TOTAL + excluded.TOTAL, NUMERO = NUMERO + excluded.NUMERO; "
+                + "DELETE FROM RESUMEN_MENSUAL WHERE MES = " + mes + " AND NUMERO = 0; ";
+    }
+
+    /**
+     * Genera la sentencia de un trigger que añade el concepto de un movimiento al índice
+     * de búsqueda.
+     *
+     * @param fila la fila del trigger ("NEW" u "OLD").
+     * @param texto la expresión SQL con el texto del concepto de la fila.
+     * @return la sentencia SQL, terminada en ';'.
+     */
+    private static String indexarConcepto(String fila, String texto) {
+        return "INSERT INTO " + MovimientoDAO.BUSQUEDA + "(rowid, CONCEPTO) VALUES(" + fila + ".ID, " + texto + "); ";
+    }
+
+    /**
+     * Genera la sentencia de un trigger que quita el concepto de un movimiento del índice
+     * de búsqueda. Las tablas FTS5 de contenido externo necesitan el valor anterior.
+     *
+     * @param fila la fila del trigger ("NEW" u "OLD").
+     * @param texto la expresión SQL con el texto del concepto de la fila.
+     * @return la sentencia SQL, terminada en ';'.
+     */
+    private static String desindexarConcepto(String fila, String texto) {
+        return "INSERT INTO " + MovimientoDAO.BUSQUEDA + "(" + MovimientoDAO.BUSQUEDA + ", rowid, CONCEPTO) "
+                + "VALUES('delete', " + fila + ".ID, " + texto + "); ";
+    }
+
+    /**
+     * Genera la expresión SQL que obtiene de la tabla de conceptos el texto del concepto
+     * de una fila de MOVIMIENTO.
+     *
+     * @param fila la fila del trigger ("NEW" u "OLD").
+     * @return la subconsulta SQL.
+     */
+    private static String textoConcepto(String fila) {
+        return "(SELECT TEXTO FROM " + MovimientoDAO.CONCEPTOS + " WHERE ID = " + fila + ".ID_CONCEPTO)";
+    }
+
+    /**
+     * Genera la sentencia de un trigger que apunta el cambio de un movimiento en el
+     * registro de cambios.
+     *
+     * @param fila la fila del trigger cuyo ID y fecha se apuntan ("NEW" u "OLD").
+     * @return la sentencia SQL, terminada en ';'.
+     */
+    private static String apuntarCambio(String fila) {
+        return "INSERT INTO " + MovimientoDAO.CAMBIOS + "(ID_MOVIMIENTO, FECHA) VALUES(" + fila + ".ID, " + fila + ".FECHA); ";
+    }
+
+    /**
+     * Aplica la migración sobre la conexión indicada. Se ejecuta dentro de la transacción
+     * abierta por el {@link Migrador}, por lo que no debe confirmar ni deshacer cambios.
+     * Las migraciones que necesiten algo más que sentencias fijas pueden redefinir este método.
+     *
+     * @param conexion la conexión de escritura sobre la base de datos.
+     * @throws SQLException si alguna sentencia falla.
+     */
+    public void aplicar(Connection conexion) throws SQLException {
+        try (Statement sentencia = conexion.createStatement()) {
+            for (String sql : sentencias) {
+                sentencia.execute(sql);
+            }
+        }
+    }
+}
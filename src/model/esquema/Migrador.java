@@ -0,0 +1,110 @@
+package model.esquema;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * La clase Migrador lleva la base de datos desde la versión de esquema en la que se
+ * encuentre hasta la última definida en {@link Migracion}.
+ *
+ * La versión de cada archivo se guarda en la tabla VERSION_ESQUEMA, junto con la fecha
+ * en que se aplicó cada migración y el tiempo que tardó. Cada migración se aplica en su
+ * propia transacción: si falla, se deshace y no se aplican las siguientes.
+ *
+ * @author DAM2
+ */
+public abstract class Migrador {
+
+    public static final String NOMBRETABLA = "VERSION_ESQUEMA";
+
+    // Sentencia SQL para crear la tabla de versiones
+    public static final String CREATETABLE
+            = "CREATE TABLE IF NOT EXISTS " + NOMBRETABLA + "("
+            + "VERSION INTEGER PRIMARY KEY,"
+            + "DESCRIPCION TEXT NOT NULL,"
+            + "APLICADA INTEGER NOT NULL,"
+            + "DURACION_MS INTEGER NOT NULL"
+            + ")";
+
+    /**
+     * Aplica, en orden, todas las migraciones pendientes sobre la base de datos.
+     *
+     * @param conexion la conexión de escritura, en modo autocommit.
+     * @return true si el esquema quedó actualizado, false si alguna migración falló.
+     */
+    public static boolean migrar(Connection conexion) {
+        boolean migrado = true;
+        try {
+            try (Statement crearTabla = conexion.createStatement()) {
+                crearTabla.execute(CREATETABLE);
+            }
+            int actual = obtenerVersion(conexion);
+            boolean cambios = false;
+            for (Migracion migracion : Migracion.values()) {
+                if (migracion.VERSION > actual) {
+                    aplicar(conexion, migracion);
+                    cambios = true;
+                }
+            }
+            if (cambios) {
+                try (Statement optimizar = conexion.createStatement()) {
+                    optimizar.execute("PRAGMA optimize");
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.out.println("Migrador: Error al actualizar el esquema de la base de datos.");
+            migrado = false;
+        }
+        return migrado;
+    }
+
+    /**
+     * Obtiene la versión de esquema de la base de datos.
+     *
+     * @param conexion la conexión sobre la base de datos.
+     * @return la última versión aplicada, o 0 si no se ha aplicado ninguna.
+     * @throws SQLException si no se puede leer la tabla de versiones.
+     */
+    public static int obtenerVersion(Connection conexion) throws SQLException {
+        try (Statement consulta = conexion.createStatement();
+                ResultSet query = consulta.executeQuery("SELECT COALESCE(MAX(VERSION), 0) FROM " + NOMBRETABLA)) {
+            return query.next() ? query.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Aplica una migración en su propia transacción y la registra en la tabla de versiones.
+     *
+     * @param conexion la conexión de escritura.
+     * @param migracion la migración a aplicar.
+     * @throws SQLException si la migración falla; en ese caso se deshacen sus cambios.
+     */
+    private static void aplicar(Connection conexion, Migracion migracion) throws SQLException {
+        long inicio = System.nanoTime();
+        conexion.setAutoCommit(false);
+        try {
+            migracion.aplicar(conexion);
+            long duracion = (System.nanoTime() - inicio) / 1_000_000;
+            try (PreparedStatement registro = conexion.prepareStatement(
+                    "INSERT INTO " + NOMBRETABLA + "(VERSION, DESCRIPCION, APLICADA, DURACION_MS) VALUES(?, ?, ?, ?)")) {
+                registro.setInt(1, migracion.VERSION);
+                registro.setString(2, migracion.DESCRIPCION);
+                registro.setLong(3, System.currentTimeMillis());
+                registro.setLong(4, duracion);
+                registro.executeUpdate();
+            }
+            conexion.commit();
+            System.out.println("Migrador: Versión " + migracion.VERSION + " (" + migracion.DESCRIPCION + ") aplicada en " + duracion + " ms.");
+        } catch (SQLException e) {
+            conexion.rollback();
+            System.out.println("Migrador: Error al aplicar la versión " + migracion.VERSION + " (" + migracion.DESCRIPCION + ").");
+            throw e;
+        } finally {
+            conexion.setAutoCommit(true);
+        }
+    }
+}
@@ -2,11 +2,15 @@ package model.informe;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import model.Movimiento;
 
 /**
@@ -17,11 +21,18 @@ import model.Movimiento;
  * Esta clase permite guardar los datos de los movimientos financieros de los últimos 
  * meses o años en un archivo CSV, lo que facilita la exportación y el análisis posterior de los datos.
  * 
+ * Los movimientos se recorren fila a fila desde su origen, de forma que la memoria 
+ * necesaria no depende del número de movimientos exportados.
+ * 
+ * El archivo se escribe siempre en UTF-8, con punto decimal, y los conceptos con comas o 
+ * comillas van entre comillas dobles, de forma que {@link ImportacionCSV} lo lee igual 
+ * en cualquier sistema.
+ * 
  * @author DAM2
  */
 public class CSV {
 
-    private List<Movimiento> movimientos;
+    private Supplier<Stream<Movimiento>> movimientos;
 
     /**
      * Constructor que inicializa la lista de movimientos que se utilizará para generar 
@@ -30,6 +41,17 @@ public class CSV {
      * @param movimientos la lista de movimientos financieros a exportar.
      */
     public CSV(List<Movimiento> movimientos) {
+        this(movimientos::stream);
+    }
+
+    /**
+     * Constructor que recibe el origen de los movimientos como un proveedor de Streams, 
+     * por ejemplo una consulta a la base de datos. Cada exportación abre un Stream nuevo 
+     * y lo cierra al terminar.
+     * 
+     * @param movimientos el proveedor del Stream de movimientos financieros a exportar.
+     */
+    public CSV(Supplier<Stream<Movimiento>> movimientos) {
         this.movimientos = movimientos;
     }
 
@@ -65,7 +87,7 @@ public class CSV {
      * @throws IOException si ocurre un error al escribir el archivo.
      */
     public void guardarArchivo(File file, LocalDate limite, String titulo) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8); Stream<Movimiento> filas = movimientos.get()) {
             // Escribir encabezado con formato adecuado
             writer.write("Fecha,Concepto,Cantidad\n");
 
@@ -73,12 +95,33 @@ public class CSV {
             DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
             // Iterar sobre los movimientos y escribir solo los que son posteriores al límite
-            for (Movimiento movimiento : movimientos) {
+            Iterator<Movimiento> iterador = filas.iterator();
+            while (iterador.hasNext()) {
+                Movimiento movimiento = iterador.next();
                 if (movimiento.getFecha().isAfter(limite)) {
                     String formattedDate = movimiento.getFecha().format(dateFormatter);
-                    writer.write(String.format("%s,%s,%.2f\n", formattedDate, movimiento.getConcepto(), movimiento.getCantidad()));
+                    writer.write(formattedDate + "," + campo(movimiento.getConcepto()) + "," + movimiento.getCantidadEnEuros().toPlainString() + "\n");
                 }
             }
+        } catch (IllegalStateException e) {
+            throw new IOException("Error al leer los movimientos", e);
+        }
+    }
+
+    /**
+     * Escribe un campo de texto entre comillas dobles si tiene comas, comillas o saltos 
+     * de línea, repitiendo las comillas que contenga.
+     * 
+     * @param texto el texto del campo.
+     * @return el campo listo para escribirlo en el CSV.
+     */
+    private static String campo(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            return texto;
         }
+        return '"' + texto.replace("\"", "\"\"") + '"';
     }
 }
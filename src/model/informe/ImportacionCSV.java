@@ -0,0 +1,396 @@
+package model.informe;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import model.Movimiento;
+import model.RepositorioMovimientos;
+
+/**
+ * La clase ImportacionCSV importa movimientos desde un archivo CSV con las columnas de
+ * fecha, concepto y cantidad, el mismo formato que genera {@link CSV}, por ejemplo un
+ * extracto bancario de cientos de miles de líneas. El archivo debe estar en UTF-8 (con o
+ * sin marca de orden de bytes) y las cantidades deben usar punto decimal.
+ *
+ * El archivo se lee línea a línea en bloques de {@link #TAMANIO_BLOQUE} líneas, que se
+ * analizan y validan en paralelo en un grupo de hilos, y cada bloque se escribe en el
+ * repositorio en una sola transacción, en el orden del archivo. Como mucho hay dos
+ * bloques por hilo en memoria, de forma que la memoria necesaria no depende del tamaño
+ * del archivo. Las líneas que no cumplen las reglas de la tabla de movimientos (ver
+ * {@link Movimiento#validar}) no se importan y se informan con su número de línea.
+ *
+ * La importación se puede cancelar con {@link #cancelar()}; los bloques ya escritos se
+ * quedan en el repositorio.
+ *
+ * @author DAM2
+ */
+public class ImportacionCSV {
+
+    /** Número de líneas de cada bloque que se analiza y se escribe de una vez. */
+    public static final int TAMANIO_BLOQUE = 5000;
+
+    /** Número máximo de líneas erróneas que se guardan para informar de ellas. */
+    public static final int MAX_ERRORES = 1000;
+
+    // Acepta meses y días de uno o dos dígitos, igual que el diálogo de alta
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-M-d");
+
+    // La parte entera y los decimales de una cantidad escrita con coma decimal ("12,50")
+    private static final Pattern PARTE_ENTERA = Pattern.compile("[+-]?\\d+");
+    private static final Pattern PARTE_DECIMAL = Pattern.compile("\\d+");
+
+    private final RepositorioMovimientos repositorio;
+    private final int hilos = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private volatile boolean cancelada = false;
+
+    /**
+     * Constructor que prepara la importación en un repositorio.
+     *
+     * @param repositorio el repositorio en el que se escriben los movimientos importados.
+     */
+    public ImportacionCSV(RepositorioMovimientos repositorio) {
+        this.repositorio = repositorio;
+    }
+
+    /**
+     * Pide que se detenga la importación en curso. Se detiene al terminar de escribir el
+     * bloque actual.
+     */
+    public void cancelar() {
+        cancelada = true;
+    }
+
+    /**
+     * Importa los movimientos de un archivo CSV en UTF-8. La marca de orden de bytes del
+     * principio, si la hay, se ignora, y la primera línea se salta si es un encabezado (si
+     * no empieza por una fecha). Este método bloquea hasta que termina
+     * la importación, por lo que debe llamarse fuera del hilo de la interfaz.
+     *
+     * @param archivo el archivo CSV.
+     * @param progreso recibe el estado de la importación después de escribir cada bloque.
+     * @return el resultado de la importación.
+     * @throws IOException si ocurre un error al leer el archivo, si no está en UTF-8 o
+     *         si falla la escritura en el repositorio (los bloques anteriores ya están
+     *         escritos y el que falla no se escribe en absoluto).
+     */
+    public Resultado importar(File archivo, Consumer<Resultado> progreso) throws IOException {
+        Resultado resultado = new Resultado(System.nanoTime(), archivo.length());
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ExecutorService analizadores = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "ImportacionCSV-" + numeroHilo.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        Deque<Future<Bloque>> enCurso = new ArrayDeque<>();
+        try (BufferedReader lector = Files.newBufferedReader(archivo.toPath(), StandardCharsets.UTF_8)) {
+            List<String> lineas = new ArrayList<>(TAMANIO_BLOQUE);
+            long primeraLinea = 1;
+            long numeroLinea = 0;
+            String linea;
+            while ((linea = lector.readLine()) != null && !cancelada) {
+                numeroLinea++;
+                resultado.caracteresLeidos += linea.length() + 1;
+                if (numeroLinea == 1 && linea.startsWith("\uFEFF")) {
+                    linea = linea.substring(1);
+                }
+                if (numeroLinea == 1 && esEncabezado(linea)) {
+                    primeraLinea = 2;
+                    continue;
+                }
+                lineas.add(linea);
+                if (lineas.size() == TAMANIO_BLOQUE) {
+                    enCurso.add(enviar(analizadores, lineas, primeraLinea));
+                    lineas = new ArrayList<>(TAMANIO_BLOQUE);
+                    primeraLinea = numeroLinea + 1;
+                    // Se limita el número de bloques en memoria
+                    if (enCurso.size() >= 2 * hilos) {
+                        escribir(enCurso.poll(), resultado, progreso);
+                    }
+                }
+            }
+            if (!lineas.isEmpty() && !cancelada) {
+                enCurso.add(enviar(analizadores, lineas, primeraLinea));
+            }
+            while (!enCurso.isEmpty() && !cancelada) {
+                escribir(enCurso.poll(), resultado, progreso);
+            }
+        } catch (CharacterCodingException e) {
+            throw new IOException("El archivo no está en UTF-8. Los " + resultado.importadas
+                    + " movimientos de los bloques anteriores sí se importaron.", e);
+        } finally {
+            analizadores.shutdownNow();
+        }
+        resultado.cancelada = cancelada;
+        resultado.terminar();
+        return resultado;
+    }
+
+    private Future<Bloque> enviar(ExecutorService analizadores, List<String> lineas, long primeraLinea) {
+        return analizadores.submit(() -> analizar(lineas, primeraLinea));
+    }
+
+    /**
+     * Espera a que se analice un bloque y escribe sus movimientos válidos en una transacción.
+     */
+    private void escribir(Future<Bloque> pendiente, Resultado resultado, Consumer<Resultado> progreso) throws IOException {
+        Bloque bloque;
+        try {
+            bloque = pendiente.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelar();
+            return;
+        } catch (ExecutionException e) {
+            throw new IOException("Error al analizar el archivo", e.getCause());
+        }
+        // Si falla, no se escribe ningún movimiento del bloque: los importados son los de los bloques anteriores
+        if (!bloque.movimientos.isEmpty() && repositorio.escribirMovimientos(bloque.movimientos) == null) {
+            throw new IOException("Error al escribir las líneas " + bloque.primeraLinea + " a " + bloque.ultimaLinea
+                    + ", que no se han importado. Los " + resultado.importadas
+                    + " movimientos de las líneas anteriores sí se importaron.");
+        }
+        resultado.importadas += bloque.movimientos.size();
+        resultado.erroneas += bloque.errores.size();
+        for (String error : bloque.errores) {
+            if (resultado.errores.size() < MAX_ERRORES) {
+                resultado.errores.add(error);
+            }
+        }
+        resultado.terminar();
+        progreso.accept(resultado.copia());
+    }
+
+    /**
+     * Analiza y valida un bloque de líneas. Se ejecuta en los hilos analizadores.
+     */
+    private static Bloque analizar(List<String> lineas, long primeraLinea) {
+        Bloque bloque = new Bloque(primeraLinea, primeraLinea + lineas.size() - 1);
+        long numeroLinea = primeraLinea;
+        for (String linea : lineas) {
+            if (!linea.isBlank()) {
+                try {
+                    Movimiento movimiento = leerMovimiento(linea);
+                    String motivo = Movimiento.validar(movimiento.getConcepto(), movimiento.getCantidad(), movimiento.getFecha());
+                    if (motivo == null) {
+                        bloque.movimientos.add(movimiento);
+                    } else {
+                        bloque.errores.add("Línea " + numeroLinea + ": " + motivo);
+                    }
+                } catch (DateTimeParseException e) {
+                    bloque.errores.add("Línea " + numeroLinea + ": La fecha debe ser una fecha válida con el formato año-mes-día.");
+                } catch (IllegalArgumentException e) {
+                    bloque.errores.add("Línea " + numeroLinea + ": " + e.getMessage());
+                } catch (ArithmeticException e) {
+                    bloque.errores.add("Línea " + numeroLinea + ": La cantidad no puede tener más de dos decimales.");
+                }
+            }
+            numeroLinea++;
+        }
+        return bloque;
+    }
+
+    /**
+     * Lee un movimiento de una línea con fecha, concepto y cantidad. Si el concepto no
+     * está entre comillas y tiene comas, se toma todo lo que hay entre la primera y la
+     * última columna, salvo que las dos últimas parezcan una cantidad con coma decimal
+     * ("Pan,12,50", como en los archivos de versiones anteriores): entonces no se sabe
+     * dónde acaba el concepto y la línea es errónea.
+     */
+    private static Movimiento leerMovimiento(String linea) {
+        List<String> campos = separarCampos(linea);
+        if (campos.size() < 3) {
+            throw new IllegalArgumentException("Se esperaban las columnas Fecha, Concepto y Cantidad.");
+        }
+        if (campos.size() > 3 && PARTE_ENTERA.matcher(campos.get(campos.size() - 2).trim()).matches()
+                && PARTE_DECIMAL.matcher(campos.get(campos.size() - 1).trim()).matches()) {
+            throw new IllegalArgumentException("La cantidad parece tener coma decimal. Use punto decimal o ponga el concepto entre comillas.");
+        }
+        LocalDate fecha = LocalDate.parse(campos.get(0).trim(), FORMATO_FECHA);
+        String concepto = String.join(",", campos.subList(1, campos.size() - 1)).trim();
+        String cantidad = campos.get(campos.size() - 1).trim();
+        if (cantidad.isEmpty()) {
+            throw new IllegalArgumentException("La cantidad no puede estar vacía.");
+        }
+        try {
+            return new Movimiento(0, concepto, Movimiento.eurosACentimos(cantidad), fecha);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La cantidad debe ser un número válido.");
+        }
+    }
+
+    /**
+     * Separa los campos de una línea por comas, respetando las comillas dobles (y las
+     * comillas dobles repetidas dentro de ellas).
+     */
+    private static List<String> separarCampos(String linea) {
+        List<String> campos = new ArrayList<>(3);
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /**
+     * Comprueba si una línea es un encabezado, es decir, si no empieza por una fecha.
+     */
+    private static boolean esEncabezado(String linea) {
+        try {
+            LocalDate.parse(separarCampos(linea).get(0).trim(), FORMATO_FECHA);
+            return false;
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Las líneas de un bloque ya analizadas: los movimientos válidos y los errores.
+     */
+    private static class Bloque {
+
+        private final long primeraLinea;
+        private final long ultimaLinea;
+        private final List<Movimiento> movimientos = new ArrayList<>(TAMANIO_BLOQUE);
+        private final List<String> errores = new ArrayList<>();
+
+        private Bloque(long primeraLinea, long ultimaLinea) {
+            this.primeraLinea = primeraLinea;
+            this.ultimaLinea = ultimaLinea;
+        }
+    }
+
+    /**
+     * El estado de una importación, en curso o terminada.
+     */
+    public static class Resultado {
+
+        private final long inicio;
+        private final long tamanioArchivo;
+        private long caracteresLeidos;
+        private long importadas;
+        private long erroneas;
+        private List<String> errores = new ArrayList<>();
+        private long nanos;
+        private boolean cancelada;
+
+        private Resultado(long inicio, long tamanioArchivo) {
+            this.inicio = inicio;
+            this.tamanioArchivo = tamanioArchivo;
+        }
+
+        private void terminar() {
+            nanos = System.nanoTime() - inicio;
+        }
+
+        private Resultado copia() {
+            Resultado copia = new Resultado(inicio, tamanioArchivo);
+            copia.caracteresLeidos = caracteresLeidos;
+            copia.importadas = importadas;
+            copia.erroneas = erroneas;
+            copia.errores = Collections.unmodifiableList(new ArrayList<>(errores));
+            copia.nanos = nanos;
+            copia.cancelada = cancelada;
+            return copia;
+        }
+
+        /**
+         * Obtiene el número de movimientos importados.
+         *
+         * @return el número de movimientos escritos en el repositorio.
+         */
+        public long getImportadas() {
+            return importadas;
+        }
+
+        /**
+         * Obtiene el número de líneas que no se importaron por no ser válidas.
+         *
+         * @return el número de líneas erróneas.
+         */
+        public long getErroneas() {
+            return erroneas;
+        }
+
+        /**
+         * Obtiene los errores de las líneas no importadas, como mucho {@link #MAX_ERRORES}.
+         *
+         * @return los errores, con su número de línea.
+         */
+        public List<String> getErrores() {
+            return Collections.unmodifiableList(errores);
+        }
+
+        /**
+         * Obtiene el porcentaje aproximado del archivo que se ha leído.
+         *
+         * @return el porcentaje, de 0 a 100.
+         */
+        public int getPorcentaje() {
+            return tamanioArchivo <= 0 ? 100 : (int) Math.min(100, caracteresLeidos * 100 / tamanioArchivo);
+        }
+
+        /**
+         * Obtiene la velocidad media de la importación.
+         *
+         * @return el número de movimientos importados por segundo.
+         */
+        public double getFilasPorSegundo() {
+            return nanos <= 0 ? 0 : importadas * 1_000_000_000.0 / nanos;
+        }
+
+        /**
+         * Obtiene el tiempo que ha durado la importación.
+         *
+         * @return la duración en segundos.
+         */
+        public double getSegundos() {
+            return nanos / 1_000_000_000.0;
+        }
+
+        /**
+         * Indica si la importación se canceló antes de terminar.
+         *
+         * @return true si se canceló, false en caso contrario.
+         */
+        public boolean isCancelada() {
+            return cancelada;
+        }
+    }
+}
@@ -11,7 +11,12 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import java.time.LocalDate;
 import javax.imageio.ImageIO;
 import model.Movimiento;
@@ -30,6 +35,10 @@ import org.jfree.chart.plot.PlotOrientation;
  * una lista de movimientos con fecha, concepto y cantidad, y un gráfico de barras con los 
  * movimientos financieros.
  * 
+ * Los movimientos se recorren fila a fila desde su origen, sin necesidad de tenerlos 
+ * todos en memoria a la vez. El gráfico muestra el balance de cada día, que puede 
+ * recibirse ya agregado (por ejemplo, del resumen diario de la base de datos).
+ * 
  * Esta clase utiliza la biblioteca Apache PDFBox para crear el documento PDF y JFreeChart 
  * para generar el gráfico.
  * 
@@ -37,7 +46,8 @@ import org.jfree.chart.plot.PlotOrientation;
  */
 public class PDF {
 
-    private List<Movimiento> movimientos;
+    private Supplier<Stream<Movimiento>> movimientos;
+    private Map<LocalDate, Long> totalesDiarios;
     private String logoPath;
 
     /**
@@ -48,7 +58,32 @@ public class PDF {
      * @param logoPath la ruta del archivo de imagen del logo a incluir en el informe.
      */
     public PDF(List<Movimiento> movimientos, String logoPath) {
+        this(movimientos::stream, logoPath);
+    }
+
+    /**
+     * Constructor que recibe el origen de los movimientos como un proveedor de Streams, 
+     * por ejemplo una consulta a la base de datos. Cada recorrido abre un Stream nuevo 
+     * y lo cierra al terminar.
+     * 
+     * @param movimientos el proveedor del Stream de movimientos financieros a incluir en el informe.
+     * @param logoPath la ruta del archivo de imagen del logo a incluir en el informe.
+     */
+    public PDF(Supplier<Stream<Movimiento>> movimientos, String logoPath) {
+        this(movimientos, null, logoPath);
+    }
+
+    /**
+     * Constructor que recibe, además del origen de los movimientos, el balance de cada 
+     * día ya agregado, de forma que el gráfico no necesita recorrer los movimientos.
+     * 
+     * @param movimientos el proveedor del Stream de movimientos financieros a incluir en el informe.
+     * @param totalesDiarios el total en céntimos de cada día, o null para calcularlo a partir de los movimientos.
+     * @param logoPath la ruta del archivo de imagen del logo a incluir en el informe.
+     */
+    public PDF(Supplier<Stream<Movimiento>> movimientos, Map<LocalDate, Long> totalesDiarios, String logoPath) {
         this.movimientos = movimientos;
+        this.totalesDiarios = totalesDiarios;
         this.logoPath = logoPath;
     }
 
@@ -121,10 +156,16 @@ public class PDF {
         contentStream.newLineAtOffset(0, -15);
 
         int yPosition = 565;
-        for (Movimiento mov : movimientos) {
-            contentStream.newLineAtOffset(0, -15);
-            contentStream.showText(mov.getFecha().toString() + " - " + mov.getConcepto() + " - " + String.format("%.2f EUR", mov.getCantidad()));
-            yPosition -= 15;
+        try (Stream<Movimiento> filas = movimientos.get()) {
+            Iterator<Movimiento> iterador = filas.iterator();
+            while (iterador.hasNext()) {
+                Movimiento mov = iterador.next();
+                contentStream.newLineAtOffset(0, -15);
+                contentStream.showText(mov.getFecha().toString() + " - " + mov.getConcepto() + " - " + String.format("%.2f EUR", mov.getCantidadEnEuros()));
+                yPosition -= 15;
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException("Error al leer los movimientos", e);
         }
         contentStream.endText();
 
@@ -148,17 +189,28 @@ public class PDF {
     }
 
     /**
-     * Crea un gráfico de barras utilizando los movimientos financieros.
+     * Crea un gráfico de barras con el balance de cada día.
      * El gráfico utiliza la fecha como el eje de categorías y la cantidad como el eje de valores.
      * 
      * @param titulo el título que se utilizará para el gráfico.
      * @return un objeto JFreeChart que representa el gráfico generado.
+     * @throws IOException si ocurre un error al leer los movimientos.
      */
-    private JFreeChart crearGrafico(String titulo) {
+    private JFreeChart crearGrafico(String titulo) throws IOException {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         
-        for (Movimiento mov : movimientos) {
-            dataset.addValue(mov.getCantidad(), "Cantidad", mov.getFecha().toString());
+        Map<LocalDate, Long> totales = totalesDiarios;
+        if (totales == null) {
+            totales = new TreeMap<>();
+            try (Stream<Movimiento> filas = movimientos.get()) {
+                Map<LocalDate, Long> acumulados = totales;
+                filas.forEach(mov -> acumulados.merge(mov.getFecha(), mov.getCantidad(), Long::sum));
+            } catch (IllegalStateException e) {
+                throw new IOException("Error al leer los movimientos", e);
+            }
+        }
+        for (Map.Entry<LocalDate, Long> dia : totales.entrySet()) {
+            dataset.addValue(Movimiento.centimosAEuros(dia.getValue()), "Cantidad", dia.getKey().toString());
         }
 
         JFreeChart chart = ChartFactory.createBarChart(
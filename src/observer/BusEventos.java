@@ -0,0 +1,279 @@
+package observer;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * La clase BusEventos reparte los {@link Evento} de la aplicación (altas, bajas,
+ * cambios de filtro y de balance, importaciones...) entre sus suscriptores sin que
+ * quien los publica tenga que esperar a que los procesen.
+ *
+ * Cada suscripción tiene su propia cola y su propio ejecutor: la interfaz recibe sus
+ * eventos en el hilo de eventos de Swing ({@link #INTERFAZ}) y cualquier otro
+ * suscriptor (gráficos, cachés, sincronización...) en un hilo propio, de forma que un
+ * suscriptor lento no retrasa a los demás. Los eventos se entregan a cada suscriptor
+ * de uno en uno y en el orden en que se publicaron.
+ *
+ * Si un suscriptor se queda atrás, sus eventos agrupables (ver
+ * {@link Evento#isAgrupable()}) se unen con los pendientes del mismo tipo, y su cola
+ * no pasa de {@link #CAPACIDAD} eventos: quien publica desde un hilo en segundo plano
+ * espera hasta {@link #ESPERA_MAXIMA} milisegundos a que haya sitio, y si publica desde
+ * el hilo de la interfaz, que nunca se bloquea, se descarta el evento pendiente más
+ * antiguo.
+ *
+ * @author DAM2
+ */
+public class BusEventos {
+
+    /** Ejecutor que entrega los eventos en el hilo de eventos de Swing. */
+    public static final Executor INTERFAZ = SwingUtilities::invokeLater;
+
+    /** Número máximo de eventos no agrupables pendientes de cada suscriptor. */
+    public static final int CAPACIDAD = 1000;
+
+    /** Milisegundos que espera quien publica a que haya sitio en la cola de un suscriptor. */
+    public static final int ESPERA_MAXIMA = 1000;
+
+    // Número máximo de eventos que se entregan seguidos antes de devolver el hilo
+    private static final int LOTE = 100;
+
+    private final List<Suscripcion<?>> suscripciones = new CopyOnWriteArrayList<>();
+
+    /**
+     * Suscribe un oyente a los eventos de una clase (y de sus subclases), que recibirá
+     * con el ejecutor indicado.
+     *
+     * @param <E> la clase de los eventos.
+     * @param tipo la clase de los eventos, por ejemplo {@code Evento.BalanceCambiado.class}.
+     * @param oyente recibe los eventos.
+     * @param ejecutor el ejecutor en el que se entregan, por ejemplo {@link #INTERFAZ}.
+     * @return la suscripción, con la que se puede cancelar.
+     */
+    public <E extends Evento> Suscripcion<E> suscribir(Class<E> tipo, Consumer<? super E> oyente, Executor ejecutor) {
+        Suscripcion<E> suscripcion = new Suscripcion<>(tipo, oyente, ejecutor, null);
+        suscripciones.add(suscripcion);
+        return suscripcion;
+    }
+
+    /**
+     * Suscribe un oyente a los eventos de una clase (y de sus subclases), que recibirá
+     * en un hilo propio. El hilo termina al cancelar la suscripción.
+     *
+     * @param <E> la clase de los eventos.
+     * @param tipo la clase de los eventos.
+     * @param oyente recibe los eventos.
+     * @return la suscripción, con la que se puede cancelar.
+     */
+    public <E extends Evento> Suscripcion<E> suscribir(Class<E> tipo, Consumer<? super E> oyente) {
+        ExecutorService propio = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "BusEventos-" + tipo.getSimpleName());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        Suscripcion<E> suscripcion = new Suscripcion<>(tipo, oyente, propio, propio);
+        suscripciones.add(suscripcion);
+        return suscripcion;
+    }
+
+    /**
+     * Publica un evento a todos los suscriptores de su clase. No espera a que lo
+     * procesen.
+     *
+     * @param evento el evento a publicar.
+     */
+    public void publicar(Evento evento) {
+        boolean puedeEsperar = !SwingUtilities.isEventDispatchThread();
+        for (Suscripcion<?> suscripcion : suscripciones) {
+            if (suscripcion.tipo.isInstance(evento)) {
+                suscripcion.encolar(evento, puedeEsperar);
+            }
+        }
+    }
+
+    /**
+     * Obtiene las estadísticas de entrega de todas las suscripciones.
+     *
+     * @return un texto con una línea por suscripción.
+     */
+    public String estadisticas() {
+        StringBuilder texto = new StringBuilder("Eventos:");
+        for (Suscripcion<?> suscripcion : suscripciones) {
+            texto.append("\n  ").append(suscripcion);
+        }
+        return texto.toString();
+    }
+
+    /**
+     * La suscripción de un oyente a una clase de eventos, con su cola de eventos
+     * pendientes.
+     *
+     * @param <E> la clase de los eventos.
+     */
+    public final class Suscripcion<E extends Evento> {
+
+        private final Class<E> tipo;
+        private final Consumer<? super E> oyente;
+        private final Executor ejecutor;
+        private final ExecutorService propio;
+        private final ArrayDeque<Evento> pendientes = new ArrayDeque<>();
+        // Evento agrupable pendiente de cada clase, para unir con él los siguientes
+        private final Map<Class<?>, Evento> agrupables = new HashMap<>();
+        private boolean programada = false;
+        private volatile boolean cancelada = false;
+        private volatile Thread hiloEntrega;
+        private long entregados = 0;
+        private long agrupados = 0;
+        private long descartados = 0;
+
+        private Suscripcion(Class<E> tipo, Consumer<? super E> oyente, Executor ejecutor, ExecutorService propio) {
+            this.tipo = tipo;
+            this.oyente = oyente;
+            this.ejecutor = ejecutor;
+            this.propio = propio;
+        }
+
+        /**
+         * Añade un evento a la cola y, si no lo estaba ya, programa su entrega.
+         */
+        private void encolar(Evento evento, boolean puedeEsperar) {
+            synchronized (this) {
+                if (cancelada) {
+                    return;
+                }
+                if (evento.isAgrupable()) {
+                    Evento pendiente = agrupables.get(evento.getClass());
+                    if (pendiente != null) {
+                        // Se quita el pendiente y el evento unido pasa al final, tras los anteriores
+                        pendientes.removeFirstOccurrence(pendiente);
+                        evento = evento.agrupar(pendiente);
+                        agrupados++;
+                    }
+                    agrupables.put(evento.getClass(), evento);
+                } else {
+                    // No se espera si quien publica es el propio suscriptor, que vaciaría la cola
+                    esperarSitio(puedeEsperar && Thread.currentThread() != hiloEntrega);
+                    if (cancelada) {
+                        return;
+                    }
+                }
+                pendientes.addLast(evento);
+                if (programada) {
+                    return;
+                }
+                programada = true;
+            }
+            programar();
+        }
+
+        /**
+         * Espera a que haya sitio en la cola o, si no se puede esperar más, descarta el
+         * evento no agrupable más antiguo. Se llama con el cerrojo de la suscripción.
+         */
+        private void esperarSitio(boolean puedeEsperar) {
+            long limite = System.currentTimeMillis() + ESPERA_MAXIMA;
+            while (pendientes.size() - agrupables.size() >= CAPACIDAD && !cancelada) {
+                long restante = limite - System.currentTimeMillis();
+                if (!puedeEsperar || restante <= 0) {
+                    descartarMasAntiguo();
+                    return;
+                }
+                try {
+                    wait(restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    puedeEsperar = false;
+                }
+            }
+        }
+
+        private void descartarMasAntiguo() {
+            for (Iterator<Evento> it = pendientes.iterator(); it.hasNext();) {
+                if (!it.next().isAgrupable()) {
+                    it.remove();
+                    if (descartados++ == 0) {
+                        System.out.println("BusEventos: El suscriptor de " + tipo.getSimpleName()
+                                + " no da abasto; se descartan sus eventos más antiguos.");
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Programa en el ejecutor de la suscripción la entrega de los eventos pendientes.
+         */
+        private void programar() {
+            try {
+                ejecutor.execute(this::entregar);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    programada = false;
+                }
+            }
+        }
+
+        /**
+         * Entrega los eventos pendientes, como mucho {@link #LOTE} seguidos; si quedan
+         * más, se vuelve a programar para no acaparar el hilo (sobre todo el de la
+         * interfaz).
+         */
+        private void entregar() {
+            hiloEntrega = Thread.currentThread();
+            try {
+                for (int i = 0; i < LOTE; i++) {
+                    Evento evento;
+                    synchronized (this) {
+                        evento = pendientes.pollFirst();
+                        if (evento == null) {
+                            programada = false;
+                            return;
+                        }
+                        agrupables.remove(evento.getClass(), evento);
+                        notifyAll();
+                    }
+                    try {
+                        oyente.accept(tipo.cast(evento));
+                        entregados++;
+                    } catch (RuntimeException e) {
+                        System.out.println("BusEventos: Error en un suscriptor de " + tipo.getSimpleName() + ": " + e);
+                    }
+                }
+            } finally {
+                hiloEntrega = null;
+            }
+            programar();
+        }
+
+        /**
+         * Cancela la suscripción. Los eventos pendientes ya no se entregan.
+         */
+        public void cancelar() {
+            suscripciones.remove(this);
+            synchronized (this) {
+                cancelada = true;
+                pendientes.clear();
+                agrupables.clear();
+                notifyAll();
+            }
+            if (propio != null) {
+                propio.shutdown();
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return tipo.getSimpleName() + ": " + entregados + " entregados, " + agrupados + " agrupados, "
+                    + descartados + " descartados, " + pendientes.size() + " pendientes";
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package observer;
+
+import model.Consulta;
+import model.Movimiento;
+
+/**
+ * La clase Evento es la base de los eventos que se publican en un {@link BusEventos}.
+ * Cada tipo de evento es una subclase, de forma que los suscriptores eligen los que
+ * les interesan por su clase y los reciben ya con su tipo.
+ *
+ * Algunos eventos describen un estado (el balance, el filtro) y no un hecho: solo
+ * importa el último. Esos eventos son agrupables: si un suscriptor lento todavía tiene
+ * pendiente uno del mismo tipo, se unen en uno solo en lugar de encolar los dos.
+ *
+ * @author DAM2
+ */
+public abstract class Evento {
+
+    private final long instante = System.currentTimeMillis();
+
+    /**
+     * Obtiene el momento en el que se creó el evento.
+     *
+     * @return el instante, en milisegundos desde 1970.
+     */
+    public long getInstante() {
+        return instante;
+    }
+
+    /**
+     * Indica si el evento describe un estado, de forma que se puede unir con uno
+     * pendiente del mismo tipo.
+     *
+     * @return true si el evento es agrupable, false en caso contrario.
+     */
+    public boolean isAgrupable() {
+        return false;
+    }
+
+    /**
+     * Une este evento con otro anterior de la misma clase que aún no se ha entregado.
+     * Solo se llama si el evento es agrupable.
+     *
+     * @param pendiente el evento anterior, todavía sin entregar.
+     * @return el evento que sustituye a los dos.
+     */
+    protected Evento agrupar(Evento pendiente) {
+        return this;
+    }
+
+    /**
+     * Base de los eventos sobre un movimiento concreto.
+     */
+    public abstract static class DeMovimiento extends Evento {
+
+        private final Movimiento movimiento;
+
+        private DeMovimiento(Movimiento movimiento) {
+            this.movimiento = movimiento;
+        }
+
+        /**
+         * Obtiene el movimiento del evento.
+         *
+         * @return el movimiento.
+         */
+        public Movimiento getMovimiento() {
+            return movimiento;
+        }
+    }
+
+    /**
+     * Se publica cuando se ha escrito un movimiento nuevo.
+     */
+    public static final class MovimientoAnadido extends DeMovimiento {
+
+        /**
+         * @param movimiento el movimiento añadido, ya con su ID.
+         */
+        public MovimientoAnadido(Movimiento movimiento) {
+            super(movimiento);
+        }
+    }
+
+    /**
+     * Se publica cuando se ha borrado un movimiento.
+     */
+    public static final class MovimientoEliminado extends DeMovimiento {
+
+        /**
+         * @param movimiento el movimiento borrado.
+         */
+        public MovimientoEliminado(Movimiento movimiento) {
+            super(movimiento);
+        }
+    }
+
+    /**
+     * Se publica cuando se ha restaurado un movimiento borrado.
+     */
+    public static final class MovimientoRestaurado extends DeMovimiento {
+
+        /**
+         * @param movimiento el movimiento restaurado, con su ID original.
+         */
+        public MovimientoRestaurado(Movimiento movimiento) {
+            super(movimiento);
+        }
+    }
+
+    /**
+     * Se publica cuando cambia el filtro de los movimientos mostrados. Es agrupable:
+     * un suscriptor lento solo recibe el primer filtro anterior y el último nuevo.
+     */
+    public static final class FiltroCambiado extends Evento {
+
+        private final Consulta anterior;
+        private final Consulta nuevo;
+
+        /**
+         * @param anterior la consulta del filtro anterior.
+         * @param nuevo la consulta del nuevo filtro.
+         */
+        public FiltroCambiado(Consulta anterior, Consulta nuevo) {
+            this.anterior = anterior;
+            this.nuevo = nuevo;
+        }
+
+        public Consulta getAnterior() {
+            return anterior;
+        }
+
+        public Consulta getNuevo() {
+            return nuevo;
+        }
+
+        @Override
+        public boolean isAgrupable() {
+            return true;
+        }
+
+        @Override
+        protected Evento agrupar(Evento pendiente) {
+            return new FiltroCambiado(((FiltroCambiado) pendiente).anterior, nuevo);
+        }
+    }
+
+    /**
+     * Se publica cuando cambia el balance mostrado. Es agrupable: un suscriptor lento
+     * solo recibe el primer balance anterior y el último nuevo.
+     */
+    public static final class BalanceCambiado extends Evento {
+
+        private final long anterior;
+        private final long nuevo;
+
+        /**
+         * @param anterior el balance anterior, en céntimos.
+         * @param nuevo el nuevo balance, en céntimos.
+         */
+        public BalanceCambiado(long anterior, long nuevo) {
+            this.anterior = anterior;
+            this.nuevo = nuevo;
+        }
+
+        public long getAnterior() {
+            return anterior;
+        }
+
+        public long getNuevo() {
+            return nuevo;
+        }
+
+        @Override
+        public boolean isAgrupable() {
+            return true;
+        }
+
+        @Override
+        protected Evento agrupar(Evento pendiente) {
+            return new BalanceCambiado(((BalanceCambiado) pendiente).anterior, nuevo);
+        }
+    }
+
+    /**
+     * Se publica cuando termina (o se cancela) una importación masiva de movimientos.
+     */
+    public static final class ImportacionTerminada extends Evento {
+
+        private final long importadas;
+        private final long erroneas;
+        private final boolean cancelada;
+
+        /**
+         * @param importadas el número de movimientos importados.
+         * @param erroneas el número de líneas que no se pudieron importar.
+         * @param cancelada true si la importación se canceló antes de terminar.
+         */
+        public ImportacionTerminada(long importadas, long erroneas, boolean cancelada) {
+            this.importadas = importadas;
+            this.erroneas = erroneas;
+            this.cancelada = cancelada;
+        }
+
+        public long getImportadas() {
+            return importadas;
+        }
+
+        public long getErroneas() {
+            return erroneas;
+        }
+
+        public boolean isCancelada() {
+            return cancelada;
+        }
+    }
+}
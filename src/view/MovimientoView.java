@@ -8,22 +8,26 @@ import java.util.Collections;
 import java.util.ArrayList;
 import java.util.List;
 import model.Movimiento;
+import controller.ModeloMovimientos;
 import controller.MovimientoController;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.event.HyperlinkEvent;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import model.MovimientoDAO;
+import model.RepositorioMovimientos;
 import model.config.Config;
 import model.config.Configurable;
-import observer.BalanceObserver;
+import observer.BusEventos;
+import observer.Evento;
 import model.informe.CSV;
 import model.informe.PDF;
 
-public class MovimientoView extends JFrame implements BalanceObserver {
+public class MovimientoView extends JFrame implements ModeloMovimientos.Oyente {
 
     final String RUTA_ULTIMO_ARCHIVO = "config" + File.separator + "ultimaRuta.txt";
     private Component[] atajos;
@@ -48,9 +52,14 @@ public class MovimientoView extends JFrame implements BalanceObserver {
     private boolean inHelpMode = false;
     private int currentHelpStep = 0;
 
-    @Override
-    public void onBalanceChange(double balance) {
-        balanceLabel.setText(String.format("%.2f", balance));
+    /**
+     * Muestra el balance y cambia el color del banner y los filtros si es
+     * negativo. Se llama con cada evento {@link Evento.BalanceCambiado}.
+     *
+     * @param balance el nuevo balance, en céntimos.
+     */
+    private void onBalanceChange(long balance) {
+        balanceLabel.setText(String.format("%.2f", Movimiento.centimosAEuros(balance)));
         if (balance < 0) {
             bannerPanel.setBackground(Color.decode("#d63429")); // Rojo
             filtersPanel.setBackground(Color.decode("#d63429")); // Rojo
@@ -81,6 +90,9 @@ public class MovimientoView extends JFrame implements BalanceObserver {
 
     public void setController(MovimientoController controller) {
         this.controller = controller;
+        // El balance llega por el bus de eventos, en el hilo de la interfaz
+        controller.getBus().suscribir(Evento.BalanceCambiado.class,
+                evento -> onBalanceChange(evento.getNuevo()), BusEventos.INTERFAZ);
     }
 
     public MovimientoView() {
@@ -91,6 +103,14 @@ public class MovimientoView extends JFrame implements BalanceObserver {
 
         initComponents();
 
+        // Guardar los cambios pendientes también al cerrar la ventana
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                cerrarAplicacion();
+            }
+        });
+
         addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
@@ -135,9 +155,13 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         JMenu menuArchivo = new JMenu("Archivo");
 
         JMenuItem mItemAbrir = new JMenuItem("Abrir");
+        JMenuItem mItemAbrirConsolidado = new JMenuItem("Abrir varias carteras...");
         JMenuItem mItemCerrar = new JMenuItem("Cerrar");
         JMenuItem mItemExportarPDF = new JMenuItem("Exportar a PDF");
         JMenuItem mItemExportarCSV = new JMenuItem("Exportar a CSV");
+        JMenuItem mItemImportarCSV = new JMenuItem("Importar desde CSV...");
+        JMenuItem mItemReconstruirResumenes = new JMenuItem("Reconstruir resúmenes");
+        JMenuItem mItemCopiaSeguridad = new JMenuItem("Hacer copia de seguridad");
 
         mItemExportarPDF.addActionListener(l -> {
             JFileChooser fileChooser = new JFileChooser();
@@ -155,11 +179,11 @@ public class MovimientoView extends JFrame implements BalanceObserver {
                     fileToSave = new File(fileToSave.getAbsolutePath() + ".pdf");
                 }
 
-                // Obtener la lista de movimientos desde la base de datos
-                Movimiento[] movimientosArray = MovimientoDAO.leerMovimientos("SELECT * FROM " + MovimientoDAO.NOMBRETABLA);
-                List<Movimiento> listaMovimientos = Arrays.asList(movimientosArray);
-
-                PDF pdf = new PDF(listaMovimientos, "imgs\\LogoRecortado.png");
+                // Recorrer los movimientos directamente desde el repositorio, con los cambios pendientes ya escritos
+                controller.vaciarEscrituras();
+                RepositorioMovimientos repositorio = controller.getRepositorio();
+                PDF pdf = new PDF(repositorio::streamMovimientos,
+                        repositorio.leerResumenDiario(null), "imgs\\LogoRecortado.png");
                 try {
                     pdf.guardarGraficoMensual(fileToSave);
                     JOptionPane.showMessageDialog(null, "Exportado correctamente a PDF.");
@@ -188,11 +212,9 @@ public class MovimientoView extends JFrame implements BalanceObserver {
                     fileToSave = new File(fileToSave.getAbsolutePath() + ".csv");
                 }
 
-                // Obtener la lista de movimientos desde la base de datos
-                Movimiento[] movimientosArray = MovimientoDAO.leerMovimientos("SELECT * FROM " + MovimientoDAO.NOMBRETABLA);
-                List<Movimiento> listaMovimientos = Arrays.asList(movimientosArray);
-
-                CSV csv = new CSV(listaMovimientos);
+                // Recorrer los movimientos directamente desde el repositorio, con los cambios pendientes ya escritos
+                controller.vaciarEscrituras();
+                CSV csv = new CSV(controller.getRepositorio()::streamMovimientos);
                 try {
                     csv.guardarDatosMensuales(fileToSave);
                     JOptionPane.showMessageDialog(null, "Exportado correctamente a CSV.");
@@ -207,31 +229,103 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         mItemAbrir.addActionListener(l -> {
             Configurable lastFileConfigurator = Config.LastFile.CONFIGURADOR;
             String rutaSeleccionada = lastFileConfigurator.seleccionarArchivoActual();
-            if (lastFileConfigurator.esValido(rutaSeleccionada)) {
-                lastFileConfigurator.reescribirActual(rutaSeleccionada);
-                System.out.println("Seleccionado " + rutaSeleccionada);
+            if (rutaSeleccionada == null) {
+                return;
             }
 
-            MovimientoDAO.rutaBBDD = rutaSeleccionada;
-            if (MovimientoDAO.crearBaseDeDatos()) {
+            // El controlador escribe los cambios pendientes antes de cambiar de archivo
+            if (controller != null && controller.abrirCartera(rutaSeleccionada)) {
+                MovimientoDAO.rutaBBDD = rutaSeleccionada;
+                if (lastFileConfigurator.esValido(rutaSeleccionada)) {
+                    lastFileConfigurator.reescribirActual(rutaSeleccionada);
+                    System.out.println("Seleccionado " + rutaSeleccionada);
+                }
                 System.out.println("Abriendo " + rutaSeleccionada);
-                setMovements(MovimientoDAO.leerMovimientos("SELECT * FROM MOVIMIENTO;"));
-                updateMovementSelection();
+                // El filtro Total recarga la primera página de movimientos del nuevo archivo
                 SwingUtilities.invokeLater(() -> simularClic(totalLabel));
             } else {
                 System.out.println("Error al abrir " + rutaSeleccionada);
             }
         });
 
+        mItemAbrirConsolidado.addActionListener(l -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Abrir varias carteras");
+            fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fileChooser.setMultiSelectionEnabled(true);
+            fileChooser.setFileFilter(new FileNameExtensionFilter("Cartera (*.db)", "db"));
+
+            if (fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+                List<String> rutas = new ArrayList<>();
+                for (File archivo : fileChooser.getSelectedFiles()) {
+                    rutas.add(archivo.getAbsolutePath());
+                }
+                // Cada cartera se abre y se consulta en su propio hilo
+                if (!rutas.isEmpty() && controller != null && controller.abrirConsolidado(rutas)) {
+                    System.out.println("Abiertas " + rutas.size() + " carteras");
+                    SwingUtilities.invokeLater(() -> simularClic(totalLabel));
+                } else {
+                    JOptionPane.showMessageDialog(null, "No se pudieron abrir las carteras seleccionadas.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+
+        mItemReconstruirResumenes.addActionListener(l -> {
+            if (controller != null && controller.getRepositorio().reconstruirResumenes()) {
+                JOptionPane.showMessageDialog(null, "Resúmenes reconstruidos correctamente.");
+                SwingUtilities.invokeLater(() -> simularClic(totalLabel));
+            } else {
+                JOptionPane.showMessageDialog(null, "Error al reconstruir los resúmenes.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        mItemImportarCSV.addActionListener(l -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Importar desde CSV");
+            fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fileChooser.setFileFilter(new FileNameExtensionFilter("Archivo CSV (*.csv)", "csv"));
+
+            if (fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION && controller != null) {
+                // La importación se hace en segundo plano y muestra su propio progreso
+                controller.importarCSV(fileChooser.getSelectedFile());
+            }
+        });
+
+        mItemCopiaSeguridad.addActionListener(l -> {
+            if (controller == null) {
+                return;
+            }
+            // La copia se hace en segundo plano con los cambios pendientes ya escritos
+            controller.vaciarEscrituras();
+            CompletableFuture<File> copia = controller.hacerCopiaSeguridad();
+            if (copia == null) {
+                JOptionPane.showMessageDialog(null, "La cartera actual no admite copias de seguridad.", "Aviso", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            copia.thenAccept(archivo -> SwingUtilities.invokeLater(() -> {
+                if (archivo != null) {
+                    JOptionPane.showMessageDialog(null, "Copia de seguridad guardada en " + archivo.getPath() + ".");
+                } else {
+                    JOptionPane.showMessageDialog(null, "Error al hacer la copia de seguridad.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }));
+        });
+
         mItemCerrar.addActionListener(l -> {
+            cerrarAplicacion();
             System.exit(0);
         });
 
         menuArchivo.add(mItemAbrir);
+        menuArchivo.add(mItemAbrirConsolidado);
         menuArchivo.add(mItemCerrar);
         menuArchivo.addSeparator();
         menuArchivo.add(mItemExportarPDF);
         menuArchivo.add(mItemExportarCSV);
+        menuArchivo.add(mItemImportarCSV);
+        menuArchivo.addSeparator();
+        menuArchivo.add(mItemReconstruirResumenes);
+        menuArchivo.add(mItemCopiaSeguridad);
 
         JMenu menuVer = new JMenu("Ver");
 
@@ -245,6 +339,23 @@ public class MovimientoView extends JFrame implements BalanceObserver {
             }
         });
 
+        JMenuItem mItemBuscar = new JMenuItem("Buscar...");
+        mItemBuscar.addActionListener(l -> {
+            if (controller != null) {
+                controller.buscarMovimientos();
+            }
+        });
+
+        JMenuItem mItemFiltrar = new JMenuItem("Filtrar...");
+        mItemFiltrar.addActionListener(l -> {
+            if (controller != null) {
+                controller.filtrarMovimientos();
+            }
+        });
+
+        menuVer.add(mItemBuscar);
+        menuVer.add(mItemFiltrar);
+        menuVer.addSeparator();
         menuVer.add(mItemAlwaysOnTop);
 
         JMenu menuAyuda = new JMenu("Ayuda");
@@ -282,6 +393,17 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         });
         menuAyuda.add(jMenuItemJavaDoc);
 
+        JMenuItem jMenuItemEstadisticas = new JMenuItem("Estadísticas");
+        jMenuItemEstadisticas.addActionListener((e) -> {
+            if (controller != null) {
+                JTextArea texto = new JTextArea(controller.estadisticas());
+                texto.setEditable(false);
+                JOptionPane.showMessageDialog(this, new JScrollPane(texto), "Estadísticas", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+        menuAyuda.addSeparator();
+        menuAyuda.add(jMenuItemEstadisticas);
+
         menuBar.add(menuArchivo);
         menuBar.add(menuVer);
         menuBar.add(menuAyuda);
@@ -369,6 +491,15 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         scrollPane.setBorder(null);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
 
+        // Cargar la siguiente página de movimientos al acercarse al final de la lista
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            JScrollBar barra = scrollPane.getVerticalScrollBar();
+            if (!e.getValueIsAdjusting() && controller != null
+                    && barra.getValue() + barra.getVisibleAmount() >= barra.getMaximum() - barra.getVisibleAmount() / 2) {
+                SwingUtilities.invokeLater(() -> controller.loadMoreMovements());
+            }
+        });
+
         add(scrollPane, BorderLayout.CENTER);
 
         JPanel buttonPanel = new JPanel(new BorderLayout());
@@ -655,6 +786,12 @@ public class MovimientoView extends JFrame implements BalanceObserver {
             selectedMovementIndex = 0;
         } else if (selectedMovementIndex < movimientoPanels.size() - 1) {
             selectedMovementIndex++;
+        } else if (controller != null) {
+            // En el último movimiento, cargar la siguiente página si la hay
+            controller.loadMoreMovements();
+            if (selectedMovementIndex < movimientoPanels.size() - 1) {
+                selectedMovementIndex++;
+            }
         }
         updateMovementSelection();
     }
@@ -709,8 +846,17 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         }
     }
 
-    public void setBalance(double balance) {
-        balanceLabel.setText(String.format("%.2f", balance));
+    /**
+     * Escribe los cambios pendientes y cierra el repositorio antes de salir.
+     */
+    private void cerrarAplicacion() {
+        if (controller != null) {
+            controller.cerrar();
+        }
+    }
+
+    public void setBalance(long balance) {
+        balanceLabel.setText(String.format("%.2f", Movimiento.centimosAEuros(balance)));
     }
 
     public void setMovements(Movimiento[] movimientos) {
@@ -718,25 +864,90 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         movimientoPanels.clear();
         selectedMovementIndex = -1;
 
+        addMovements(movimientos);
+    }
+
+    /**
+     * Añade movimientos al final de la lista mostrada, conservando la
+     * selección actual. Se usa al cargar más páginas de movimientos.
+     *
+     * @param movimientos los movimientos a añadir.
+     */
+    public void addMovements(Movimiento[] movimientos) {
         for (Movimiento movimiento : movimientos) {
-            MovimientoPanel movimientoPanel = new MovimientoPanel(movimiento);
+            MovimientoPanel movimientoPanel = crearPanel(movimiento);
+            movementsPanel.add(movimientoPanel);
+            movimientoPanels.add(movimientoPanel);
+        }
 
-            movimientoPanel.getDeleteButton().addActionListener(new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    int option = showConfirmDialog("¿Estás seguro de que deseas eliminar este movimiento?");
-                    if (option == JOptionPane.YES_OPTION) {
-                        if (controller != null) {
-                            controller.deleteMovimiento(movimientoPanel.getMovimientoId());
-                        }
+        movementsPanel.revalidate();
+        movementsPanel.repaint();
+    }
+
+    /**
+     * Crea el panel de un movimiento, con su botón de eliminar.
+     *
+     * @param movimiento el movimiento a mostrar.
+     * @return el panel del movimiento.
+     */
+    private MovimientoPanel crearPanel(Movimiento movimiento) {
+        MovimientoPanel movimientoPanel = new MovimientoPanel(movimiento);
+
+        movimientoPanel.getDeleteButton().addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int option = showConfirmDialog("¿Estás seguro de que deseas eliminar este movimiento?");
+                if (option == JOptionPane.YES_OPTION) {
+                    if (controller != null) {
+                        controller.deleteMovimiento(movimientoPanel.getMovimientoId());
                     }
                 }
-            });
+            }
+        });
+        return movimientoPanel;
+    }
 
-            movementsPanel.add(movimientoPanel);
-            movimientoPanels.add(movimientoPanel);
+    @Override
+    public void movimientosSustituidos(List<Movimiento> movimientos) {
+        setMovements(movimientos.toArray(new Movimiento[0]));
+    }
+
+    @Override
+    public void paginaAnadida(List<Movimiento> pagina) {
+        addMovements(pagina.toArray(new Movimiento[0]));
+    }
+
+    /**
+     * Crea solo el panel del movimiento insertado, en su posición.
+     *
+     * @param indice la posición del movimiento en la lista.
+     * @param movimiento el movimiento insertado.
+     */
+    @Override
+    public void movimientoInsertado(int indice, Movimiento movimiento) {
+        MovimientoPanel movimientoPanel = crearPanel(movimiento);
+        movementsPanel.add(movimientoPanel, indice);
+        movimientoPanels.add(indice, movimientoPanel);
+        if (selectedMovementIndex >= indice) {
+            selectedMovementIndex++;
         }
+        movementsPanel.revalidate();
+        movementsPanel.repaint();
+    }
 
+    /**
+     * Quita solo el panel del movimiento quitado.
+     *
+     * @param indice la posición que ocupaba el movimiento en la lista.
+     * @param movimiento el movimiento quitado.
+     */
+    @Override
+    public void movimientoQuitado(int indice, Movimiento movimiento) {
+        movementsPanel.remove(movimientoPanels.remove(indice));
+        if (selectedMovementIndex > indice || selectedMovementIndex >= movimientoPanels.size()) {
+            selectedMovementIndex--;
+        }
+        updateMovementSelection();
         movementsPanel.revalidate();
         movementsPanel.repaint();
     }
@@ -847,7 +1058,7 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         }
     }
 
-    public int showAddMovementConfirmDialog(String concepto, String tipoMovimiento, double cantidad, String fecha) {
+    public int showAddMovementConfirmDialog(String concepto, String tipoMovimiento, long cantidad, String fecha) {
         JButton yesButton = new JButton("Sí");
         JButton noButton = new JButton("No");
 
@@ -862,7 +1073,7 @@ public class MovimientoView extends JFrame implements BalanceObserver {
                 + "Tipo: %s\n"
                 + "Cantidad: %.2f\n"
                 + "Fecha: %s",
-                concepto, tipoMovimiento, cantidad, fecha
+                concepto, tipoMovimiento, Movimiento.centimosAEuros(cantidad), fecha
         );
 
         // Crear el JOptionPane con botones personalizados
@@ -963,7 +1174,8 @@ public class MovimientoView extends JFrame implements BalanceObserver {
 
     private class MovimientoPanel extends JPanel {
 
-        private long movimientoId;
+        // Se guarda el movimiento, y no su ID, porque uno recién añadido recibe el ID al escribirse
+        private Movimiento movimiento;
         private JButton deleteButton;
         private Color hoverBackgroundColor = Color.decode("#89bced");
         private Color hoverBorderColor = Color.decode("#183cac");
@@ -972,7 +1184,7 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         private boolean isSelected = false;
 
         public MovimientoPanel(Movimiento movimiento) {
-            this.movimientoId = movimiento.getId();
+            this.movimiento = movimiento;
             setLayout(new BorderLayout());
             setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
             setOpaque(true); // Hacer el panel opaco para que se vea el fondo
@@ -1008,7 +1220,7 @@ public class MovimientoView extends JFrame implements BalanceObserver {
             centroPanel.add(conceptoLabel);
             centroPanel.add(fechaLabel);
 
-            JLabel cantidadLabel = new JLabel(String.format("%.2f", movimiento.getCantidad()));
+            JLabel cantidadLabel = new JLabel(String.format("%.2f", movimiento.getCantidadEnEuros()));
             cantidadLabel.setFont(new Font("Arial", Font.BOLD, 16));
 
             add(centroPanel, BorderLayout.CENTER);
@@ -1049,7 +1261,7 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         }
 
         public long getMovimientoId() {
-            return movimientoId;
+            return movimiento.getId();
         }
 
         public JButton getDeleteButton() {
@@ -1077,6 +1289,16 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         }
     }
 
+    /**
+     * Quita el subrayado de todos los filtros, por ejemplo al aplicar un filtro
+     * personalizado.
+     */
+    public void limpiarFiltroSeleccionado() {
+        for (JLabel label : new JLabel[]{mesLabel, añoLabel, totalLabel}) {
+            label.setText(label.getText().replace("<html><u>", "").replace("</u></html>", ""));
+        }
+    }
+
     public void addAddButtonListener(ActionListener listener) {
         addButton.addActionListener(listener);
     }
@@ -1415,6 +1637,18 @@ public class MovimientoView extends JFrame implements BalanceObserver {
         actionMap.put("undoDeleteMovimiento", action);
     }
 
+    public void addCtrlFKeyBinding(Action action) {
+        InputMap inputMap = this.getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actionMap = this.getRootPane().getActionMap();
+
+        inputMap.put(KeyStroke.getKeyStroke("ctrl F"), "buscarMovimientos");
+        actionMap.put("buscarMovimientos", action);
+    }
+
+    public void setMovementsTitle(String title) {
+        recentTransactionsLabel.setText(title);
+    }
+
     public void updateBannerAndFiltersColor(String colorHex) {
         Color color = Color.decode(colorHex);
         bannerPanel.setBackground(color);